@@ -4,6 +4,7 @@ import java.io.IOException;
 
 import com.carekeeperaquarium.client.AquariumClient;
 import com.carekeeperaquarium.server.AquariumServer;
+import com.carekeeperaquarium.server.LoopbackBenchmark;
 
 public class Main {
     public static void main(String[] args) {
@@ -12,6 +13,9 @@ public class Main {
                 // Launch client
                 AquariumClient client = new AquariumClient();
                 client.run();
+            } else if (args.length > 0 && args[0].equalsIgnoreCase("bench")) {
+                // In-process sessions over the loopback transport
+                LoopbackBenchmark.main(args);
             } else {
                 // Launch server (default)
                 AquariumServer server = new AquariumServer();
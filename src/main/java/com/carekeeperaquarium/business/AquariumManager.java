@@ -1,11 +1,16 @@
 package com.carekeeperaquarium.business;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.function.Supplier;
 
+import com.carekeeperaquarium.common.Command;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.common.TankSummary;
+import com.carekeeperaquarium.common.UserView;
 import com.carekeeperaquarium.model.AquariumState;
 import com.carekeeperaquarium.model.Fish;
 import com.carekeeperaquarium.model.UserProfile;
@@ -14,7 +19,11 @@ import com.carekeeperaquarium.server.StateObserver;
 public class AquariumManager {
     private final AquariumState aquariumInstance;
 
-    private final ReentrantLock lock = new ReentrantLock();
+    public static final int MAX_BATCH_SIZE = 32;
+    private static final Set<Command> BATCHABLE = EnumSet.of(Command.ADD_FISH, Command.FEED_FISH, Command.CLEAN_TANK);
+
+    // AquariumState guards itself, per user and for the tank as a whole, so commands
+    // for different users run in parallel; see its class comment for the lock order
     
     // Initialize the AquariumManager and start scheduled tasks
     public AquariumManager(StateObserver serverObserver) {
@@ -28,114 +37,144 @@ public class AquariumManager {
 
     private void startScheduledTasks() {
         ScheduledExecutorService scheduler = ThreadPoolManager.getScheduler();
-        scheduler.scheduleAtFixedRate(
-            aquariumInstance::runIteration, 
-            0, 1, TimeUnit.MINUTES);
+        // First tick one period in: nothing has aged yet, and a tick at once would race
+        // the first commands, which no longer wait on a manager-wide lock
+        scheduler.scheduleAtFixedRate(aquariumInstance::runIteration, 1, 1, TimeUnit.MINUTES);
     }
 
     public void shutdown() {
         ThreadPoolManager.shutdown();
     }
 
-    // --- SYNCHRONIZED HELPER METHODS ---
-    private void executeWithLock(Runnable operation) {
-        lock.lock();
-        try {
-            operation.run();
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private <T> T executeWithLock(Supplier<T> operation) {
-        lock.lock();
-        try {
-            return operation.get();
-        } finally {
-            lock.unlock();
-        }
-    }
-
     // --- INSTANCE ACCESS ---
     // --- ACCESSORS ---
     public ArrayList<UserProfile> getUsers() {
-        return executeWithLock(() -> aquariumInstance.getUsers());
+        return aquariumInstance.getUsers();
     }
     
     public double getTankCleanliness() {
-        return executeWithLock(() -> aquariumInstance.getTankCleanliness());
+        return aquariumInstance.getTankCleanliness();
     }
 
     public UserProfile getUser(String userName) {
-        lock.lock();
-        try {
-            return aquariumInstance.getUser(userName);
-        } finally {
-            lock.unlock();
-        }
+        return aquariumInstance.getUser(userName);
     }
 
     public boolean hasUser(String username) {
-        return executeWithLock(() -> aquariumInstance.hasUser(username));
+        return aquariumInstance.hasUser(username);
     }
 
     public String getAquariumStateSummaryFor(String username) {
-        return executeWithLock(() -> aquariumInstance.getSummaryFor(username));
+        return aquariumInstance.getSummaryFor(username);
     }
 
     public String getAquariumStateSummary() {
-        return executeWithLock(() -> aquariumInstance.getSummary());
+        return aquariumInstance.getSummary();
+    }
+
+    public StatusSnapshot getStatusFor(String username) {
+        return aquariumInstance.getStatusFor(username);
+    }
+
+    public TankSummary getTankSummary() {
+        return aquariumInstance.getTankSummary();
+    }
+
+    public UserView getUserView(String username) {
+        return aquariumInstance.getUserView(username);
+    }
+
+    public String describeReads() {
+        return aquariumInstance.describeReads();
     }
 
     // --- MODIFIERS ---
     public void addUser(UserProfile user) {
-        executeWithLock(() -> aquariumInstance.addUser(user));
+        aquariumInstance.addUser(user);
     }
 
     public boolean removeUser(UserProfile user) {
-        return executeWithLock(() -> aquariumInstance.removeUser(user));
+        return aquariumInstance.removeUser(user);
     }
 
     public String changeUsername(String oldName, String newName) {
-        return executeWithLock(() ->{
-            if (aquariumInstance.changeName(oldName, newName)) {
-                return "Name successfully changed from '" + oldName + "' to '" + newName + "'";
-            } else {
-                return "Failed to change name";
-            }
-        });
+        if (aquariumInstance.changeName(oldName, newName)) {
+            return "Name successfully changed from '" + oldName + "' to '" + newName + "'";
+        } else {
+            return "Failed to change name";
+        }
     }
 
     public String addFish(String username) {
-        return executeWithLock(() -> {
-            Fish newFish = aquariumInstance.addFishRandom(username);
-            return "New Fish Added:\n" + newFish.toString();
-        });
+        Fish newFish = aquariumInstance.addFishRandom(username);
+        return "New Fish Added:\n" + newFish.toString();
     }
 
     public String viewFish(String username) {
-        return executeWithLock(() -> aquariumInstance.userToString(username));
+        return aquariumInstance.userToString(username);
     }
 
     public String removeFish(String username, String fishName) {
-        return executeWithLock(() ->{ 
-            Fish removedFish = aquariumInstance.removeFish(username, fishName);
-            return "Successfully removed fish: " + removedFish.getName();
-        });
+        Fish removedFish = aquariumInstance.removeFish(username, fishName);
+        return "Successfully removed fish: " + removedFish.getName();
     }
 
     public String cleanTank() {
-        return executeWithLock(() -> {
-            aquariumInstance.cleanTank();
-            return "Tank successfully cleaned!";
-        });
+        aquariumInstance.cleanTank();
+        return "Tank successfully cleaned!";
     }
 
     public String feedFish(String userName) {
-        return executeWithLock(() -> {
-            int numFishFed = aquariumInstance.feedFish(userName);
-            return "Fish Fed: " + numFishFed;
+        int numFishFed = aquariumInstance.feedFish(userName);
+        return "Fish Fed: " + numFishFed;
+    }
+
+    /**
+     * Run several commands for one user as one change. No other command for the user
+     * runs in between, nor any other clean-tank if the batch cleans, and observers get
+     * at most one state change. Each command still succeeds or fails on its own, e.g.
+     * add-fish on a full tank.
+     * @return the outcome of each command, in order
+     */
+    public List<String> executeBatch(String username, List<Command> commands) {
+        validateBatch(commands);
+
+        return aquariumInstance.batchUpdate(username, commands.contains(Command.CLEAN_TANK), () -> {
+            List<String> results = new ArrayList<>(commands.size());
+            for (Command command : commands) {
+                results.add(runBatched(username, command));
+            }
+            return results;
         });
     }
 
+    /**
+     * Check a batch before running it, so a bad one can be answered without waiting for
+     * a turn at the tank.
+     * @throws IllegalArgumentException if the batch is empty, too long or holds a
+     *         command that can not be batched
+     */
+    public static void validateBatch(List<Command> commands) {
+        if (commands.isEmpty() || commands.size() > MAX_BATCH_SIZE)
+            throw new IllegalArgumentException("A batch must have 1 to " + MAX_BATCH_SIZE + " commands");
+        for (Command command : commands) {
+            if (!BATCHABLE.contains(command))
+                throw new IllegalArgumentException("Can not batch command: " + command.getPrimaryAlias());
+        }
+    }
+
+    // --- HELPERS ---
+    private String runBatched(String username, Command command) {
+        try {
+            return switch (command) {
+                case ADD_FISH -> addFish(username);
+                case FEED_FISH -> feedFish(username);
+                case CLEAN_TANK -> cleanTank();
+                default -> throw new IllegalArgumentException("Can not batch command: " + command.getPrimaryAlias());
+            };
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+    }
+
 }
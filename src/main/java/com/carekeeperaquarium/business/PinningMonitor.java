@@ -0,0 +1,126 @@
+package com.carekeeperaquarium.business;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier thread.
+ * A virtual thread is pinned when it parks or blocks while it can not unmount, e.g.
+ * a socket write or lock wait done from inside a synchronized block. On JDK 21 only
+ * those parks are reported: threads contending to enter a monitor are not. Pins are
+ * grouped by the first application frame on the stack, along with the AquariumState
+ * call they happened in, so the offending lock site can be found quickly.
+ *
+ * Every pin is counted, but only the first at each site and then the 10th, 100th and
+ * so on are logged, so a hot site does not flood the console.
+ */
+public class PinningMonitor {
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final String APPLICATION_PACKAGE = "com.carekeeperaquarium.";
+    private static final String MONITOR_CLASS = "com.carekeeperaquarium.model.AquariumState";
+
+    private final Duration threshold;
+    private final LongAdder pinnedEvents = new LongAdder();
+    private final Map<String, AtomicLong> pinsBySite = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    /**
+     * @param threshold pins shorter than this are ignored
+     */
+    public PinningMonitor(Duration threshold) {
+        this.threshold = threshold;
+    }
+
+    public synchronized void start() {
+        if (stream != null)
+            return;
+        stream = new RecordingStream();
+        stream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(PINNED_EVENT, this::recordPin);
+        stream.startAsync();
+        System.out.println("Virtual thread pinning detection enabled (threshold "
+            + threshold.toMillis() + " ms)");
+    }
+
+    public synchronized void stop() {
+        if (stream == null)
+            return;
+        stream.close();
+        stream = null;
+        if (getPinnedEventCount() > 0)
+            System.out.println(getSummary());
+    }
+
+    // --- ACCESSORS ---
+    public long getPinnedEventCount() {
+        return pinnedEvents.sum();
+    }
+
+    public long getPinnedEventCount(String site) {
+        AtomicLong count = pinsBySite.get(site);
+        return count == null ? 0 : count.get();
+    }
+
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Pinned virtual threads: ").append(getPinnedEventCount()).append("\n");
+        pinsBySite.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()))
+            .forEach(entry -> summary.append("- ").append(entry.getKey())
+                .append(": ").append(entry.getValue().get()).append("\n"));
+        return summary.toString();
+    }
+
+    // --- HELPERS ---
+    private void recordPin(RecordedEvent event) {
+        String site = findApplicationFrame(event.getStackTrace());
+        pinnedEvents.increment();
+        long count = pinsBySite.computeIfAbsent(site, key -> new AtomicLong()).incrementAndGet();
+        if (shouldLog(count))
+            System.out.println("Virtual thread pinned for " + event.getDuration().toMillis()
+                + " ms at " + site + (count == 1 ? "" : " (" + count + " pins there so far)"));
+    }
+
+    /**
+     * @return true for the 1st, 10th, 100th... pin at a site
+     */
+    static boolean shouldLog(long count) {
+        while (count > 0 && count % 10 == 0)
+            count /= 10;
+        return count == 1;
+    }
+
+    /**
+     * Name the innermost application frame, plus the outermost AquariumState frame
+     * when there is one, since that is where the monitor is usually held.
+     */
+    private String findApplicationFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null)
+            return "unknown";
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        String innermost = null;
+        String monitorHolder = null;
+        for (RecordedFrame frame : frames) {
+            String type = frame.getMethod().getType().getName();
+            String method = type + "." + frame.getMethod().getName();
+            if (innermost == null && type.startsWith(APPLICATION_PACKAGE))
+                innermost = method;
+            if (type.equals(MONITOR_CLASS))
+                monitorHolder = method;
+        }
+        if (innermost == null)
+            return frames.isEmpty() ? "unknown" : frames.get(0).getMethod().getType().getName();
+        if (monitorHolder != null && !monitorHolder.equals(innermost))
+            return innermost + " (inside " + monitorHolder + ")";
+        return innermost;
+    }
+}
@@ -7,8 +7,24 @@ public class ThreadPoolManager {
     private static final ScheduledExecutorService scheduler = 
         java.util.concurrent.Executors.newScheduledThreadPool(2);
     
-    public static final ExecutorService clientExecutor = 
-        java.util.concurrent.Executors.newFixedThreadPool(10);
+    /**
+     * How client connections are given threads.
+     * FIXED caps concurrent sessions at the pool size; VIRTUAL gives every
+     * connection its own virtual thread so idle sessions cost almost nothing.
+     */
+    public enum ClientExecutorMode {
+        FIXED,
+        VIRTUAL
+    }
+
+    private static final int FIXED_CLIENT_THREADS = 10;
+
+    private static ClientExecutorMode clientExecutorMode = ClientExecutorMode.FIXED;
+    private static ExecutorService clientExecutor = newClientExecutor(clientExecutorMode);
+
+    // Slow calls (e.g. fish facts) offloaded from non-blocking event loops
+    private static final ExecutorService workerExecutor =
+        java.util.concurrent.Executors.newFixedThreadPool(4);
 
     private ThreadPoolManager() {
         // Private constructor to prevent instantiation
@@ -18,12 +34,42 @@ public class ThreadPoolManager {
         return scheduler;
     }
 
-    public static ExecutorService getClientExecutor() {
+    public static synchronized ExecutorService getClientExecutor() {
         return clientExecutor;
     }
 
-    public static void shutdown() {
+    public static synchronized ClientExecutorMode getClientExecutorMode() {
+        return clientExecutorMode;
+    }
+
+    /**
+     * Switch the executor used for new client connections.
+     * Connections already running on the previous executor are left to finish.
+     */
+    public static synchronized void setClientExecutorMode(ClientExecutorMode mode) {
+        if (mode == clientExecutorMode)
+            return;
+        ExecutorService previous = clientExecutor;
+        clientExecutor = newClientExecutor(mode);
+        clientExecutorMode = mode;
+        previous.shutdown();
+    }
+
+    private static ExecutorService newClientExecutor(ClientExecutorMode mode) {
+        return switch (mode) {
+            case FIXED -> java.util.concurrent.Executors.newFixedThreadPool(FIXED_CLIENT_THREADS);
+            case VIRTUAL -> java.util.concurrent.Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("aquarium-client-", 0).factory());
+        };
+    }
+
+    public static ExecutorService getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    public static synchronized void shutdown() {
         scheduler.shutdown();
         clientExecutor.shutdown();
+        workerExecutor.shutdown();
     }
 }
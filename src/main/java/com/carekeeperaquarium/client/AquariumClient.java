@@ -1,123 +1,371 @@
 package com.carekeeperaquarium.client;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
+import com.carekeeperaquarium.common.Addresses;
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.ChannelConnection;
 import com.carekeeperaquarium.common.Command;
+import com.carekeeperaquarium.common.Compression;
+import com.carekeeperaquarium.common.Connection;
+import com.carekeeperaquarium.common.Frame;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.common.ProtocolReader;
+import com.carekeeperaquarium.common.StatusDelta;
+import com.carekeeperaquarium.common.StatusSnapshot;
 
 public class AquariumClient {
-    private static final String SERVER_URL = "localhost";
-    private static final int SERVER_PORT = 8080;
-    private Socket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private static final int RECONNECT_ATTEMPTS = 5;
+    private static final int RECONNECT_DELAY_MILLIS = 1000;
+
+    private final ClientConfig config;
+    // Null when run over a connection handed in, which can not be reopened
+    private SocketAddress serverAddress;
+    // Replaced when the client reconnects
+    private volatile Connection connection;
+    private volatile OutputStream out;
+    private volatile ProtocolReader in;
     private final ConsoleUI console;
     private String aquariumStatus = "This is a placeholder\ntext to represent\nwhat I want to show";
+    // Last full status when "delta" is on; deltas are applied to it
+    private StatusSnapshot statusModel;
     private volatile boolean running = true;
     private volatile boolean loggedIn = false;
     private volatile boolean pauseMessages = false;
     private volatile boolean waitingForServerInput = false;
+    private volatile boolean negotiating = false;
+    private volatile boolean binary = false;
+    private volatile boolean pipelined = false;
+    // From the server at login with "resume"; lets a reconnect pick up the same user
+    private volatile String resumeToken;
+    private volatile boolean resuming = false;
+    private int nextRequestId = 1;
 
     public AquariumClient() throws IOException {
+        this(ClientConfig.fromSystemProperties());
+    }
+
+    public AquariumClient(ClientConfig config) throws IOException {
+        this.config = config;
         console = new ConsoleUI();
         // Set initial status
         console.setStatusHeader(aquariumStatus);
     }
 
     public void run() throws IOException {
-        console.println("Connecting to Aquarium Server at " + SERVER_URL + ":" + SERVER_PORT + "...");
-        
-        socket = new Socket(SERVER_URL, SERVER_PORT);
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        
+        serverAddress = config.getServerAddress();
+        console.println("Connecting to Aquarium Server at " + Addresses.format(serverAddress) + "...");
+        // A channel rather than a Socket so "unix:" targets work too
+        run(ChannelConnection.open(serverAddress));
+    }
+
+    /**
+     * Run the client over an already open connection, such as an in-process loopback.
+     */
+    public void run(Connection connection) throws IOException {
+        attach(connection);
+
         console.println("Connected to server!");
-        
+
         // Start a thread to listen for messages from the server
         Thread listenerThread = new Thread(this::listenForMessages);
         listenerThread.setDaemon(true);
         listenerThread.start();
-        
+
+        // Ask for optional protocol features before logging in
+        List<String> features = config.getFeatures();
+        if (!features.isEmpty()) {
+            negotiating = true;
+            waitingForServerInput = true;
+            sendLine(Protocol.formatHandshake(Protocol.HELLO, features));
+        }
+
         // Main thread handles user input
         handleUserSession();
     }
 
     private void listenForMessages() {
-        try {
-            String message;
-            while (running && (message = in.readLine()) != null) {
-                if (!pauseMessages) {
-                    // Check for structured fish list data
-                    switch (message) {
-                        case "FISH_LIST:START" -> handleFishListSelection();
-                        case "FISH_LIST:EMPTY" -> console.println("You don't have any fish to remove.");
-                        case "FISH_LIST:ERROR" -> console.println("Error retrieving fish list.");
-                        case "FISH_FACT:START" -> handleFishFactSelection();
-                        case "STATUS_UPDATE:START" -> handleStatusUpdate();
-                        case "LOGIN:SUCCESSFUL" -> handleSuccessfulLogin();
-                        case "LOGIN:FAIL" -> handleLoginFail();
-                        default -> console.println(message);
-                    }
+        do {
+            try {
+                readMessages();
+            } catch (IOException e) {
+                if (running && resumeToken == null) {
+                    console.println("Disconnected from server.");
                 }
             }
-        } catch (IOException e) {
-            if (running) {
-                console.println("Disconnected from server.");
+        } while (running && resumeToken != null && reconnect());
+    }
+
+    /**
+     * Handle messages until the connection ends.
+     */
+    private void readMessages() throws IOException {
+        while (running) {
+            if (binary) {
+                Frame frame = in.readFrame();
+                if (frame == null)
+                    break;
+                // Heartbeats are answered even while messages are paused
+                if (frame.opcode() == BinaryCodec.OP_PING)
+                    sendBytes(BinaryCodec.frame(BinaryCodec.OP_PONG, new byte[0]));
+                else if (!pauseMessages)
+                    handleFrame(frame);
+            } else {
+                String message = in.readLine();
+                if (message == null)
+                    break;
+                if (message.equals(Protocol.PING))
+                    sendLine(Protocol.PONG);
+                else if (!pauseMessages)
+                    handleLine(message);
+            }
+        }
+    }
+
+    /**
+     * Open a new connection and ask for the same features; the session is resumed
+     * with the token once the server accepts them.
+     * @return false if the server could not be reached
+     */
+    private boolean reconnect() {
+        if (serverAddress == null)
+            return false;
+        console.println("Connection lost, reconnecting...");
+        for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS && running; attempt++) {
+            try {
+                attach(ChannelConnection.open(serverAddress));
+                // The new connection starts out in text, like the first one
+                binary = false;
+                pipelined = false;
+                resuming = true;
+                negotiating = true;
+                sendLine(Protocol.formatHandshake(Protocol.HELLO, config.getFeatures()));
+                return true;
+            } catch (IOException e) {
+                pauseThreadFor(RECONNECT_DELAY_MILLIS * attempt);
+            }
+        }
+        console.println("Could not reconnect to the server.");
+        resumeToken = null;
+        return false;
+    }
+
+    // --- TEXT PROTOCOL ---
+    private void handleLine(String message) throws IOException {
+        if (negotiating && Protocol.isHandshake(message, Protocol.ACCEPT)) {
+            handleAccept(Protocol.parseFeatures(message));
+            return;
+        }
+        if (Protocol.isHandshake(message, Protocol.BUSY)) {
+            handleBusy(Protocol.parseRetryAfter(message));
+            return;
+        }
+        if (Protocol.isHandshake(message, Protocol.THROTTLED)) {
+            handleThrottled(Protocol.parseRetryAfterMillis(message));
+            return;
+        }
+        if (Protocol.isHandshake(message, Protocol.SESSION_TOKEN)) {
+            resumeToken = message.substring(Protocol.SESSION_TOKEN.length()).trim();
+            return;
+        }
+        // Check for structured data
+        switch (message) {
+            case Protocol.FISH_LIST_START -> handleFishListSelection();
+            case Protocol.FISH_LIST_EMPTY -> handleEmptyFishList();
+            case Protocol.FISH_LIST_ERROR -> handleFishListError();
+            case Protocol.FISH_FACT_START -> handleFishFactSelection();
+            case Protocol.STATUS_UPDATE_START -> handleStatusUpdate();
+            case Protocol.STATUS_FULL_START -> {
+                statusModel = readStatusLines(Protocol.STATUS_FULL_END).toSnapshot();
+                showStatus(statusModel.toDisplayString());
+            }
+            case Protocol.STATUS_DELTA_START -> applyStatusDelta(readStatusLines(Protocol.STATUS_DELTA_END));
+            case Protocol.LOGIN_SUCCESSFUL -> handleSuccessfulLogin();
+            case Protocol.LOGIN_FAIL -> handleLoginFail(in.readLine());
+            default -> console.println(message);
+        }
+    }
+
+    private void handleFishListSelection() throws IOException {
+        ArrayList<String> fishList = new ArrayList<>();
+        String line;
+        console.println("Loading Fish...");
+
+        // Collect all fish data until END marker
+        while ((line = in.readLine()) != null && !line.equals(Protocol.FISH_LIST_END)) {
+            fishList.add(line);
+        }
+        selectFish(fishList);
+    }
+
+    private void handleFishFactSelection() throws IOException {
+        console.println("Waiting for fish fact...");
+        String fact = in.readLine();
+        // Clear the "Waiting for fish fact..." message
+        console.clearLastLine();
+        showFishFact(fact);
+    }
+
+    private void handleStatusUpdate() throws IOException {
+        StringBuilder statusBuilder = new StringBuilder();
+        String line;
+
+        // Collect all status data until END marker
+        while ((line = in.readLine()) != null && !line.equals(Protocol.STATUS_UPDATE_END)) {
+            if (statusBuilder.length() > 0) {
+                statusBuilder.append("\n");
+            }
+            statusBuilder.append(line);
+        }
+
+        showStatus(statusBuilder.toString());
+    }
+
+    private StatusDelta readStatusLines(String endMarker) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null && !line.equals(endMarker)) {
+            lines.add(line);
+        }
+        try {
+            return StatusDelta.fromLines(lines);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed status from server: " + e.getMessage(), e);
+        }
+    }
+
+    // --- BINARY PROTOCOL ---
+    private void handleFrame(Frame frame) throws IOException {
+        byte[] payload = frame.payload();
+        switch (frame.opcode()) {
+            // The interactive client has one request in flight at a time, so the ID is not needed
+            case BinaryCodec.OP_RESPONSE -> handleFrame(BinaryCodec.untag(payload).frame());
+            case BinaryCodec.OP_TEXT -> console.println(BinaryCodec.decodeText(payload));
+            case BinaryCodec.OP_LOGIN_SUCCESS -> {
+                handleSuccessfulLogin();
+                console.println(BinaryCodec.decodeText(payload));
+            }
+            case BinaryCodec.OP_LOGIN_FAIL -> handleLoginFail(BinaryCodec.decodeText(payload));
+            case BinaryCodec.OP_RESUME_TOKEN -> resumeToken = BinaryCodec.decodeText(payload);
+            case BinaryCodec.OP_THROTTLED -> handleThrottled(BinaryCodec.decodeRetryAfter(payload));
+            case BinaryCodec.OP_STATUS -> {
+                statusModel = BinaryCodec.decodeStatus(payload);
+                showStatus(statusModel.toDisplayString());
             }
+            case BinaryCodec.OP_STATUS_DELTA -> applyStatusDelta(BinaryCodec.decodeStatusDelta(payload));
+            case BinaryCodec.OP_SPECTATOR_STATUS ->
+                showStatus(BinaryCodec.decodeTankSummary(payload).toDisplayString().stripTrailing());
+            case BinaryCodec.OP_FISH_LIST -> {
+                List<String> fishList = BinaryCodec.decodeStrings(payload);
+                if (fishList.isEmpty())
+                    handleEmptyFishList();
+                else
+                    selectFish(new ArrayList<>(fishList));
+            }
+            case BinaryCodec.OP_FISH_LIST_ERROR -> handleFishListError();
+            case BinaryCodec.OP_FISH_FACT -> showFishFact(BinaryCodec.decodeText(payload));
+            case BinaryCodec.OP_TANK_SUMMARY ->
+                console.println(BinaryCodec.decodeTankSummary(payload).toDisplayString());
+            case BinaryCodec.OP_USER_VIEW ->
+                console.println(BinaryCodec.decodeUserView(payload).toDisplayString());
+            default -> console.println("Unknown message from server (opcode " + frame.opcode() + ")");
         }
     }
 
+    // --- MESSAGE HANDLING ---
+    private void handleAccept(Set<String> accepted) throws IOException {
+        negotiating = false;
+        binary = accepted.contains(Protocol.FEATURE_BINARY);
+        pipelined = accepted.contains(Protocol.FEATURE_PIPELINE);
+        // The server compresses everything after its answer
+        if (accepted.contains(Protocol.FEATURE_DEFLATE))
+            in.startInflating(Compression.newInflater());
+        if (resuming)
+            sendResume();
+        else
+            waitingForServerInput = false;
+    }
+
     private void handleSuccessfulLogin() {
         loggedIn = true;
         waitingForServerInput = false;
+        if (resuming) {
+            resuming = false;
+            console.println("Reconnected.");
+        }
     }
 
-    private void handleLoginFail() throws IOException {
-        console.println(in.readLine());
+    private void handleLoginFail(String reason) {
+        if (resuming) {
+            // The server let the user go; logging in again would start from scratch
+            resuming = false;
+            resumeToken = null;
+            console.println(reason + " Restart the client to log in again.");
+            running = false;
+        } else if (negotiating) {
+            // An older server took the handshake for a username; carry on in text
+            negotiating = false;
+            console.println("Server does not support protocol options, using text protocol.");
+        } else {
+            console.println(reason);
+        }
         waitingForServerInput = false;
     }
 
-    private void handleFishListSelection() throws IOException {
+    private void handleBusy(int retryAfterSeconds) {
+        if (retryAfterSeconds > 0)
+            console.println("Server is busy, please try again in " + retryAfterSeconds + " seconds.");
+        else
+            console.println("Server is busy, please try again later.");
+        running = false;
+        waitingForServerInput = false;
+    }
+
+    private void handleThrottled(long retryAfterMillis) {
+        console.println("Too many commands, slow down"
+            + (retryAfterMillis > 0 ? " (try again in " + retryAfterMillis + " ms)." : "."));
+        // Whatever the menu was waiting for is not coming
+        waitingForServerInput = false;
+    }
+
+    private void handleEmptyFishList() {
+        console.println("You don't have any fish to remove.");
+        waitingForServerInput = false;
+    }
+
+    private void handleFishListError() {
+        console.println("Error retrieving fish list.");
+        waitingForServerInput = false;
+    }
+
+    private void selectFish(ArrayList<String> fishList) throws IOException {
         try {
-            ArrayList<String> fishList = new ArrayList<>();
-            String line;
-            console.println("Loading Fish...");
-            
-            // Collect all fish data until END marker
-            while ((line = in.readLine()) != null && !line.equals("FISH_LIST:END")) {
-                fishList.add(line);
-            }
-            
             if (fishList.isEmpty()) {
                 console.println("No fish available");
-                out.println("!cancel");
+                sendSelection(Protocol.CANCEL);
                 return;
             }
-                   
+
             // Get user selection
             String selection = MenuHandler.handleFishSelectionMenu(console, fishList);
-            
+
             // Send selection back to server
-            out.println(selection);
+            sendSelection(selection);
 
         } finally {
             waitingForServerInput = false;
         }
     }
 
-    private void handleFishFactSelection() throws IOException {
+    private void showFishFact(String fact) {
         try {
-            console.println("Waiting for fish fact...");
-            
-            String fact = in.readLine();
-            
-            // Clear the "Waiting for fish fact..." message
-            console.clearLastLine();
-            
             // Print the actual fact with word wrapping
             printWrapped(fact, 80);
             console.println(""); // Add blank line after
@@ -125,15 +373,36 @@ public class AquariumClient {
             waitingForServerInput = false;
         }
     }
-    
+
+    private void showStatus(String status) {
+        aquariumStatus = status;
+        console.setStatusHeader(aquariumStatus);
+        // Spectators have no menu to disturb, so every update is printed as it comes
+        if (config.isSpectator() && loggedIn) {
+            console.println("");
+            console.println(status);
+        }
+
+        // Don't auto-refresh to avoid clearing menus
+        // Status will be displayed next time user opens menu
+    }
+
+    private void applyStatusDelta(StatusDelta delta) {
+        // The server always sends a full status first
+        if (statusModel == null)
+            return;
+        statusModel = delta.applyTo(statusModel);
+        showStatus(statusModel.toDisplayString());
+    }
+
     private void printWrapped(String text, int maxWidth) {
         if (text == null || text.isEmpty()) {
             return;
         }
-        
+
         String[] words = text.split("\\s+");
         StringBuilder line = new StringBuilder();
-        
+
         for (String word : words) {
             // If adding this word would exceed max width, print current line and start new one
             if (line.length() + word.length() + 1 > maxWidth) {
@@ -141,52 +410,121 @@ public class AquariumClient {
                     console.println(line.toString());
                     line = new StringBuilder();
                 }
-                
+
                 // Handle words longer than maxWidth
                 if (word.length() > maxWidth) {
                     console.println(word.substring(0, maxWidth));
                     word = word.substring(maxWidth);
                 }
             }
-            
+
             // Add word to current line
             if (line.length() > 0) {
                 line.append(" ");
             }
             line.append(word);
         }
-        
+
         // Print remaining text
         if (line.length() > 0) {
             console.println(line.toString());
         }
     }
 
-    private void handleStatusUpdate() throws IOException {
-        StringBuilder statusBuilder = new StringBuilder();
-        String line;
-        
-        // Collect all status data until END marker
-        while ((line = in.readLine()) != null && !line.equals("STATUS_UPDATE:END")) {
-            if (statusBuilder.length() > 0) {
-                statusBuilder.append("\n");
+    // --- SENDING ---
+    /**
+     * Use a freshly opened connection from now on, closing the one it replaces.
+     */
+    private synchronized void attach(Connection newConnection) {
+        Connection previous = connection;
+        connection = newConnection;
+        out = new BufferedOutputStream(newConnection.getOutputStream());
+        in = new ProtocolReader(newConnection.getInputStream());
+        if (previous != null) {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                // Already broken, which is why it is being replaced
             }
-            statusBuilder.append(line);
         }
-        
-        aquariumStatus = statusBuilder.toString();
-        console.setStatusHeader(aquariumStatus);
-        
-        // Don't auto-refresh to avoid clearing menus
-        // Status will be displayed next time user opens menu
+    }
+
+    private void sendResume() throws IOException {
+        if (binary)
+            sendFrame(BinaryCodec.OP_RESUME, resumeToken);
+        else
+            sendLine(Protocol.SESSION_RESUME + " " + resumeToken);
+    }
+
+    /**
+     * Hold user input back while reconnecting; the server would take it for a username.
+     */
+    private void awaitResume() {
+        while (resuming && running) {
+            pauseThreadFor(100);
+        }
+    }
+
+    private void sendLine(String line) throws IOException {
+        sendBytes((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendFrame(byte opcode, String text) throws IOException {
+        sendRequest(opcode, BinaryCodec.encodeText(text));
+    }
+
+    /**
+     * Send a client frame, wrapped with a request ID when pipelining was negotiated.
+     */
+    private void sendRequest(byte opcode, byte[] payload) throws IOException {
+        byte[] frame = BinaryCodec.frame(opcode, payload);
+        if (pipelined)
+            frame = BinaryCodec.tag(BinaryCodec.OP_REQUEST, takeRequestId(), frame);
+        sendBytes(frame);
+    }
+
+    private synchronized int takeRequestId() {
+        return nextRequestId++;
+    }
+
+    private synchronized void sendBytes(byte[] data) throws IOException {
+        out.write(data);
+        out.flush();
+    }
+
+    private void sendLogin(String username) throws IOException {
+        if (binary)
+            sendFrame(BinaryCodec.OP_LOGIN, username);
+        else
+            sendLine(username);
+    }
+
+    private void sendCommand(String input) throws IOException {
+        awaitResume();
+        if (binary)
+            sendRequest(Command.fromString(input).getOpcode(), new byte[0]);
+        else
+            sendLine(input);
+    }
+
+    private void sendSelection(String selection) throws IOException {
+        awaitResume();
+        if (binary)
+            sendFrame(BinaryCodec.OP_SELECT_FISH, selection);
+        else
+            sendLine(selection);
     }
 
     private void handleUserSession() {
         try {
             String input;
-            
+
+            if (config.isSpectator()) {
+                watchTank();
+                return;
+            }
             handleLogin();
-                
+
             while (running) {
                 // Wait if server is requesting input from the listener thread
                 if (waitingForServerInput) {
@@ -196,9 +534,9 @@ public class AquariumClient {
 
                 // Let the user decide when to move on
                 console.readLine("Press enter to continue: ");
-                
+
                 input = MenuHandler.handleMenu(console);
-                
+
                 // Set flag before sending remove-fish command to wait for server response
                 if (input.equalsIgnoreCase(Command.REMOVE_FISH.getPrimaryAlias()) ||
                     input.equalsIgnoreCase(Command.GET_FISH_FACT.getPrimaryAlias())) {
@@ -207,12 +545,21 @@ public class AquariumClient {
                 }
 
                 // Check if quitting
-                if (isQuit(input))
+                if (isQuit(input)) {
+                    // Otherwise a resumable user would wait out its grace period on the server;
+                    // dropping the token first keeps the listener from reconnecting
+                    String token = resumeToken;
+                    resumeToken = null;
+                    if (token != null)
+                        sendCommand(input);
                     break;
-                
+                }
+
                 // Send to server
-                this.out.println(input);
+                sendCommand(input);
             }
+        } catch (IOException e) {
+            console.println("Disconnected from server.");
         } finally {
             closeConnection();
         }
@@ -226,20 +573,42 @@ public class AquariumClient {
         return false;
     }
 
-    private void handleLogin() {
-        while (!loggedIn) {
+    private void handleLogin() throws IOException {
+        while (!loggedIn && running) {
             if (waitingForServerInput) {
                 pauseThreadFor(100);
                 continue;
             }
             String input = console.readLine("Enter username: ");
             if (input != null && !input.trim().isEmpty()) {
-                out.println(input);
                 waitingForServerInput = true;
+                sendLogin(input);
             }
         }
     }
 
+    /**
+     * Join as a spectator and show the tank until the user presses enter.
+     */
+    private void watchTank() throws IOException {
+        // Let the feature handshake finish first
+        while (waitingForServerInput && running) {
+            pauseThreadFor(100);
+        }
+        waitingForServerInput = true;
+        if (binary)
+            sendRequest(BinaryCodec.OP_SPECTATE, new byte[0]);
+        else
+            sendLine(Protocol.SPECTATE);
+        while (waitingForServerInput && running) {
+            pauseThreadFor(100);
+        }
+        if (!loggedIn)
+            return;
+        console.readLine("Press enter to stop watching: ");
+        sendCommand(Command.QUIT.getPrimaryAlias());
+    }
+
     private void pauseThreadFor(int duration) {
         try {
             Thread.sleep(duration);
@@ -254,7 +623,7 @@ public class AquariumClient {
         try {
             if (out != null) out.close();
             if (in != null) in.close();
-            if (socket != null) socket.close();
+            if (connection != null) connection.close();
             if (console != null) {
                 console.println("Connection closed.");
                 console.close();
@@ -0,0 +1,90 @@
+package com.carekeeperaquarium.client;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import com.carekeeperaquarium.common.Addresses;
+
+/**
+ * Startup configuration for the aquarium client, read from "aquarium.*" system
+ * properties, e.g. {@code java -Daquarium.features=binary -jar ... client}.
+ */
+public class ClientConfig {
+    private static final String PREFIX = "aquarium.";
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_PORT = 8080;
+
+    private final Properties properties;
+
+    public ClientConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static ClientConfig fromSystemProperties() {
+        return new ClientConfig(System.getProperties());
+    }
+
+    // --- ACCESSORS ---
+    public String getHost() {
+        String value = get("host");
+        return value == null ? DEFAULT_HOST : value;
+    }
+
+    public int getPort() {
+        String value = get("port");
+        if (value == null)
+            return DEFAULT_PORT;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + PREFIX + "port: " + value);
+        }
+    }
+
+    /**
+     * @return the "aquarium.target" address, e.g. "unix:/tmp/aquarium.sock" or
+     *         "host:port", falling back to the host and port properties
+     */
+    public SocketAddress getServerAddress() {
+        String value = get("target");
+        if (value == null)
+            return new InetSocketAddress(getHost(), getPort());
+        try {
+            return Addresses.parse(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + PREFIX + "target: " + value);
+        }
+    }
+
+    /**
+     * @return optional protocol features to request from the server, e.g. "binary"
+     */
+    public List<String> getFeatures() {
+        List<String> features = new ArrayList<>();
+        String value = get("features");
+        if (value == null)
+            return features;
+        for (String feature : value.split(",")) {
+            if (!feature.isBlank())
+                features.add(feature.trim().toLowerCase(Locale.ROOT));
+        }
+        return features;
+    }
+
+    /**
+     * @return true to watch the tank as a spectator instead of logging in
+     */
+    public boolean isSpectator() {
+        return Boolean.parseBoolean(get("spectate"));
+    }
+
+    // --- HELPERS ---
+    private String get(String key) {
+        String value = properties.getProperty(PREFIX + key);
+        return (value == null || value.isBlank()) ? null : value.trim();
+    }
+}
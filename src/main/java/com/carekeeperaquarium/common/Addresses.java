@@ -0,0 +1,51 @@
+package com.carekeeperaquarium.common;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+
+/**
+ * Parses and prints the addresses the server listens on and the client connects to.
+ * Besides TCP "host:port" they may be Unix domain socket paths such as
+ * {@code unix:/tmp/aquarium.sock}, for clients on the same machine.
+ */
+public final class Addresses {
+    public static final String UNIX_SCHEME = "unix:";
+
+    private Addresses() {
+        // Static helpers only
+    }
+
+    /**
+     * Parse "unix:path", "host:port", ":port" or "port"; without a host the
+     * address stands for every local interface.
+     */
+    public static SocketAddress parse(String entry) {
+        if (entry.startsWith(UNIX_SCHEME)) {
+            String path = entry.substring(UNIX_SCHEME.length());
+            if (path.isBlank())
+                throw new IllegalArgumentException("Missing socket path: " + entry);
+            return UnixDomainSocketAddress.of(path);
+        }
+        int colon = entry.lastIndexOf(':');
+        String host = colon < 0 ? "" : entry.substring(0, colon);
+        try {
+            int port = Integer.parseInt(entry.substring(colon + 1));
+            return host.isEmpty() ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid address: " + entry);
+        }
+    }
+
+    /**
+     * @return the address in the form {@link #parse(String)} reads, with "*" for every interface
+     */
+    public static String format(SocketAddress address) {
+        if (address instanceof UnixDomainSocketAddress unix)
+            return UNIX_SCHEME + unix.getPath();
+        InetSocketAddress inet = (InetSocketAddress) address;
+        String host = inet.getAddress() != null && inet.getAddress().isAnyLocalAddress()
+            ? "*" : inet.getHostString();
+        return host + ":" + inet.getPort();
+    }
+}
@@ -0,0 +1,392 @@
+package com.carekeeperaquarium.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Framing and record encodings of the binary protocol.
+ *
+ * Every frame is {@code [opcode:1][length:4][payload:length]}. Client frames use the
+ * {@link Command} opcodes plus {@link #OP_LOGIN} and {@link #OP_SELECT_FISH}; server
+ * frames use the {@code OP_*} message types below. Integers inside payloads are
+ * unsigned varints and cleanliness is sent in hundredths, which is all the precision
+ * the client ever displays.
+ *
+ * With the "pipeline" feature a client wraps commands in {@link #OP_REQUEST} frames
+ * carrying a request ID, and the server wraps each reply in an {@link #OP_RESPONSE}
+ * with the same ID; see {@link #tag(byte, int, byte[])}. Status updates stay untagged.
+ * Heartbeats ({@link #OP_PING}, {@link #OP_PONG}) are never tagged either.
+ *
+ * With the "mux" feature one connection carries many sessions: each frame of a
+ * session travels inside an {@link #OP_SESSION} frame with the session's ID, tagged
+ * the same way, and {@link #OP_SESSION_END} closes a session from either side.
+ *
+ * With the "resume" feature the server sends an {@link #OP_RESUME_TOKEN} before the
+ * login reply, and a reconnecting client sends {@link #OP_RESUME} with that token
+ * instead of {@link #OP_LOGIN}.
+ *
+ * A client that sends {@link #OP_SPECTATE} instead of logging in receives an
+ * {@link #OP_SPECTATOR_STATUS} (a tank summary) after every change.
+ */
+public final class BinaryCodec {
+    public static final int HEADER_LENGTH = 5;
+    public static final int MAX_PAYLOAD_LENGTH = 1 << 20;
+
+    // Client to server (besides Command opcodes)
+    public static final byte OP_LOGIN = 0x10;
+    public static final byte OP_SELECT_FISH = 0x11;
+    public static final byte OP_REQUEST = 0x12;
+    public static final byte OP_RESUME = 0x13;
+    public static final byte OP_SPECTATE = 0x14;
+
+    // Either direction, empty payload
+    public static final byte OP_PING = 0x20;
+    public static final byte OP_PONG = 0x21;
+
+    // Either direction, with the "mux" feature
+    public static final byte OP_SESSION = 0x22;
+    public static final byte OP_SESSION_END = 0x23;
+
+    // Server to client
+    public static final byte OP_TEXT = 0x40;
+    public static final byte OP_LOGIN_SUCCESS = 0x41;
+    public static final byte OP_LOGIN_FAIL = 0x42;
+    public static final byte OP_STATUS = 0x43;
+    public static final byte OP_FISH_LIST = 0x44;
+    public static final byte OP_FISH_LIST_ERROR = 0x45;
+    public static final byte OP_FISH_FACT = 0x46;
+    public static final byte OP_TANK_SUMMARY = 0x47;
+    public static final byte OP_USER_VIEW = 0x48;
+    public static final byte OP_STATUS_DELTA = 0x49;
+    public static final byte OP_RESPONSE = 0x4A;
+    public static final byte OP_RESUME_TOKEN = 0x4B;
+    public static final byte OP_SPECTATOR_STATUS = 0x4C;
+    // Varint millis until the command would be accepted
+    public static final byte OP_THROTTLED = 0x4D;
+
+    // Which optional fields a status delta carries
+    private static final int DELTA_CLEANLINESS = 1;
+    private static final int DELTA_MAX_CLEANLINESS = 1 << 1;
+    private static final int DELTA_USERS_ONLINE = 1 << 2;
+
+    private BinaryCodec() {
+        // Static helpers only
+    }
+
+    // --- FRAMING ---
+    public static byte[] frame(byte opcode, byte[] payload) {
+        return frame(opcode, payload, new byte[0]);
+    }
+
+    /**
+     * Frame a payload made of two parts, e.g. a shared section followed by a per-user one,
+     * copying each part once.
+     */
+    public static byte[] frame(byte opcode, byte[] head, byte[] tail) {
+        int length = head.length + tail.length;
+        byte[] frame = new byte[HEADER_LENGTH + length];
+        frame[0] = opcode;
+        frame[1] = (byte) (length >>> 24);
+        frame[2] = (byte) (length >>> 16);
+        frame[3] = (byte) (length >>> 8);
+        frame[4] = (byte) length;
+        System.arraycopy(head, 0, frame, HEADER_LENGTH, head.length);
+        System.arraycopy(tail, 0, frame, HEADER_LENGTH + head.length, tail.length);
+        return frame;
+    }
+
+    /**
+     * A frame unwrapped from an {@link #OP_REQUEST} or {@link #OP_RESPONSE}.
+     */
+    public record Tagged(int requestId, Frame frame) { }
+
+    /**
+     * Wrap an encoded frame as {@code [outer opcode][length][requestId:varint][opcode:1][payload]}.
+     */
+    public static byte[] tag(byte outerOpcode, int requestId, byte[] frame) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(frame.length + 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVarInt(out, requestId);
+            out.writeByte(frame[0]);
+        } catch (IOException e) {
+            // Writing to memory can not fail
+            throw new UncheckedIOException(e);
+        }
+        byte[] inner = new byte[frame.length - HEADER_LENGTH];
+        System.arraycopy(frame, HEADER_LENGTH, inner, 0, inner.length);
+        return frame(outerOpcode, bytes.toByteArray(), inner);
+    }
+
+    public static Tagged untag(byte[] payload) throws IOException {
+        DataInputStream in = input(payload);
+        int requestId = readVarInt(in);
+        // Five varint bytes can carry the sign bit; a negative ID could not be tagged back
+        if (requestId < 0)
+            throw new IOException("Invalid request ID: " + requestId);
+        byte opcode = in.readByte();
+        return new Tagged(requestId, new Frame(opcode, in.readAllBytes()));
+    }
+
+    public static void checkPayloadLength(int length) throws IOException {
+        if (length < 0 || length > MAX_PAYLOAD_LENGTH)
+            throw new IOException("Invalid frame length: " + length);
+    }
+
+    // --- TEXT ---
+    public static byte[] encodeText(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static String decodeText(byte[] payload) {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    // --- COMMANDS ---
+    /**
+     * Payload of a {@link Command#BATCH} frame: one opcode byte per command.
+     */
+    public static byte[] encodeCommands(List<Command> commands) {
+        byte[] payload = new byte[commands.size()];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = commands.get(i).getOpcode();
+        }
+        return payload;
+    }
+
+    public static List<Command> decodeCommands(byte[] payload) {
+        List<Command> commands = new ArrayList<>(payload.length);
+        for (byte opcode : payload) {
+            commands.add(Command.fromOpcode(opcode));
+        }
+        return commands;
+    }
+
+    // --- RECORDS ---
+    /**
+     * A status payload is the tank section followed by the fish section; the two can be
+     * encoded separately so the tank section is shared by every user's frame.
+     */
+    public static byte[] encodeStatus(StatusSnapshot status) {
+        return encode(out -> {
+            writeTankStatus(out, status.cleanliness(), status.maxCleanliness(), status.usersOnline());
+            writeFishList(out, status.fish());
+        });
+    }
+
+    public static byte[] encodeTankStatus(double cleanliness, double maxCleanliness, int usersOnline) {
+        return encode(out -> writeTankStatus(out, cleanliness, maxCleanliness, usersOnline));
+    }
+
+    public static byte[] encodeFishList(List<FishRecord> fish) {
+        return encode(out -> writeFishList(out, fish));
+    }
+
+    public static StatusSnapshot decodeStatus(byte[] payload) throws IOException {
+        DataInputStream in = input(payload);
+        double cleanliness = readHundredths(in);
+        double maxCleanliness = readHundredths(in);
+        int usersOnline = readVarInt(in);
+        return new StatusSnapshot(cleanliness, maxCleanliness, usersOnline, readFishList(in));
+    }
+
+    /**
+     * Layout: {@code [flags:1]}, then each field named in the flags, then the changed
+     * fish and the names of removed fish.
+     */
+    public static byte[] encodeStatusDelta(StatusDelta delta) {
+        return encode(out -> {
+            int flags = (delta.cleanliness() != null ? DELTA_CLEANLINESS : 0)
+                | (delta.maxCleanliness() != null ? DELTA_MAX_CLEANLINESS : 0)
+                | (delta.usersOnline() != null ? DELTA_USERS_ONLINE : 0);
+            out.writeByte(flags);
+            if (delta.cleanliness() != null)
+                writeHundredths(out, delta.cleanliness());
+            if (delta.maxCleanliness() != null)
+                writeHundredths(out, delta.maxCleanliness());
+            if (delta.usersOnline() != null)
+                writeVarInt(out, delta.usersOnline());
+            writeFishList(out, delta.changedFish());
+            writeVarInt(out, delta.removedFish().size());
+            for (String name : delta.removedFish()) {
+                out.writeUTF(name);
+            }
+        });
+    }
+
+    public static StatusDelta decodeStatusDelta(byte[] payload) throws IOException {
+        DataInputStream in = input(payload);
+        int flags = in.readUnsignedByte();
+        Double cleanliness = (flags & DELTA_CLEANLINESS) != 0 ? readHundredths(in) : null;
+        Double maxCleanliness = (flags & DELTA_MAX_CLEANLINESS) != 0 ? readHundredths(in) : null;
+        Integer usersOnline = (flags & DELTA_USERS_ONLINE) != 0 ? readVarInt(in) : null;
+        List<FishRecord> changedFish = readFishList(in);
+        int removedCount = readVarInt(in);
+        List<String> removedFish = new ArrayList<>(removedCount);
+        for (int i = 0; i < removedCount; i++) {
+            removedFish.add(in.readUTF());
+        }
+        return new StatusDelta(cleanliness, maxCleanliness, usersOnline, changedFish, removedFish);
+    }
+
+    public static byte[] encodeTankSummary(TankSummary summary) {
+        return encode(out -> {
+            writeHundredths(out, summary.cleanliness());
+            writeVarInt(out, summary.users().size());
+            for (UserSummary user : summary.users()) {
+                out.writeUTF(user.username());
+                writeVarInt(out, user.points());
+                writeVarInt(out, user.fishOwned());
+            }
+        });
+    }
+
+    public static TankSummary decodeTankSummary(byte[] payload) throws IOException {
+        DataInputStream in = input(payload);
+        double cleanliness = readHundredths(in);
+        int count = readVarInt(in);
+        List<UserSummary> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            users.add(new UserSummary(in.readUTF(), readVarInt(in), readVarInt(in)));
+        }
+        return new TankSummary(cleanliness, users);
+    }
+
+    public static byte[] encodeUserView(UserView view) {
+        return encode(out -> {
+            out.writeUTF(view.username());
+            writeVarInt(out, view.points());
+            writeFishList(out, view.fish());
+        });
+    }
+
+    public static UserView decodeUserView(byte[] payload) throws IOException {
+        DataInputStream in = input(payload);
+        String username = in.readUTF();
+        int points = readVarInt(in);
+        return new UserView(username, points, readFishList(in));
+    }
+
+    /**
+     * @return a complete {@link #OP_SESSION_END} frame for the session
+     */
+    public static byte[] sessionEnd(int sessionId) {
+        return frame(OP_SESSION_END, encode(out -> writeVarInt(out, sessionId)));
+    }
+
+    public static int decodeSessionEnd(byte[] payload) throws IOException {
+        return readVarInt(input(payload));
+    }
+
+    public static byte[] encodeRetryAfter(long millis) {
+        return encode(out -> writeVarInt(out, (int) Math.min(Integer.MAX_VALUE, millis)));
+    }
+
+    public static long decodeRetryAfter(byte[] payload) throws IOException {
+        return readVarInt(input(payload));
+    }
+
+    public static byte[] encodeStrings(List<String> values) {
+        return encode(out -> {
+            writeVarInt(out, values.size());
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        });
+    }
+
+    public static List<String> decodeStrings(byte[] payload) throws IOException {
+        DataInputStream in = input(payload);
+        int count = readVarInt(in);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+
+    // --- HELPERS ---
+    @FunctionalInterface
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(PayloadWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            // Writing to memory can not fail
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static DataInputStream input(byte[] payload) {
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    private static void writeTankStatus(DataOutputStream out, double cleanliness, double maxCleanliness,
+                                        int usersOnline) throws IOException {
+        writeHundredths(out, cleanliness);
+        writeHundredths(out, maxCleanliness);
+        writeVarInt(out, usersOnline);
+    }
+
+    private static void writeFishList(DataOutputStream out, List<FishRecord> fish) throws IOException {
+        writeVarInt(out, fish.size());
+        for (FishRecord record : fish) {
+            out.writeUTF(record.name());
+            out.writeUTF(record.species());
+            writeVarInt(out, record.health());
+            writeVarInt(out, record.maxHealth());
+            writeVarInt(out, record.age());
+            writeVarInt(out, record.size());
+        }
+    }
+
+    private static List<FishRecord> readFishList(DataInputStream in) throws IOException {
+        int count = readVarInt(in);
+        List<FishRecord> fish = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            fish.add(new FishRecord(in.readUTF(), in.readUTF(),
+                readVarInt(in), readVarInt(in), readVarInt(in), readVarInt(in)));
+        }
+        return fish;
+    }
+
+    private static void writeHundredths(DataOutputStream out, double value) throws IOException {
+        writeVarInt(out, (int) Math.round(value * 100));
+    }
+
+    private static double readHundredths(DataInputStream in) throws IOException {
+        return readVarInt(in) / 100.0;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        if (value < 0)
+            throw new IllegalArgumentException("Negative value can not be encoded: " + value);
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,52 @@
+package com.carekeeperaquarium.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A {@link Connection} over a blocking socket channel, TCP or Unix domain.
+ */
+public class ChannelConnection implements Connection {
+
+    private final SocketChannel channel;
+    private final InputStream in;
+    private final OutputStream out;
+
+    public ChannelConnection(SocketChannel channel) {
+        this.channel = channel;
+        this.in = Channels.newInputStream(channel);
+        this.out = Channels.newOutputStream(channel);
+    }
+
+    public static ChannelConnection open(SocketAddress address) throws IOException {
+        return new ChannelConnection(SocketChannel.open(address));
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        channel.shutdownInput();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+}
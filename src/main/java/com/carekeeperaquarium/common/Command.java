@@ -6,19 +6,30 @@ package com.carekeeperaquarium.common;
  * and consistency across the client-server boundary.
  */
 public enum Command {
-    ADD_FISH("add-fish"),
-    VIEW_FISH("view-fish"),
-    FEED_FISH("feed-fish"),
-    REMOVE_FISH("remove-fish"),
-    CLEAN_TANK("clean-tank"),
-    VIEW_TANK("view-tank"),
-    GET_FISH_FACT("get-fish-fact"),
-    QUIT("quit", "exit"),
-    UNKNOWN("");
+    ADD_FISH(0x01, "add-fish"),
+    VIEW_FISH(0x02, "view-fish"),
+    FEED_FISH(0x03, "feed-fish"),
+    REMOVE_FISH(0x04, "remove-fish"),
+    CLEAN_TANK(0x05, "clean-tank"),
+    VIEW_TANK(0x06, "view-tank"),
+    GET_FISH_FACT(0x07, "get-fish-fact"),
+    QUIT(0x08, "quit", "exit"),
+    BATCH(0x09, "batch"),
+    UNKNOWN(0x00, "");
     
+    private static final Command[] BY_OPCODE = new Command[256];
+
+    static {
+        for (Command cmd : Command.values()) {
+            BY_OPCODE[cmd.opcode & 0xFF] = cmd;
+        }
+    }
+
+    private final byte opcode;
     private final String[] aliases;
     
-    Command(String... aliases) {
+    Command(int opcode, String... aliases) {
+        this.opcode = (byte) opcode;
         this.aliases = aliases;
     }
     
@@ -47,6 +58,24 @@ public enum Command {
         return UNKNOWN;
     }
     
+    /**
+     * Look up a command by its binary protocol opcode.
+     * @param opcode The opcode byte of a binary frame
+     * @return The corresponding Command, or UNKNOWN if no match
+     */
+    public static Command fromOpcode(byte opcode) {
+        Command cmd = BY_OPCODE[opcode & 0xFF];
+        return cmd == null ? UNKNOWN : cmd;
+    }
+
+    /**
+     * Get the opcode used for this command in the binary protocol.
+     * @return The opcode byte
+     */
+    public byte getOpcode() {
+        return opcode;
+    }
+
     /**
      * Get the primary alias for this command.
      * @return The first alias defined for this command
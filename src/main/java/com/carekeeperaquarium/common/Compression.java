@@ -0,0 +1,52 @@
+package com.carekeeperaquarium.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Settings shared by both ends of a compressed connection.
+ *
+ * Once the "deflate" feature is negotiated everything the server sends is one
+ * raw deflate stream, sync-flushed after every message so the client can decode
+ * it right away. Both sides keep their Deflater/Inflater for the whole
+ * connection, so text repeated between updates is sent as short back-references,
+ * and both start from the same preset dictionary so even the first status update
+ * compresses well.
+ */
+public final class Compression {
+
+    // Strings that show up in most messages; the most common ones go last
+    private static final byte[] DICTIONARY = String.join("\n",
+        "Angel Fish", "Yellow Tang", "Neon Goby", "Clown Loach", "Swordtail", "Cardinal Tetra",
+        "Bristlenose Pleco", "Betta", "Tiger Barb", "White Cloud Mountain Minnow",
+        "Convict Cichlid", "Clownfish", "Fish Fed: ", "New Fish Added: ", "Tank successfully cleaned!",
+        Protocol.FISH_LIST_START, Protocol.FISH_LIST_END, Protocol.FISH_FACT_START,
+        "Aquarium Cleanliness: ", "- ", " (Points: ", ", Fish Owned: ", ")",
+        "User: ", ", Points: ", "Fish:", "Name: ", ", Species: ", ", Health: ", ", Age: ", ", Size: ",
+        "(DEAD)", "Your Fish:", "No Fish yet!",
+        Protocol.STATUS_UPDATE_START, "Tank Cleanliness: ", "/100.00", "Users Online: ",
+        Protocol.STATUS_UPDATE_END, "").getBytes(StandardCharsets.UTF_8);
+
+    private Compression() {
+        // Constants and factories only
+    }
+
+    /**
+     * @return a compressor for one connection, primed with the shared dictionary
+     */
+    public static Deflater newDeflater() {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setDictionary(DICTIONARY);
+        return deflater;
+    }
+
+    /**
+     * @return a decompressor matching {@link #newDeflater()}
+     */
+    public static Inflater newInflater() {
+        Inflater inflater = new Inflater(true);
+        inflater.setDictionary(DICTIONARY);
+        return inflater;
+    }
+}
@@ -0,0 +1,24 @@
+package com.carekeeperaquarium.common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * One end of a byte stream between client and server, whatever carries it:
+ * a TCP or Unix domain socket, or an in-process {@link LoopbackConnection}.
+ * Closing either stream closes the whole connection, as with a socket.
+ */
+public interface Connection extends Closeable {
+
+    InputStream getInputStream();
+
+    OutputStream getOutputStream();
+
+    /**
+     * Make reads on this end see end of stream, waking a reader blocked on it,
+     * while writes still go through.
+     */
+    void shutdownInput() throws IOException;
+}
@@ -0,0 +1,20 @@
+package com.carekeeperaquarium.common;
+
+/**
+ * Immutable description of a fish as sent to clients.
+ */
+public record FishRecord(String name, String species, int health, int maxHealth, int age, int size) {
+
+    public boolean isDead() {
+        return health <= 0;
+    }
+
+    /**
+     * Render the fish the same way the server has always printed it.
+     */
+    public String toDisplayString() {
+        return String.format(
+            "Name: %s, Species: %s, Health: %d/%d, Age: %d, Size: %d",
+            name, species, health, maxHealth, age, size);
+    }
+}
@@ -0,0 +1,7 @@
+package com.carekeeperaquarium.common;
+
+/**
+ * One message of the binary protocol: an opcode and its payload.
+ */
+public record Frame(byte opcode, byte[] payload) {
+}
@@ -0,0 +1,205 @@
+package com.carekeeperaquarium.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-process {@link Connection}: two bounded byte pipes cross-wired between a
+ * pair of ends, so a client and a session can talk in one JVM without sockets.
+ * Like a socket, a writer blocks while the pipe is full, the reader sees end of
+ * stream once the other end closes and its data is drained, writing after
+ * closing fails, and whatever is written to an end that closed is dropped.
+ *
+ * Pipes wait on a {@link ReentrantLock} rather than a monitor so that they do
+ * not pin the virtual threads the blocking transport may run on.
+ */
+public final class LoopbackConnection implements Connection {
+
+    public record Pair(LoopbackConnection client, LoopbackConnection server) {
+    }
+
+    private final Pipe incoming;
+    private final Pipe outgoing;
+    private final InputStream in;
+    private final OutputStream out;
+
+    private LoopbackConnection(Pipe incoming, Pipe outgoing) {
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+        this.in = new PipeInputStream();
+        this.out = new PipeOutputStream();
+    }
+
+    /**
+     * @param bufferSize bytes each direction can hold before the writer blocks
+     */
+    public static Pair pair(int bufferSize) {
+        Pipe toServer = new Pipe(bufferSize);
+        Pipe toClient = new Pipe(bufferSize);
+        return new Pair(new LoopbackConnection(toClient, toServer), new LoopbackConnection(toServer, toClient));
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    @Override
+    public void shutdownInput() {
+        incoming.closeReader();
+    }
+
+    @Override
+    public void close() {
+        incoming.closeReader();
+        outgoing.closeWriter();
+    }
+
+    // --- HELPERS ---
+    private final class PipeInputStream extends InputStream {
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return incoming.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return incoming.available();
+        }
+
+        @Override
+        public void close() {
+            LoopbackConnection.this.close();
+        }
+    }
+
+    private final class PipeOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            outgoing.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            LoopbackConnection.this.close();
+        }
+    }
+
+    /**
+     * Ring buffer with one reader side and one writer side.
+     */
+    private static final class Pipe {
+        private final byte[] buffer;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private int head;
+        private int count;
+        private boolean readerClosed;
+        private boolean writerClosed;
+
+        Pipe(int capacity) {
+            if (capacity < 1)
+                throw new IllegalArgumentException("Buffer size must be at least 1");
+            this.buffer = new byte[capacity];
+        }
+
+        /**
+         * Like a socket read, an interrupt does not end the wait; closing does.
+         */
+        int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            lock.lock();
+            try {
+                while (count == 0 && !readerClosed && !writerClosed)
+                    notEmpty.awaitUninterruptibly();
+                if (readerClosed || count == 0)
+                    return -1;
+                int n = Math.min(len, count);
+                int first = Math.min(n, buffer.length - head);
+                System.arraycopy(buffer, head, b, off, first);
+                System.arraycopy(buffer, 0, b, off + first, n - first);
+                head = (head + n) % buffer.length;
+                count -= n;
+                notFull.signalAll();
+                return n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            lock.lock();
+            try {
+                while (len > 0) {
+                    while (count == buffer.length && !readerClosed && !writerClosed)
+                        notFull.awaitUninterruptibly();
+                    if (writerClosed)
+                        throw new IOException("Connection closed");
+                    if (readerClosed)
+                        return;
+                    int tail = (head + count) % buffer.length;
+                    int n = Math.min(len, Math.min(buffer.length - count, buffer.length - tail));
+                    System.arraycopy(b, off, buffer, tail, n);
+                    count += n;
+                    off += n;
+                    len -= n;
+                    notEmpty.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int available() {
+            lock.lock();
+            try {
+                return readerClosed ? 0 : count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void closeReader() {
+            lock.lock();
+            try {
+                readerClosed = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void closeWriter() {
+            lock.lock();
+            try {
+                writerClosed = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
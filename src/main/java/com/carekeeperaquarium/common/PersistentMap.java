@@ -0,0 +1,178 @@
+package com.carekeeperaquarium.common;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable map whose updated copies share almost everything with the original.
+ *
+ * Entries sit in a two-level trie of 32 x 32 slots indexed by the key's hash, each leaf
+ * an immutable map of the keys that land there. {@link #with(Object, Object)} and
+ * {@link #without(Object)} copy one path of two 32-slot arrays and one leaf, so a change
+ * costs about the same whether the map holds ten keys or ten thousand, and every
+ * untouched leaf is shared between the old map and the new one. Keys and values may not
+ * be null.
+ */
+public final class PersistentMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(new Object[WIDTH][], 0);
+
+    // Index by the hash's low bits, then the next ones; a missing slot means empty
+    private final Object[][] root;
+    private final int size;
+    private Set<Map.Entry<K, V>> entrySet;
+
+    private PersistentMap(Object[][] root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @return the map itself if it is already a PersistentMap, otherwise a copy of it
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap<?, ?> persistent)
+            return (PersistentMap<K, V>) persistent;
+        if (map.isEmpty())
+            return empty();
+
+        // Group the entries by leaf, then freeze each leaf once
+        Map<Integer, Map<K, V>> leaves = new HashMap<>();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            K key = Objects.requireNonNull(entry.getKey());
+            leaves.computeIfAbsent(slot(key), s -> new HashMap<>())
+                .put(key, Objects.requireNonNull(entry.getValue()));
+        }
+        Object[][] root = new Object[WIDTH][];
+        for (Map.Entry<Integer, Map<K, V>> leaf : leaves.entrySet()) {
+            int slot = leaf.getKey();
+            if (root[slot & MASK] == null)
+                root[slot & MASK] = new Object[WIDTH];
+            root[slot & MASK][slot >>> BITS] = Map.copyOf(leaf.getValue());
+        }
+        return new PersistentMap<>(root, map.size());
+    }
+
+    // --- ACCESSORS ---
+    @Override
+    public V get(Object key) {
+        Map<K, V> leaf = key == null ? null : leaf(slot(key));
+        return leaf == null ? null : leaf.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<K, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    // --- MODIFIERS ---
+    /**
+     * @return a map with the key mapped to the value, sharing all other leaves with this one
+     */
+    public PersistentMap<K, V> with(K key, V value) {
+        Objects.requireNonNull(value);
+        int slot = slot(Objects.requireNonNull(key));
+        Map<K, V> leaf = leaf(slot);
+        if (leaf != null && value.equals(leaf.get(key)))
+            return this;
+
+        Map<K, V> changed = leaf == null ? new HashMap<>(2) : new HashMap<>(leaf);
+        boolean added = changed.put(key, value) == null;
+        return replaceLeaf(slot, Map.copyOf(changed), added ? size + 1 : size);
+    }
+
+    /**
+     * @return a map without the key, sharing all other leaves with this one
+     */
+    public PersistentMap<K, V> without(Object key) {
+        if (!containsKey(key))
+            return this;
+        int slot = slot(key);
+        Map<K, V> changed = new HashMap<>(leaf(slot));
+        changed.remove(key);
+        return replaceLeaf(slot, changed.isEmpty() ? null : Map.copyOf(changed), size - 1);
+    }
+
+    // --- HELPERS ---
+    private static int slot(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (WIDTH * WIDTH - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<K, V> leaf(int slot) {
+        Object[] node = root[slot & MASK];
+        return node == null ? null : (Map<K, V>) node[slot >>> BITS];
+    }
+
+    private PersistentMap<K, V> replaceLeaf(int slot, Map<K, V> leaf, int newSize) {
+        Object[][] newRoot = root.clone();
+        Object[] node = root[slot & MASK];
+        Object[] newNode = node == null ? new Object[WIDTH] : node.clone();
+        newNode[slot >>> BITS] = leaf;
+        newRoot[slot & MASK] = newNode;
+        return new PersistentMap<>(newRoot, newSize);
+    }
+
+    // Walks the leaves in slot order, then each leaf's entries
+    private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private int nextSlot;
+        private Iterator<Map.Entry<K, V>> current = Map.<K, V>of().entrySet().iterator();
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && nextSlot < WIDTH * WIDTH) {
+                Map<K, V> leaf = leaf(nextSlot++);
+                if (leaf != null)
+                    current = leaf.entrySet().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+}
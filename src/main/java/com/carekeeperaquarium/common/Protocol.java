@@ -0,0 +1,140 @@
+package com.carekeeperaquarium.common;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Marker lines of the text protocol and the connect-time feature negotiation.
+ *
+ * A client that wants optional features sends {@code PROTOCOL:HELLO feature,feature}
+ * before logging in; the server answers {@code PROTOCOL:ACCEPT} with the subset it
+ * enabled, after which both sides use the negotiated framing. Usernames can not
+ * contain ':' so the handshake never clashes with a login.
+ */
+public final class Protocol {
+    public static final String WELCOME = "Welcome to CareKeeper Aquarium!";
+    // Sent instead of the welcome when the server turns a connection away
+    public static final String BUSY = "SERVER:BUSY";
+    public static final String RETRY_AFTER = "retry-after=";
+    // Sent instead of a command's reply when the client sends commands too fast
+    public static final String THROTTLED = "SERVER:THROTTLED";
+    public static final String RETRY_AFTER_MS = "retry-after-ms=";
+
+    public static final String HELLO = "PROTOCOL:HELLO";
+    public static final String ACCEPT = "PROTOCOL:ACCEPT";
+
+    // Optional features
+    public static final String FEATURE_BINARY = "binary";
+    // Status updates after the first carry only what changed; works with either framing
+    public static final String FEATURE_DELTA = "delta";
+    // Commands and replies carry request IDs so several can be in flight; needs binary framing
+    public static final String FEATURE_PIPELINE = "pipeline";
+    // Everything the server sends is deflate compressed; works with either framing
+    public static final String FEATURE_DEFLATE = "deflate";
+    // The server pings the client when it goes quiet and drops it if no answer comes
+    public static final String FEATURE_HEARTBEAT = "heartbeat";
+    // Frames carry a session ID so one connection can serve many logins; needs binary framing
+    public static final String FEATURE_MUX = "mux";
+    // The server keeps a dropped client's user for a while and hands it back for its token
+    public static final String FEATURE_RESUME = "resume";
+
+    // Text protocol markers
+    public static final String LOGIN_SUCCESSFUL = "LOGIN:SUCCESSFUL";
+    public static final String LOGIN_FAIL = "LOGIN:FAIL";
+    public static final String STATUS_UPDATE_START = "STATUS_UPDATE:START";
+    public static final String STATUS_UPDATE_END = "STATUS_UPDATE:END";
+    // With "delta" in text: the status the client keeps, then what changed in it, as the
+    // lines of StatusDelta#toLines()
+    public static final String STATUS_FULL_START = "STATUS_FULL:START";
+    public static final String STATUS_FULL_END = "STATUS_FULL:END";
+    public static final String STATUS_DELTA_START = "STATUS_DELTA:START";
+    public static final String STATUS_DELTA_END = "STATUS_DELTA:END";
+    public static final String FISH_LIST_START = "FISH_LIST:START";
+    public static final String FISH_LIST_END = "FISH_LIST:END";
+    public static final String FISH_LIST_EMPTY = "FISH_LIST:EMPTY";
+    public static final String FISH_LIST_ERROR = "FISH_LIST:ERROR";
+    public static final String FISH_FACT_START = "FISH_FACT:START";
+    public static final String CANCEL = "!cancel";
+    // "SESSION:TOKEN <token>" after login; "SESSION:RESUME <token>" instead of a username
+    public static final String SESSION_TOKEN = "SESSION:TOKEN";
+    public static final String SESSION_RESUME = "SESSION:RESUME";
+    // Sent instead of a username to watch the tank without joining it
+    public static final String SPECTATE = "SESSION:SPECTATE";
+    // Heartbeats, accepted from either side at any time
+    public static final String PING = "HEARTBEAT:PING";
+    public static final String PONG = "HEARTBEAT:PONG";
+
+    private Protocol() {
+        // Constants only
+    }
+
+    public static boolean isHandshake(String line, String prefix) {
+        return line != null && (line.equals(prefix) || line.startsWith(prefix + " "));
+    }
+
+    /**
+     * Build a handshake line such as {@code PROTOCOL:HELLO binary}.
+     */
+    public static String formatHandshake(String prefix, Collection<String> features) {
+        return features.isEmpty() ? prefix : prefix + " " + String.join(",", features);
+    }
+
+    /**
+     * Build the rejection line, e.g. {@code SERVER:BUSY retry-after=5}.
+     */
+    public static String formatBusy(Duration retryAfter) {
+        return BUSY + " " + RETRY_AFTER + Math.max(1, retryAfter.toSeconds());
+    }
+
+    /**
+     * Build the throttled reply, e.g. {@code SERVER:THROTTLED retry-after-ms=250}.
+     */
+    public static String formatThrottled(long retryAfterMillis) {
+        return THROTTLED + " " + RETRY_AFTER_MS + Math.max(1, retryAfterMillis);
+    }
+
+    /**
+     * @return the seconds to wait before reconnecting, or -1 if the busy line has no hint
+     */
+    public static int parseRetryAfter(String line) {
+        return parseNumber(line, RETRY_AFTER);
+    }
+
+    /**
+     * @return the millis to wait before sending again, or -1 if the throttled line has no hint
+     */
+    public static int parseRetryAfterMillis(String line) {
+        return parseNumber(line, RETRY_AFTER_MS);
+    }
+
+    private static int parseNumber(String line, String key) {
+        int start = line.indexOf(key);
+        if (start < 0)
+            return -1;
+        try {
+            return Integer.parseInt(line.substring(start + key.length()).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Read the feature list from a handshake line. Unknown names are kept;
+     * it is up to the receiver to ignore what it does not support.
+     */
+    public static Set<String> parseFeatures(String line) {
+        Set<String> features = new LinkedHashSet<>();
+        int space = line.indexOf(' ');
+        if (space < 0)
+            return features;
+        Arrays.stream(line.substring(space + 1).split(","))
+            .map(feature -> feature.trim().toLowerCase(Locale.ROOT))
+            .filter(feature -> !feature.isEmpty())
+            .forEach(features::add);
+        return features;
+    }
+}
@@ -0,0 +1,86 @@
+package com.carekeeperaquarium.common;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Blocking reader for a stream that starts as text lines and may switch to binary
+ * frames after negotiation. Unlike BufferedReader it never reads past the end of
+ * the current line, so no frame bytes are lost at the switch, or when the rest of
+ * the stream turns out to be compressed.
+ */
+public class ProtocolReader {
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+
+    private DataInputStream in;
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream(128);
+
+    public ProtocolReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+    }
+
+    /**
+     * @return the next line without its terminator, or null at end of stream
+     */
+    public String readLine() throws IOException {
+        lineBuffer.reset();
+        int b;
+        while ((b = readByte()) != -1 && b != '\n') {
+            if (lineBuffer.size() >= MAX_LINE_LENGTH)
+                throw new IOException("Line too long");
+            lineBuffer.write(b);
+        }
+        if (b == -1 && lineBuffer.size() == 0)
+            return null;
+        byte[] bytes = lineBuffer.toByteArray();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r')
+            length--;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decompress everything after what has been read so far.
+     */
+    public void startInflating(Inflater inflater) {
+        in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(in, inflater)));
+    }
+
+    /**
+     * @return the next frame, or null at end of stream
+     */
+    public Frame readFrame() throws IOException {
+        int opcode = readByte();
+        if (opcode == -1)
+            return null;
+        try {
+            int length = in.readInt();
+            BinaryCodec.checkPayloadLength(length);
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            return new Frame((byte) opcode, payload);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int readByte() throws IOException {
+        try {
+            return in.read();
+        } catch (EOFException e) {
+            // A compressed stream is never finished, it just stops when the connection closes
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.carekeeperaquarium.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The difference between two {@link StatusSnapshot}s of the same user.
+ * Tank-wide figures are null when unchanged; fish are keyed by name, with
+ * new or changed fish in {@code changedFish} and removed ones in {@code removedFish}.
+ */
+public record StatusDelta(Double cleanliness, Double maxCleanliness, Integer usersOnline,
+                          List<FishRecord> changedFish, List<String> removedFish) {
+
+    // Keys of the text form
+    private static final String CLEANLINESS = "cleanliness";
+    private static final String MAX_CLEANLINESS = "max-cleanliness";
+    private static final String USERS_ONLINE = "users-online";
+    private static final String FISH = "fish";
+    private static final String REMOVED = "removed";
+
+    public StatusDelta {
+        changedFish = List.copyOf(changedFish);
+        removedFish = List.copyOf(removedFish);
+    }
+
+    /**
+     * Work out what changed from {@code previous} to {@code next}.
+     * @return the delta, or null if it can not describe the change (e.g. two fish
+     *         share a name), in which case the full snapshot has to be sent
+     */
+    public static StatusDelta between(StatusSnapshot previous, StatusSnapshot next) {
+        Map<String, FishRecord> before = byName(previous.fish());
+        Map<String, FishRecord> after = byName(next.fish());
+        if (before == null || after == null)
+            return null;
+
+        List<FishRecord> changed = new ArrayList<>();
+        for (FishRecord fish : next.fish()) {
+            if (!fish.equals(before.get(fish.name())))
+                changed.add(fish);
+        }
+        List<String> removed = new ArrayList<>();
+        for (String name : before.keySet()) {
+            if (!after.containsKey(name))
+                removed.add(name);
+        }
+
+        StatusDelta delta = new StatusDelta(
+            previous.cleanliness() == next.cleanliness() ? null : next.cleanliness(),
+            previous.maxCleanliness() == next.maxCleanliness() ? null : next.maxCleanliness(),
+            previous.usersOnline() == next.usersOnline() ? null : next.usersOnline(),
+            changed, removed);
+
+        // Fish keep their place and new ones go last; anything else needs a full update
+        return delta.applyTo(previous).equals(next) ? delta : null;
+    }
+
+    /**
+     * @return the whole status as a delta from nothing; {@link #toSnapshot()} turns it back
+     */
+    public static StatusDelta of(StatusSnapshot status) {
+        return new StatusDelta(status.cleanliness(), status.maxCleanliness(), status.usersOnline(),
+            status.fish(), List.of());
+    }
+
+    public boolean isEmpty() {
+        return cleanliness == null && maxCleanliness == null && usersOnline == null
+            && changedFish.isEmpty() && removedFish.isEmpty();
+    }
+
+    /**
+     * @return the snapshot the sender had when it built this delta from {@code base}
+     */
+    public StatusSnapshot applyTo(StatusSnapshot base) {
+        Map<String, FishRecord> fish = new LinkedHashMap<>();
+        for (FishRecord record : base.fish()) {
+            fish.put(record.name(), record);
+        }
+        for (String name : removedFish) {
+            fish.remove(name);
+        }
+        for (FishRecord record : changedFish) {
+            fish.put(record.name(), record);
+        }
+        return new StatusSnapshot(
+            Objects.requireNonNullElse(cleanliness, base.cleanliness()),
+            Objects.requireNonNullElse(maxCleanliness, base.maxCleanliness()),
+            Objects.requireNonNullElse(usersOnline, base.usersOnline()),
+            new ArrayList<>(fish.values()));
+    }
+
+    /**
+     * @return the status of a delta built by {@link #of(StatusSnapshot)}, fish in order
+     *         even if two share a name
+     */
+    public StatusSnapshot toSnapshot() {
+        return new StatusSnapshot(Objects.requireNonNullElse(cleanliness, 0.0),
+            Objects.requireNonNullElse(maxCleanliness, 0.0), Objects.requireNonNullElse(usersOnline, 0),
+            changedFish);
+    }
+
+    // --- TEXT ---
+    /**
+     * The text form: one line per field that is set, e.g. {@code users-online 3},
+     * {@code fish <name>\t<species>\t<health>\t<max health>\t<age>\t<size>} or
+     * {@code removed <name>}.
+     */
+    public List<String> toLines() {
+        List<String> lines = new ArrayList<>();
+        if (cleanliness != null)
+            lines.add(CLEANLINESS + " " + cleanliness);
+        if (maxCleanliness != null)
+            lines.add(MAX_CLEANLINESS + " " + maxCleanliness);
+        if (usersOnline != null)
+            lines.add(USERS_ONLINE + " " + usersOnline);
+        for (FishRecord fish : changedFish) {
+            lines.add(FISH + " " + String.join("\t", fish.name(), fish.species(),
+                String.valueOf(fish.health()), String.valueOf(fish.maxHealth()),
+                String.valueOf(fish.age()), String.valueOf(fish.size())));
+        }
+        for (String name : removedFish) {
+            lines.add(REMOVED + " " + name);
+        }
+        return lines;
+    }
+
+    /**
+     * Read the lines of {@link #toLines()} back.
+     * @throws IllegalArgumentException if a line is not one of them
+     */
+    public static StatusDelta fromLines(List<String> lines) {
+        Double cleanliness = null;
+        Double maxCleanliness = null;
+        Integer usersOnline = null;
+        List<FishRecord> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (String line : lines) {
+            int space = line.indexOf(' ');
+            String key = space < 0 ? line : line.substring(0, space);
+            String value = space < 0 ? "" : line.substring(space + 1);
+            switch (key) {
+                case CLEANLINESS -> cleanliness = Double.valueOf(value);
+                case MAX_CLEANLINESS -> maxCleanliness = Double.valueOf(value);
+                case USERS_ONLINE -> usersOnline = Integer.valueOf(value);
+                case FISH -> changed.add(parseFish(value));
+                case REMOVED -> removed.add(value);
+                default -> throw new IllegalArgumentException("Unknown status line: " + line);
+            }
+        }
+        return new StatusDelta(cleanliness, maxCleanliness, usersOnline, changed, removed);
+    }
+
+    // --- HELPERS ---
+    private static FishRecord parseFish(String value) {
+        String[] fields = value.split("\t");
+        if (fields.length != 6)
+            throw new IllegalArgumentException("Bad fish line: " + value);
+        return new FishRecord(fields[0], fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+            Integer.parseInt(fields[4]), Integer.parseInt(fields[5]));
+    }
+
+    private static Map<String, FishRecord> byName(List<FishRecord> fish) {
+        Map<String, FishRecord> map = new LinkedHashMap<>();
+        for (FishRecord record : fish) {
+            if (map.put(record.name(), record) != null)
+                return null;
+        }
+        return map;
+    }
+}
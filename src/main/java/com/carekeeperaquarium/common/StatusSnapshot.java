@@ -0,0 +1,60 @@
+package com.carekeeperaquarium.common;
+
+import java.util.List;
+
+/**
+ * The status header shown to a logged-in user: tank-wide figures plus the user's own fish.
+ */
+public record StatusSnapshot(double cleanliness, double maxCleanliness, int usersOnline,
+                             List<FishRecord> fish) {
+
+    private static final int FISH_COLUMN_WIDTH = 20;
+
+    public StatusSnapshot {
+        fish = List.copyOf(fish);
+    }
+
+    /**
+     * Render the status as the text block shown in the client header.
+     */
+    public String toDisplayString() {
+        return formatTankLines(cleanliness, maxCleanliness, usersOnline) + formatFish(fish);
+    }
+
+    /**
+     * The tank-wide lines at the top of the header, the same for every user.
+     */
+    public static String formatTankLines(double cleanliness, double maxCleanliness, int usersOnline) {
+        return "Tank Cleanliness: " + String.format("%.2f/%.2f", cleanliness, maxCleanliness) + "\n"
+            + "Users Online: " + usersOnline + "\n";
+    }
+
+    /**
+     * The user's own part of the header.
+     */
+    public static String formatFish(List<FishRecord> fish) {
+        if (fish.isEmpty())
+            return "No Fish yet!";
+
+        StringBuilder summary = new StringBuilder("Your Fish:\n");
+        int count = 0;
+        // Living fish first, then the dead ones
+        for (FishRecord record : fish) {
+            if (!record.isDead())
+                summary.append(getFishCell(++count, record));
+        }
+        for (FishRecord record : fish) {
+            if (record.isDead())
+                summary.append(getFishCell(++count, record));
+        }
+        return summary.toString();
+    }
+
+    private static String getFishCell(int count, FishRecord record) {
+        String label = record.isDead()
+            ? record.name() + " (DEAD)"
+            : record.name() + " (" + record.health() + "/" + record.maxHealth() + ")";
+        // Three fish per row
+        return String.format("%-" + FISH_COLUMN_WIDTH + "s", label) + ((count % 3 == 0) ? "\n" : "\t");
+    }
+}
@@ -0,0 +1,28 @@
+package com.carekeeperaquarium.common;
+
+import java.util.List;
+
+/**
+ * Tank-wide overview returned by the view-tank command.
+ */
+public record TankSummary(double cleanliness, List<UserSummary> users) {
+
+    public TankSummary {
+        users = List.copyOf(users);
+    }
+
+    public String toDisplayString() {
+        StringBuilder summary = new StringBuilder();
+        summary.append("Aquarium Cleanliness: ")
+                .append(String.format("%.2f", cleanliness))
+                .append("\n");
+        summary.append("Users Online: ").append(users.size()).append("\n");
+        for (UserSummary user : users) {
+            summary.append("- ").append(user.username())
+                .append(" (Points: ").append(user.points())
+                .append(", Fish Owned: ").append(user.fishOwned())
+                .append(")\n");
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.carekeeperaquarium.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Everything the status headers need after one state change, captured once for all
+ * users: the tank-wide figures shared by every header plus each user's own fish.
+ * Versions increase with every change, so a stale update can be recognised and skipped.
+ */
+public final class TankUpdate {
+
+    private final long version;
+    private final double cleanliness;
+    private final double maxCleanliness;
+    private final int usersOnline;
+    private final Map<String, List<FishRecord>> fishByUser;
+    private final Map<String, Integer> pointsByUser;
+    // Built on first read; racing readers build equal immutable summaries, so no lock
+    private TankSummary summary;
+
+    // Maps that are already persistent are kept as they are, so an update built from the
+    // last one with a few users changed shares the rest with it
+    public TankUpdate(long version, double cleanliness, double maxCleanliness, int usersOnline,
+                      Map<String, List<FishRecord>> fishByUser, Map<String, Integer> pointsByUser) {
+        this.version = version;
+        this.cleanliness = cleanliness;
+        this.maxCleanliness = maxCleanliness;
+        this.usersOnline = usersOnline;
+        this.fishByUser = PersistentMap.copyOf(fishByUser);
+        this.pointsByUser = PersistentMap.copyOf(pointsByUser);
+    }
+
+    // --- ACCESSORS ---
+    public long version() { return this.version; }
+    public double cleanliness() { return this.cleanliness; }
+    public double maxCleanliness() { return this.maxCleanliness; }
+    public int usersOnline() { return this.usersOnline; }
+    public Map<String, List<FishRecord>> fishByUser() { return this.fishByUser; }
+    public Map<String, Integer> pointsByUser() { return this.pointsByUser; }
+
+    /**
+     * @return the user's fish, or null if the user was not in the tank at this version
+     */
+    public List<FishRecord> fishFor(String username) {
+        return username == null ? null : fishByUser.get(username);
+    }
+
+    /**
+     * @return the user's full status header, or null if the user was not in the tank
+     */
+    public StatusSnapshot statusFor(String username) {
+        List<FishRecord> fish = fishFor(username);
+        return fish == null ? null : new StatusSnapshot(cleanliness, maxCleanliness, usersOnline, fish);
+    }
+
+    /**
+     * @return the tank summary at this version, users in name order; sorted once per update
+     */
+    public TankSummary summary() {
+        TankSummary built = summary;
+        if (built == null) {
+            List<UserSummary> users = new ArrayList<>();
+            for (Map.Entry<String, List<FishRecord>> entry : new TreeMap<>(fishByUser).entrySet()) {
+                users.add(new UserSummary(entry.getKey(),
+                    pointsByUser.getOrDefault(entry.getKey(), 0), entry.getValue().size()));
+            }
+            built = new TankSummary(cleanliness, users);
+            summary = built;
+        }
+        return built;
+    }
+
+    @Override
+    public String toString() {
+        return "TankUpdate[version=" + version + ", usersOnline=" + usersOnline + "]";
+    }
+}
@@ -0,0 +1,7 @@
+package com.carekeeperaquarium.common;
+
+/**
+ * One line of the tank summary: a user and what they own.
+ */
+public record UserSummary(String username, int points, int fishOwned) {
+}
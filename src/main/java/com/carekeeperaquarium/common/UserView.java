@@ -0,0 +1,25 @@
+package com.carekeeperaquarium.common;
+
+import java.util.List;
+
+/**
+ * A user's profile and full fish details, returned by the view-fish command.
+ */
+public record UserView(String username, int points, List<FishRecord> fish) {
+
+    public UserView {
+        fish = List.copyOf(fish);
+    }
+
+    public String toDisplayString() {
+        StringBuilder userString = new StringBuilder();
+        userString.append(String.format(
+            "User: %s, Points: %d\nFish:\n", username, points));
+
+        for (FishRecord record : fish) {
+            userString.append(record.toDisplayString()).append("\n");
+        }
+
+        return userString.toString();
+    }
+}
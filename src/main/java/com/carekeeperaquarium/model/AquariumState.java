@@ -2,26 +2,92 @@ package com.carekeeperaquarium.model;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.carekeeperaquarium.business.FishFactory;
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.PersistentMap;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.common.TankSummary;
+import com.carekeeperaquarium.common.TankUpdate;
+import com.carekeeperaquarium.common.UserSummary;
+import com.carekeeperaquarium.common.UserView;
 import com.carekeeperaquarium.server.StateObserver;
 
+/**
+ * The tank and everyone in it, shared by every session. Commands for different
+ * users run in parallel, so the state is guarded in parts:
+ * <ul>
+ *   <li>each {@link UserProfile}'s lock guards that user's fish and points. Changes
+ *       take its write lock; reads run without it and check afterwards that no
+ *       change overlapped them, retrying under the read lock if one did;</li>
+ *   <li>{@code tankLock} guards the tank-wide fields such as the cleanliness, and
+ *       is held by anything that reads or changes the whole tank at once;</li>
+ *   <li>{@code publishLock} lets one thread at a time capture and announce a change,
+ *       so versions go out in order. Announcing only hands the update to the
+ *       observer, which delivers it to the sessions from its own thread.</li>
+ * </ul>
+ * Lock order: {@code tankLock}, then one user lock; never two user locks at once.
+ * Reads never block changes, so reads of different users, or of the same user,
+ * do not wait for each other either.
+ * {@code publishLock} is only taken with no other lock held, and then takes user locks
+ * one at a time to copy their fish. A change is announced by the thread that made it,
+ * once it leaves its outermost state operation, so a batch is announced once.
+ *
+ * Each announcement is also kept as the tank's snapshot: an immutable {@link TankUpdate}
+ * behind a volatile reference. Views, summaries and status headers read it without any
+ * lock, so they always see whole changes, never one half applied. A new snapshot copies
+ * only the users that changed; its {@link PersistentMap}s share every other user's entry
+ * with the last one, so a change does not copy the whole tank.
+ * A thread inside a state operation reads the live users instead, so a batch sees its own
+ * changes.
+ */
 public class AquariumState {
     private static AquariumState instance;
 
     private static final double MAX_CLEANLINESS = 100.0;
     private static final double MIN_CLEANLINESS = 0.0;
-    private static final int FISH_COLUMN_WIDTH = 20;
 
-    private final HashMap<String, UserProfile> users;
-    private double tankCleanliness;
-    private StateObserver stateObserver;
+    private final ConcurrentHashMap<String, UserProfile> users;
+    private final ReentrantLock tankLock = new ReentrantLock();
+    private final ReentrantLock publishLock = new ReentrantLock();
+    // Written under tankLock, read without it
+    private volatile double tankCleanliness;
+    private volatile StateObserver stateObserver;
+    // Guarded by publishLock
+    private long version;
+    // Written under publishLock, read without it
+    private volatile TankUpdate snapshot = emptySnapshot(0);
+    private final ThreadLocal<Operation> operation = ThreadLocal.withInitial(Operation::new);
+    private final LongAdder optimisticReads = new LongAdder();
+    private final LongAdder lockedReads = new LongAdder();
+
+    // How deeply the current thread is nested in state operations, and what they changed
+    private static final class Operation {
+        int depth;
+        boolean changed;
+        boolean allUsers;
+        final Set<String> changedUsers = new HashSet<>();
+    }
+
+    // One user's part of a state change announcement
+    private record UserStatus(List<FishRecord> fish, int points) {}
 
 
     // --- CONSTRUCTOR ---
     private AquariumState() {
-      this.users = new HashMap<>();
+      this.users = new ConcurrentHashMap<>();
       this.tankCleanliness = MAX_CLEANLINESS;  
     }
 
@@ -33,222 +99,490 @@ public class AquariumState {
         return instance;
     }
 
-    public synchronized void setObserver(StateObserver observer) {
+    public void setObserver(StateObserver observer) {
         this.stateObserver = observer;
     }
 
-    private synchronized void notifyStateChanged() {
-        if (stateObserver != null) {
-            stateObserver.setAquariumSummary(getSummary());
+    // --- LOCKING ---
+    /**
+     * @return the user, locked by the current thread and still in the tank
+     */
+    private UserProfile lockUser(String username) {
+        UserProfile user = getUser(username);
+        user.lockForUpdate();
+        if (users.get(username) != user) {
+            // Left or was renamed while we waited
+            user.unlockForUpdate();
+            throw new NoSuchElementException("User not logged in");
         }
+        return user;
     }
 
-    // --- ACCESSORS ---
-    public synchronized ArrayList<UserProfile> getUsers() { return new ArrayList<>(users.values()); }
+    private <T> T readUser(String username, Function<UserProfile, T> operation) {
+        UserProfile user = getUser(username);
+        T result = readUser(user, operation);
+        if (users.get(username) != user)
+            throw new NoSuchElementException("User not logged in");
+        return result;
+    }
+
+    /**
+     * Read a user without holding its lock, then check that no change started or
+     * finished meanwhile. A read that overlapped a change, or tripped over one half
+     * done, is thrown away and run again under the read lock.
+     * @param operation must not change anything, as it may run twice
+     */
+    private <T> T readUser(UserProfile user, Function<UserProfile, T> operation) {
+        if (user.isLockedByCurrentThread())
+            return operation.apply(user); // Inside this user's batch
+        StampedLock lock = user.getLock();
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = operation.apply(user);
+                if (lock.validate(stamp)) {
+                    optimisticReads.increment();
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // Saw a change half done; read again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            lockedReads.increment();
+            return operation.apply(user);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <T> List<T> readEachUser(Function<UserProfile, T> operation) {
+        List<T> results = new ArrayList<>(users.size());
+        for (UserProfile user : users.values()) {
+            results.add(readUser(user, operation));
+        }
+        return results;
+    }
+
+    private <T> T updateUser(String username, Function<UserProfile, T> operation) {
+        enter();
+        try {
+            UserProfile user = lockUser(username);
+            try {
+                T result = operation.apply(user);
+                markChanged(username);
+                return result;
+            } finally {
+                user.unlockForUpdate();
+            }
+        } finally {
+            leave();
+        }
+    }
+
+    private void forEachUser(Consumer<UserProfile> operation) {
+        for (UserProfile user : users.values()) {
+            user.lockForUpdate();
+            try {
+                operation.accept(user);
+            } finally {
+                user.unlockForUpdate();
+            }
+        }
+    }
+
+    private void enter() {
+        operation.get().depth++;
+    }
+
+    private void leave() {
+        Operation current = operation.get();
+        if (--current.depth == 0 && current.changed) {
+            Set<String> changedUsers = current.allUsers ? null : Set.copyOf(current.changedUsers);
+            current.changed = false;
+            current.allUsers = false;
+            current.changedUsers.clear();
+            publishChanges(changedUsers);
+        }
+    }
+
+    /**
+     * Note a change to the tank-wide fields only.
+     */
+    private void markChanged() {
+        operation.get().changed = true;
+    }
+
+    private void markChanged(String username) {
+        Operation current = operation.get();
+        current.changed = true;
+        current.changedUsers.add(username);
+    }
+
+    private void markAllChanged() {
+        Operation current = operation.get();
+        current.changed = true;
+        current.allUsers = true;
+    }
+
+    private void stateChanged(String username) {
+        enter();
+        markChanged(username);
+        leave();
+    }
+
+    /**
+     * @param changedUsers names of the users to copy again, or null for all of them
+     */
+    private void publishChanges(Set<String> changedUsers) {
+        publishLock.lock();
+        try {
+            TankUpdate update = captureUpdate(changedUsers);
+            snapshot = update;
+            if (stateObserver != null)
+                stateObserver.publish(update);
+        } finally {
+            publishLock.unlock();
+        }
+    }
+
+    // Snapshot each changed user's status data once, instead of once per listening client,
+    // and share the rest with the last snapshot. Called under publishLock.
+    private TankUpdate captureUpdate(Set<String> changedUsers) {
+        if (changedUsers == null)
+            return captureAll();
+
+        TankUpdate previous = snapshot;
+        PersistentMap<String, List<FishRecord>> fishByUser = PersistentMap.copyOf(previous.fishByUser());
+        PersistentMap<String, Integer> pointsByUser = PersistentMap.copyOf(previous.pointsByUser());
+        for (String username : changedUsers) {
+            UserProfile user = users.get(username);
+            if (user == null) {
+                // Left or renamed
+                fishByUser = fishByUser.without(username);
+                pointsByUser = pointsByUser.without(username);
+                continue;
+            }
+            UserStatus status = readStatus(user);
+            fishByUser = fishByUser.with(username, status.fish());
+            pointsByUser = pointsByUser.with(username, status.points());
+        }
+        return new TankUpdate(++version, tankCleanliness, MAX_CLEANLINESS, fishByUser.size(),
+            fishByUser, pointsByUser);
+    }
+
+    private TankUpdate captureAll() {
+        Map<String, List<FishRecord>> fishByUser = new HashMap<>();
+        Map<String, Integer> pointsByUser = new HashMap<>();
+        for (Map.Entry<String, UserProfile> entry : users.entrySet()) {
+            UserStatus status = readStatus(entry.getValue());
+            fishByUser.put(entry.getKey(), status.fish());
+            pointsByUser.put(entry.getKey(), status.points());
+        }
+        return new TankUpdate(++version, tankCleanliness, MAX_CLEANLINESS, fishByUser.size(),
+            fishByUser, pointsByUser);
+    }
+
+    private UserStatus readStatus(UserProfile user) {
+        return readUser(user,
+            profile -> new UserStatus(List.copyOf(profile.getFishRecords()), profile.getPoints()));
+    }
+
+    private static TankUpdate emptySnapshot(long version) {
+        return new TankUpdate(version, MAX_CLEANLINESS, MAX_CLEANLINESS, 0, Map.of(), Map.of());
+    }
 
-    public synchronized double getTankCleanliness() { return this.tankCleanliness; }
+    /**
+     * @return true if the current thread should read the live users: inside a state
+     *         operation the snapshot does not have its own changes yet
+     */
+    private boolean readsLive() {
+        return operation.get().depth > 0;
+    }
 
-    public synchronized UserProfile getUser(String Username) {
+    // --- ACCESSORS ---
+    /**
+     * @return the tank as of the last announced change; never changes once returned
+     */
+    public TankUpdate getSnapshot() { return this.snapshot; }
+
+    /**
+     * @return the live profiles, which other threads may be changing; views should
+     *         come from {@link #getSnapshot()} or the methods built on it
+     */
+    public ArrayList<UserProfile> getUsers() { return new ArrayList<>(users.values()); }
+
+    public double getTankCleanliness() { return this.tankCleanliness; }
+
+    /**
+     * @return the live profile, which other threads may be changing
+     */
+    public UserProfile getUser(String Username) {
         if (Username == null || Username.trim().isEmpty())
             throw new IllegalArgumentException("Username cannot be null or empty");
-        if (users.containsKey(Username)) {
-            return users.get(Username);
+        UserProfile user = users.get(Username);
+        if (user != null) {
+            return user;
         }
         throw new NoSuchElementException("User not logged in");
     }
 
-    public synchronized boolean hasUser(String username) {
+    public boolean hasUser(String username) {
         return users.containsKey(username);
     }
 
-    public synchronized String userToString(String username) {
+    long getOptimisticReads() { return optimisticReads.sum(); }
+
+    long getLockedReads() { return lockedReads.sum(); }
+
+    /**
+     * @return how many user reads ran without a lock, and how many had to retry under it
+     */
+    public String describeReads() {
+        long optimistic = getOptimisticReads();
+        long locked = getLockedReads();
+        long total = optimistic + locked;
+        return String.format("optimistic=%d, locked=%d (%.1f%% without a lock)",
+            optimistic, locked, total == 0 ? 0.0 : 100.0 * optimistic / total);
+    }
+
+    public String userToString(String username) {
         if (!hasUser(username))
             throw new NoSuchElementException("User not found");
-        return getUser(username).toString();
+        return getUserView(username).toDisplayString();
     }
 
-    public synchronized String getSummary() {
-        StringBuilder summary = new StringBuilder();
-        summary.append("Aquarium Cleanliness: ")
-                .append(String.format("%.2f", getTankCleanliness()))
-                .append("\n");
-        summary.append("Users Online: ").append(getUsers().size()).append("\n");
-        for (UserProfile user : getUsers()) {
-            summary.append("- ").append(user.getUsername())
-                .append(" (Points: ").append(user.getPoints())
-                .append(", Fish Owned: ").append(user.getNumberOfFishOwned())
-                .append(")\n");
-        }
-        return summary.toString();
+    public UserView getUserView(String username) {
+        if (readsLive())
+            return readUser(username, UserProfile::toView);
+        TankUpdate current = snapshot;
+        List<FishRecord> fish = current.fishFor(username);
+        if (fish == null)
+            throw new NoSuchElementException("User not logged in");
+        return new UserView(username, current.pointsByUser().get(username), fish);
     }
 
-    public synchronized String getSummaryFor(String username) {
-        UserProfile user = getUser(username);
-        
-        StringBuilder summary = new StringBuilder();
-        summary.append("Tank Cleanliness: ")
-                .append(String.format("%.2f/%.2f", getTankCleanliness(), MAX_CLEANLINESS))
-                .append("\n");
-        
-        summary.append("Users Online: ").append(getUsers().size()).append("\n");
-        
-        if (!user.hasFish()) {
-            summary.append("No Fish yet!");
-        } else {
-            summary.append("Your Fish:\n");
-            int count = 0;
-            for (Fish fish : user.getLiveFish()) {
-                count++;        
-                summary.append(getLiveFishString(count, fish));
-            }
-
-            for (Fish fish : user.getDeadFish()) {
-                count++;
-                summary.append(getDeadFishString(count, fish));
-            }
+    public TankSummary getTankSummary() {
+        if (readsLive()) {
+            List<UserSummary> userSummaries = readEachUser(user -> new UserSummary(
+                user.getUsername(), user.getPoints(), user.getNumberOfFishOwned()));
+            return new TankSummary(getTankCleanliness(), userSummaries);
         }
-
-        return summary.toString();
+        return snapshot.summary();
     }
 
-    private synchronized String getLiveFishString(int count, Fish fish) {
-        String fishString = String.format("%-" + FISH_COLUMN_WIDTH + "s", 
-            fish.getName() + " (" + fish.getHealth() + "/" + fish.getMaxHealth() + ")");
-        fishString += getEndCharacter(count);        
-        return fishString;
+    public String getSummary() {
+        return getTankSummary().toDisplayString();
     }
 
-    private synchronized String getDeadFishString(int count, Fish fish) {
-        String fishString = String.format("%-" + FISH_COLUMN_WIDTH + "s", 
-            fish.getName() + " (DEAD)");
-        fishString += getEndCharacter(count);        
-        return fishString;
+    public StatusSnapshot getStatusFor(String username) {
+        if (readsLive()) {
+            List<FishRecord> fish = readUser(username, UserProfile::getFishRecords);
+            return new StatusSnapshot(getTankCleanliness(), MAX_CLEANLINESS, users.size(), fish);
+        }
+        StatusSnapshot status = snapshot.statusFor(username);
+        if (status == null)
+            throw new NoSuchElementException("User not logged in");
+        return status;
     }
 
-    private synchronized String getEndCharacter(int count) {
-        return (count % 3 == 0) ? "\n" : "\t";
+    public String getSummaryFor(String username) {
+        return getStatusFor(username).toDisplayString();
     }
 
     // --- MODIFIERS ---
-    public synchronized void runIteration() {
-        recalculateCleanliness();
-        processHunger();
-        processFishGrowth();
-        processPointAwards();
-        System.out.println("Updating tank...");
-        notifyStateChanged();
+    /**
+     * Run several operations for one user as one change: no other command for the user
+     * runs in between, and observers hear about it at most once, after the last operation.
+     * @param tankWide true if any operation changes the whole tank, e.g. cleaning it
+     */
+    public <T> T batchUpdate(String username, boolean tankWide, Supplier<T> operations) {
+        enter();
+        try {
+            if (tankWide)
+                tankLock.lock();
+            try {
+                UserProfile user = lockUser(username);
+                try {
+                    return operations.get();
+                } finally {
+                    user.unlockForUpdate();
+                }
+            } finally {
+                if (tankWide)
+                    tankLock.unlock();
+            }
+        } finally {
+            leave();
+        }
+    }
+
+    public void runIteration() {
+        enter();
+        tankLock.lock();
+        try {
+            recalculateCleanliness();
+            processHunger();
+            processFishGrowth();
+            processPointAwards();
+            System.out.println("Updating tank...");
+            markAllChanged();
+        } finally {
+            tankLock.unlock();
+            leave();
+        }
     }
 
-    public synchronized void addUser(UserProfile user) {
+    public void addUser(UserProfile user) {
         if (user == null)
             throw new IllegalArgumentException("Cannot add null user to aquarium");
-        if (users.containsKey(user.getUsername()))
+        if (users.putIfAbsent(user.getUsername(), user) != null)
             throw new IllegalArgumentException("User already exists");
-        users.put(user.getUsername(), user);
-        notifyStateChanged();
+        stateChanged(user.getUsername());
     }
 
-    public synchronized boolean removeUser(UserProfile user) {
+    public boolean removeUser(UserProfile user) {
         if (user == null)
             throw new IllegalArgumentException("Cannot remove null user from aquarium");
         boolean removed = users.remove(user.getUsername()) != null;
         if (removed) {
-            notifyStateChanged();
+            stateChanged(user.getUsername());
         }
         return removed;
     }
 
-    public synchronized boolean changeName(String oldName, String newName) {
-        UserProfile user = getUser(oldName);
-        user.changeUsername(newName);
+    public boolean changeName(String oldName, String newName) {
+        enter();
+        tankLock.lock();
+        try {
+            UserProfile user = lockUser(oldName);
+            try {
+                // Claim the new name before giving it up, so a login with it can not slip in
+                UserProfile.validateUsername(newName);
+                if (users.putIfAbsent(newName.trim(), user) != null)
+                    throw new IllegalArgumentException("User already exists");
+                user.changeUsername(newName);
+                users.remove(oldName);
+                markChanged(oldName);
+                markChanged(user.getUsername());
+            } finally {
+                user.unlockForUpdate();
+            }
+        } finally {
+            tankLock.unlock();
+            leave();
+        }
         return hasUser(newName) && !hasUser(oldName);
     }
 
-    public synchronized void recalculateCleanliness() {
-        if (this.tankCleanliness > MIN_CLEANLINESS) {
-            double tankSoilValue = 0;
-            for (UserProfile user : users.values()) {
-                for (Fish fish : user.getFish()) {
-                    tankSoilValue += fish.getSize() * fish.getSoilRate();
+    public void recalculateCleanliness() {
+        tankLock.lock();
+        try {
+            if (this.tankCleanliness > MIN_CLEANLINESS) {
+                double tankSoilValue = 0;
+                for (double soil : readEachUser(AquariumState::soilRate)) {
+                    tankSoilValue += soil;
                 }
+                this.tankCleanliness = Math.max(MIN_CLEANLINESS, this.tankCleanliness - tankSoilValue);
             }
-            this.tankCleanliness -= tankSoilValue;
-            if (this.tankCleanliness < MIN_CLEANLINESS)
-                this.tankCleanliness = MIN_CLEANLINESS;
+        } finally {
+            tankLock.unlock();
         }
     }
 
-    public synchronized void processHunger() {
-        for (UserProfile user : users.values()) {
+    public void processHunger() {
+        forEachUser(user -> {
             for (Fish fish : user.getFish()) {
                 fish.processHunger();
             }
-        }
+        });
     }
     
-    public synchronized void processFishGrowth() {
-        for (UserProfile user : users.values()) {
+    public void processFishGrowth() {
+        forEachUser(user -> {
             for (Fish fish : user.getFish()) {
                 fish.grow();
             }
-        }
+        });
     }
 
-    public synchronized void processPointAwards() {
-        for (UserProfile user : users.values()) {
-            user.incrementPoints();
-        }
+    public void processPointAwards() {
+        forEachUser(UserProfile::incrementPoints);
     }
 
-    public synchronized Fish addFishRandom(String username) {
+    public Fish addFishRandom(String username) {
         Fish newFish = FishFactory.createRandomFish();
-        UserProfile user = this.getUser(username);
-        
-        // Make sure there are no duplicate named fish
-        int duplicateNameCount = 0;
-        for (Fish fish : user.getFish()) {
-            if (fish.getName().startsWith(newFish.getName()))
-                duplicateNameCount++;
-        }
-        
-        // If duplicates found, name fish {name} {duplicateNameCount}
-        if (duplicateNameCount > 0) 
-            newFish.changeName(newFish.getName() + " " + duplicateNameCount);
+        return updateUser(username, user -> {
+            // Make sure there are no duplicate named fish
+            int duplicateNameCount = 0;
+            for (Fish fish : user.getFish()) {
+                if (fish.getName().startsWith(newFish.getName()))
+                    duplicateNameCount++;
+            }
+
+            // If duplicates found, name fish {name} {duplicateNameCount}
+            if (duplicateNameCount > 0) 
+                newFish.changeName(newFish.getName() + " " + duplicateNameCount);
 
-        user.addFish(newFish);
-        notifyStateChanged();
-        return newFish;
+            user.addFish(newFish);
+            return newFish;
+        });
     }
 
-    public synchronized Fish removeFish(String username, String fishName) {
-        UserProfile user = getUser(username);
-        Fish removed = user.removeFish(fishName);
-        notifyStateChanged();
-        return removed;
+    public Fish removeFish(String username, String fishName) {
+        return updateUser(username, user -> user.removeFish(fishName));
     }
 
-    public synchronized void cleanTank() {
-        this.tankCleanliness = MAX_CLEANLINESS;
-        notifyStateChanged();
+    public void cleanTank() {
+        enter();
+        tankLock.lock();
+        try {
+            this.tankCleanliness = MAX_CLEANLINESS;
+            markChanged();
+        } finally {
+            tankLock.unlock();
+            leave();
+        }
     }
 
-    public synchronized int feedFish(String username) {
-        UserProfile user = getUser(username);
-        int count = 0;
-        for (Fish fish : user.getFish()) {
-            try {
-                fish.feed();
-                count++;
-            } catch (IllegalStateException e) {
-                // Attempt to feed dead fish
+    public int feedFish(String username) {
+        return updateUser(username, user -> {
+            int count = 0;
+            for (Fish fish : user.getFish()) {
+                try {
+                    fish.feed();
+                    count++;
+                } catch (IllegalStateException e) {
+                    // Attempt to feed dead fish
+                }
             }
+            return count;
+        });
+    }
+
+    protected void reset() {
+        tankLock.lock();
+        try {
+            this.users.clear();
+            this.tankCleanliness = MAX_CLEANLINESS;
+        } finally {
+            tankLock.unlock();
+        }
+        publishLock.lock();
+        try {
+            this.snapshot = emptySnapshot(++version);
+        } finally {
+            publishLock.unlock();
         }
-        notifyStateChanged();
-        return count;
     }
 
-    protected synchronized void reset() {
-        this.users.clear();
-        this.tankCleanliness = MAX_CLEANLINESS;
+    // --- HELPERS ---
+    private static double soilRate(UserProfile user) {
+        double soil = 0;
+        for (Fish fish : user.getFish()) {
+            soil += fish.getSize() * fish.getSoilRate();
+        }
+        return soil;
     }
 }
@@ -3,6 +3,8 @@ package com.carekeeperaquarium.model;
 import java.util.Random;
 import java.util.UUID;
 
+import com.carekeeperaquarium.common.FishRecord;
+
 public class Fish {
     private enum Species {
         ANGEL_FISH("Angel Fish"),
@@ -142,12 +144,13 @@ public class Fish {
         return id.hashCode();
     }
 
+    public FishRecord toRecord() {
+        return new FishRecord(this.name, this.getSpecies(), this.health, Fish.MAX_HEALTH, this.age, this.size);
+    }
+
     @Override
     public String toString() {
-        return String.format(
-            "Name: %s, Species: %s, Health: %d/%d, Age: %d, Size: %d", 
-            this.name, this.getSpecies(),this.health, Fish.MAX_HEALTH, this.age, this.size
-            );
+        return toRecord().toDisplayString();
     }
 
     // --- HELPERS ---
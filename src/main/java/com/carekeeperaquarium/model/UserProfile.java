@@ -3,11 +3,21 @@ package com.carekeeperaquarium.model;
 import java.util.ArrayList;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.UserView;
 
 public class UserProfile {
     private String username;
     private int points;
     private final ArrayList<Fish> ownedFishes;
+    // Guards the fish and points while the user is in the tank; see AquariumState.
+    // Changes take its write lock, reads mostly just validate against it
+    private final StampedLock lock = new StampedLock();
+    // Thread holding the write lock, and how many times it took it
+    private volatile Thread writer;
+    private int writeHolds;
     
     private static final int MAX_FISH = 9;
 
@@ -38,6 +48,10 @@ public class UserProfile {
     }
 
     // --- ACCESSORS ---
+    StampedLock getLock() { return this.lock; }
+
+    boolean isLockedByCurrentThread() { return writer == Thread.currentThread(); }
+
     public String getUsername() { return this.username; }
 
     public int getPoints() { return this.points; }
@@ -91,17 +105,43 @@ public class UserProfile {
         return livingFish;
     }
 
+    public ArrayList<FishRecord> getFishRecords() {
+        ArrayList<FishRecord> records = new ArrayList<>();
+        for (Fish fish : ownedFishes) {
+            records.add(fish.toRecord());
+        }
+        return records;
+    }
+
+    public UserView toView() {
+        return new UserView(this.username, this.points, getFishRecords());
+    }
+
     @Override
     public String toString() {
-        StringBuilder userString = new StringBuilder();
-        userString.append(String.format(
-            "User: %s, Points: %d\nFish:\n", this.username, this.points));
-        
-        for (Fish fish : ownedFishes) {
-            userString.append(fish.toString()).append("\n");
+        return toView().toDisplayString();
+    }
+
+    // --- LOCKING ---
+    /**
+     * Take the write lock, or take it once more if this thread holds it already:
+     * a batch holds it while each of its commands takes it again.
+     */
+    void lockForUpdate() {
+        if (isLockedByCurrentThread()) {
+            writeHolds++;
+            return;
+        }
+        lock.writeLock();
+        writer = Thread.currentThread();
+        writeHolds = 1;
+    }
+
+    void unlockForUpdate() {
+        if (--writeHolds == 0) {
+            writer = null;
+            lock.tryUnlockWrite();
         }
-        
-        return userString.toString();
     }
 
     // --- MODIFIERS ---
@@ -165,7 +205,7 @@ public class UserProfile {
     }
 
     // --- HELPERS ---
-    private void validateUsername(String newUsername) throws IllegalArgumentException {
+    static void validateUsername(String newUsername) throws IllegalArgumentException {
         if (newUsername == null || newUsername.isBlank()) {
             throw new IllegalArgumentException("User name cannot be null or empty");
         }
@@ -0,0 +1,179 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import com.carekeeperaquarium.common.Connection;
+import com.carekeeperaquarium.common.Protocol;
+
+/**
+ * Decides at accept time whether a new connection is served or turned away.
+ *
+ * A connection is pending from the moment it is admitted until a thread (or
+ * event loop) starts serving it, then active until it closes. A connection is
+ * rejected with {@code SERVER:BUSY} when the number of pending connections or
+ * the number of admitted connections in total would exceed its limit, so
+ * that under a login storm clients fail fast instead of waiting in a queue
+ * that grows without bound.
+ *
+ * It also times the accept path: how long an acceptor spends on each new
+ * connection before it can accept the next, and how long a connection waits
+ * after accept until it is served.
+ */
+class AdmissionControl {
+
+    private final int maxSessions;
+    private final int maxPending;
+    private final byte[] busyMessage;
+    private int pending;
+    private int active;
+    private long acceptedCount;
+    private long rejectedCount;
+    private boolean shedding;
+    private long reportedCount;
+    private final LatencyStats dispatchLatency = new LatencyStats();
+    private final LatencyStats startLatency = new LatencyStats();
+
+    AdmissionControl(int maxSessions, int maxPending, Duration retryAfter) {
+        if (maxSessions < 1)
+            throw new IllegalArgumentException("Max sessions must be at least 1");
+        if (maxPending < 0)
+            throw new IllegalArgumentException("Max pending connections can not be negative");
+        this.maxSessions = maxSessions;
+        this.maxPending = maxPending;
+        this.busyMessage = (Protocol.formatBusy(retryAfter) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    static AdmissionControl fromConfig(ServerConfig config) {
+        return new AdmissionControl(config.getMaxSessions(), config.getMaxPendingConnections(),
+            config.getBusyRetryAfter());
+    }
+
+    // --- MODIFIERS ---
+    /**
+     * Admit a newly accepted connection as pending.
+     * @return false if the server is full and the connection should be rejected
+     */
+    synchronized boolean tryAdmit() {
+        if (pending >= maxPending || pending + active >= maxSessions) {
+            rejectedCount++;
+            if (!shedding) {
+                shedding = true;
+                System.out.println("Server busy, rejecting new connections (" + describe() + ")");
+            }
+            return false;
+        }
+        if (shedding) {
+            shedding = false;
+            System.out.println("Server accepting connections again (" + describe() + ")");
+        }
+        pending++;
+        acceptedCount++;
+        return true;
+    }
+
+    /**
+     * The acceptor is done with a connection, admitted or not.
+     * @param acceptedNanos {@link System#nanoTime()} when accept returned it
+     */
+    void recordDispatch(long acceptedNanos) {
+        dispatchLatency.record(System.nanoTime() - acceptedNanos);
+    }
+
+    /**
+     * A pending connection is now being served.
+     * @param acceptedNanos {@link System#nanoTime()} when accept returned it
+     */
+    void sessionStarted(long acceptedNanos) {
+        startLatency.record(System.nanoTime() - acceptedNanos);
+        synchronized (this) {
+            pending--;
+            active++;
+        }
+    }
+
+    /**
+     * A served connection has closed, making room for another.
+     */
+    synchronized void sessionEnded() {
+        active--;
+    }
+
+    /**
+     * Tell a client the server is full and hang up. The connection is still
+     * blocking and its send buffer is empty, so the short write completes at
+     * once and does not hold up the acceptor.
+     */
+    void reject(Connection connection) {
+        try (connection) {
+            connection.getOutputStream().write(busyMessage);
+        } catch (IOException e) {
+            System.out.println("Error rejecting client: " + e.getMessage());
+        }
+    }
+
+    // --- ACCESSORS ---
+    /**
+     * @return the line sent to rejected clients, with the retry-after hint
+     */
+    byte[] getBusyMessage() {
+        return busyMessage;
+    }
+
+    synchronized long getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * @return admitted connections still waiting for a thread
+     */
+    synchronized int getQueuedCount() {
+        return pending;
+    }
+
+    synchronized int getActiveCount() {
+        return active;
+    }
+
+    /**
+     * @return time from accept until the acceptor moved on
+     */
+    LatencyStats getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * @return time from accept until a thread or event loop started the session
+     */
+    LatencyStats getStartLatency() {
+        return startLatency;
+    }
+
+    String describeLatency() {
+        return "dispatch " + dispatchLatency.describe() + "; start " + startLatency.describe();
+    }
+
+    /**
+     * Log the counters and accept latency if connections arrived since the last report.
+     */
+    void report() {
+        long seen;
+        synchronized (this) {
+            seen = acceptedCount + rejectedCount;
+            if (seen == reportedCount)
+                return;
+            reportedCount = seen;
+        }
+        System.out.println("Connections: " + describe() + " | accept " + describeLatency());
+    }
+
+    synchronized String describe() {
+        return "accepted=" + acceptedCount + ", rejected=" + rejectedCount
+            + ", queued=" + pending + ", active=" + active;
+    }
+}
@@ -1,12 +1,17 @@
 package com.carekeeperaquarium.server;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.business.PinningMonitor;
 import com.carekeeperaquarium.business.ThreadPoolManager;
+import com.carekeeperaquarium.business.ThreadPoolManager.ClientExecutorMode;
+import com.carekeeperaquarium.common.ChannelConnection;
 
 public class AquariumServer {
     public static final int SERVER_PORT = 8080;
@@ -14,41 +19,149 @@ public class AquariumServer {
     private static final StateObserver stateObserver = new StateObserver();
     private static final AquariumManager aquariumManager = new AquariumManager(stateObserver);
 
+    private final ServerConfig config;
+    private final AdmissionControl admission;
+    private final SessionReaper reaper;
+    private final SessionResumer resumer;
+    private final RateLimiter rateLimiter;
+    private final CommandScheduler scheduler;
+
+    public AquariumServer() {
+        this(ServerConfig.fromSystemProperties());
+    }
+
+    public AquariumServer(ServerConfig config) {
+        this.config = config;
+        this.admission = AdmissionControl.fromConfig(config);
+        this.reaper = SessionReaper.fromConfig(config);
+        this.resumer = SessionResumer.fromConfig(config, aquariumManager);
+        this.rateLimiter = RateLimiter.fromConfig(config);
+        this.scheduler = CommandScheduler.fromConfig(config);
+    }
+
     public void run() throws IOException {
-        ServerSocket serverSocket = new ServerSocket(SERVER_PORT);
+        if (config.getHttpPort() > 0)
+            startHttp();
+        switch (config.getTransportMode()) {
+            case NIO -> runNio();
+            case BLOCKING -> runBlocking();
+        }
+    }
+
+    private void startHttp() throws IOException {
+        StatusHttpServer httpServer = new StatusHttpServer(config.getHttpPort(), stateObserver);
+        Runtime.getRuntime().addShutdownHook(new Thread(httpServer::stop));
+        httpServer.start();
+    }
+
+    private void runNio() throws IOException {
+        NioAquariumServer nioServer = new NioAquariumServer(config, aquariumManager, stateObserver);
 
         // Register shutdown hook to clean up resources on Ctrl+C
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("\nShutting down server...");
+            nioServer.shutdown();
+            ThreadPoolManager.shutdown();
+            System.out.println("Server shutdown complete.");
+        }));
+
+        nioServer.run();
+    }
+
+    private void runBlocking() throws IOException {
+        ClientExecutorMode executorMode = config.getClientExecutorMode();
+        ThreadPoolManager.setClientExecutorMode(executorMode);
+        PinningMonitor pinningMonitor = new PinningMonitor(config.getPinningThreshold());
+        if (executorMode == ClientExecutorMode.VIRTUAL) {
+            pinningMonitor.start();
+        }
+
+        List<List<ServerSocketChannel>> serverChannels =
+            ServerChannels.open(config.getListenAddresses(), config.getAcceptorThreads());
+        reaper.start(ThreadPoolManager.getScheduler());
+        resumer.start(ThreadPoolManager.getScheduler());
+        ThreadPoolManager.getScheduler().scheduleAtFixedRate(admission::report, 1, 1, TimeUnit.MINUTES);
+        if (scheduler != null)
+            ThreadPoolManager.getScheduler().scheduleAtFixedRate(scheduler::report, 1, 1, TimeUnit.MINUTES);
+
+        // Register shutdown hook to clean up resources on Ctrl+C
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("\nShutting down server...");
+            ServerChannels.close(serverChannels);
+            pinningMonitor.stop();
+            ThreadPoolManager.shutdown();
+            System.out.println("Connections: " + admission.describe()
+                + ", reaped=" + reaper.getReapedCount() + ", resumed=" + resumer.getResumedCount());
+            if (rateLimiter != null)
+                System.out.println("Rate limits: " + rateLimiter.describe());
+            if (scheduler != null)
+                System.out.println("Command scheduling: " + scheduler.describe());
+            System.out.println("Accept latency: " + admission.describeLatency());
+            System.out.println("Writes: " + OutboundWriter.describeTotals());
+            System.out.println("Reads: " + aquariumManager.describeReads());
+            System.out.println("State events: " + stateObserver.describe());
+            System.out.println("Server shutdown complete.");
+        }));
+
+        System.out.println("Aquarium Server (" + executorMode.name().toLowerCase()
+            + " client threads, " + config.getAcceptorThreads() + " acceptors per address) is starting on "
+            + config.describeListenAddresses() + "...");
+
+        // A blocking accept waits on one channel, so each acceptor runs a thread per address
+        List<Thread> acceptors = new ArrayList<>();
+        for (List<ServerSocketChannel> channels : serverChannels) {
+            for (ServerSocketChannel serverChannel : channels) {
+                acceptors.add(new Thread(() -> acceptLoop(serverChannel), "aquarium-acceptor-" + acceptors.size()));
+            }
+        }
+        acceptors.forEach(Thread::start);
+        for (Thread acceptor : acceptors) {
             try {
-                if (!serverSocket.isClosed()) {
-                    serverSocket.close();
-                }
-                ThreadPoolManager.shutdown();
-                System.out.println("Server shutdown complete.");
-            } catch (IOException e) {
-                System.err.println("Error during shutdown: " + e.getMessage());
+                acceptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-        }));
-        
-        System.out.println("Aquarium Server is starting on port " + SERVER_PORT + "...");
-        
+        }
+        // All channels closed, likely by the shutdown hook
+        System.out.println("Server socket closed.");
+    }
+
+    private void acceptLoop(ServerSocketChannel serverChannel) {
         try {
             while (true) {
-                ClientHandler clientHandler = new ClientHandler(
-                    serverSocket.accept(),
-                    aquariumManager,
-                    stateObserver
-                );
-                addClient(clientHandler);
-                ThreadPoolManager.getClientExecutor().execute(clientHandler);
+                SocketChannel channel = serverChannel.accept();
+                long acceptedNanos = System.nanoTime();
+                if (admission.tryAdmit()) {
+                    ClientHandler clientHandler = new ClientHandler(
+                        new ChannelConnection(channel),
+                        aquariumManager,
+                        stateObserver,
+                        config,
+                        admission,
+                        reaper,
+                        resumer,
+                        rateLimiter,
+                        scheduler,
+                        acceptedNanos
+                    );
+                    addClient(clientHandler);
+                    ThreadPoolManager.getClientExecutor().execute(() -> {
+                        try {
+                            clientHandler.run();
+                        } finally {
+                            removeClient(clientHandler);
+                        }
+                    });
+                } else {
+                    admission.reject(new ChannelConnection(channel));
+                }
+                admission.recordDispatch(acceptedNanos);
             }
         } catch (IOException e) {
-            if (!serverSocket.isClosed()) {
-                throw e;
+            if (serverChannel.isOpen()) {
+                System.err.println("Acceptor stopped: " + e.getMessage());
             }
-            // If socket is closed, it's likely due to shutdown hook
-            System.out.println("Server socket closed.");
         }
     }
 
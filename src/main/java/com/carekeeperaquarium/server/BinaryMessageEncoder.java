@@ -0,0 +1,107 @@
+package com.carekeeperaquarium.server;
+
+import java.util.List;
+
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.StatusDelta;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.common.TankSummary;
+import com.carekeeperaquarium.common.TankUpdate;
+import com.carekeeperaquarium.common.UserView;
+
+/**
+ * Length-prefixed binary frames; see {@link BinaryCodec} for the layout.
+ */
+class BinaryMessageEncoder implements MessageEncoder {
+    static final BinaryMessageEncoder INSTANCE = new BinaryMessageEncoder();
+
+    private BinaryMessageEncoder() {
+    }
+
+    @Override
+    public byte[] text(String message) {
+        return BinaryCodec.frame(BinaryCodec.OP_TEXT, BinaryCodec.encodeText(message));
+    }
+
+    @Override
+    public byte[] loginSuccess(String message) {
+        return BinaryCodec.frame(BinaryCodec.OP_LOGIN_SUCCESS, BinaryCodec.encodeText(message));
+    }
+
+    @Override
+    public byte[] loginFail(String reason) {
+        return BinaryCodec.frame(BinaryCodec.OP_LOGIN_FAIL, BinaryCodec.encodeText(reason));
+    }
+
+    @Override
+    public byte[] statusShared(TankUpdate update) {
+        return BinaryCodec.encodeTankStatus(update.cleanliness(), update.maxCleanliness(), update.usersOnline());
+    }
+
+    @Override
+    public byte[] status(byte[] sharedSection, List<FishRecord> fish) {
+        return BinaryCodec.frame(BinaryCodec.OP_STATUS, sharedSection, BinaryCodec.encodeFishList(fish));
+    }
+
+    @Override
+    public byte[] spectatorStatus(TankSummary summary) {
+        return BinaryCodec.frame(BinaryCodec.OP_SPECTATOR_STATUS, BinaryCodec.encodeTankSummary(summary));
+    }
+
+    @Override
+    public byte[] statusBase(byte[] sharedSection, StatusSnapshot status) {
+        // The ordinary status frame already carries every field
+        return status(sharedSection, status.fish());
+    }
+
+    @Override
+    public byte[] statusDelta(StatusDelta delta) {
+        return BinaryCodec.frame(BinaryCodec.OP_STATUS_DELTA, BinaryCodec.encodeStatusDelta(delta));
+    }
+
+    @Override
+    public byte[] fishList(List<String> fishNames) {
+        return BinaryCodec.frame(BinaryCodec.OP_FISH_LIST, BinaryCodec.encodeStrings(fishNames));
+    }
+
+    @Override
+    public byte[] fishListError() {
+        return BinaryCodec.frame(BinaryCodec.OP_FISH_LIST_ERROR, new byte[0]);
+    }
+
+    @Override
+    public byte[] fishFact(String fact) {
+        return BinaryCodec.frame(BinaryCodec.OP_FISH_FACT, BinaryCodec.encodeText(fact));
+    }
+
+    @Override
+    public byte[] throttled(long retryAfterMillis) {
+        return BinaryCodec.frame(BinaryCodec.OP_THROTTLED, BinaryCodec.encodeRetryAfter(retryAfterMillis));
+    }
+
+    @Override
+    public byte[] tankSummary(TankSummary summary) {
+        return BinaryCodec.frame(BinaryCodec.OP_TANK_SUMMARY, BinaryCodec.encodeTankSummary(summary));
+    }
+
+    @Override
+    public byte[] userView(UserView view) {
+        return BinaryCodec.frame(BinaryCodec.OP_USER_VIEW, BinaryCodec.encodeUserView(view));
+    }
+
+    @Override
+    public byte[] resumeToken(String token) {
+        return BinaryCodec.frame(BinaryCodec.OP_RESUME_TOKEN, BinaryCodec.encodeText(token));
+    }
+
+    @Override
+    public byte[] ping() {
+        return BinaryCodec.frame(BinaryCodec.OP_PING, new byte[0]);
+    }
+
+    @Override
+    public byte[] pong() {
+        return BinaryCodec.frame(BinaryCodec.OP_PONG, new byte[0]);
+    }
+}
@@ -1,240 +1,188 @@
 package com.carekeeperaquarium.server;
 
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.NoSuchElementException;
+import java.io.OutputStream;
 
 import com.carekeeperaquarium.business.AquariumManager;
-import com.carekeeperaquarium.common.Command;
-import com.carekeeperaquarium.integration.FishFactAPI;
-import com.carekeeperaquarium.model.Fish;
-import com.carekeeperaquarium.model.UserProfile;
-
-public class ClientHandler implements Runnable, PropertyChangeListener {
-
-    private static final String CANCEL_STRING = "Cancelled. No changes made";
-
-    private final Socket socket;
-    private final AquariumManager aquariumManager;
-    private final StateObserver stateObserver;
-    private BufferedReader in;
-    private PrintWriter out;
-    private String username;
-
-    public ClientHandler(Socket socket, AquariumManager aquariumManager, StateObserver stateObserver) {
-        this.socket = socket;
-        this.aquariumManager = aquariumManager;
-        this.stateObserver = stateObserver;
+import com.carekeeperaquarium.business.ThreadPoolManager;
+import com.carekeeperaquarium.common.Connection;
+import com.carekeeperaquarium.common.Frame;
+import com.carekeeperaquarium.common.ProtocolReader;
+
+/**
+ * Blocking transport: one thread reads from the connection for the whole session
+ * and hands each line or frame to a {@link ClientSession}. Outgoing messages go
+ * through a bounded {@link OutboundQueue} drained by a separate writer thread,
+ * so a client that stops reading never blocks the threads producing updates.
+ */
+public class ClientHandler implements Runnable, SessionOutput {
+
+    private static final long WRITER_DRAIN_MILLIS = 2000;
+
+    private final Connection connection;
+    private final ClientSession session;
+    private final OutboundQueue outbound;
+    private final AdmissionControl admission;
+    private final SessionReaper reaper;
+    private final long acceptedNanos;
+    private ProtocolReader in;
+    private OutputStream out;
+    private OutboundWriter outboundWriter;
+    private Thread writer;
+
+    public ClientHandler(Connection connection, AquariumManager aquariumManager, StateObserver stateObserver,
+                         ServerConfig config, AdmissionControl admission, SessionReaper reaper,
+                         SessionResumer resumer, RateLimiter rateLimiter, CommandScheduler scheduler,
+                         long acceptedNanos) {
+        this.connection = connection;
+        this.admission = admission;
+        this.reaper = reaper;
+        this.acceptedNanos = acceptedNanos;
+        this.outbound = OutboundQueue.fromConfig(config);
+        // Fish facts run on a worker so pipelined requests behind them are answered first
+        this.session = new ClientSession(
+            aquariumManager, stateObserver, this, ThreadPoolManager.getWorkerExecutor(),
+            resumer, rateLimiter, scheduler);
     }
 
     @Override
     public void run() {
+        admission.sessionStarted(acceptedNanos);
         try {
-            // Register this client as a listener for state changes
-            stateObserver.addPropertyChangeListener(this);
-            
-            this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            this.out = new PrintWriter(socket.getOutputStream(), true);
-            // Handle user registration/login
-            handleLogin();
-
-            // Main interaction loop (to be implemented)
+            this.in = new ProtocolReader(connection.getInputStream());
+            this.out = connection.getOutputStream();
+            this.outboundWriter = OutboundWriter.forConnection(connection);
+            // A virtual thread: it spends its life blocked on the queue or the socket
+            this.writer = Thread.ofVirtual().name("aquarium-writer").start(this::drainOutbound);
+
+            session.start();
+            reaper.register(session);
             runMainLoop();
 
             // Close resources on exit
             handleShutdown();
-            
+
         } catch (IOException e) {
             System.out.println("Connection error with client: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } finally {
-            AquariumServer.removeClient(this);
+            session.close();
+            outbound.close();
             try {
-                socket.close();
+                connection.close();
             } catch (IOException e) {
-                System.out.println("Error closing client socket: " + e.getMessage());
+                System.out.println("Error closing client connection: " + e.getMessage());
             }
+            admission.sessionEnded();
         }
     }
 
     @Override
-    public void propertyChange(PropertyChangeEvent evt) {
-        String propertyName = evt.getPropertyName();
-        if (propertyName.equals("tankUpdate") && !(username == null)) {
-            sendStatusUpdate();
-        }
+    public void write(byte[] message) {
+        if (outbound.offer(message) == OutboundQueue.Offer.OVERFLOW)
+            handleOverflow();
     }
 
-    private void sendStatusUpdate() {
-        this.out.println("STATUS_UPDATE:START");
-        this.out.println(aquariumManager.getAquariumStateSummaryFor(username));
-        this.out.println("STATUS_UPDATE:END");
+    @Override
+    public boolean writeStatus(byte[] message, boolean fullUpdate) {
+        return writeStatus(message, fullUpdate, 0);
     }
 
-    private boolean isUsernameNotNullOrEmpty(String username) {
-        return username != null && !username.trim().isEmpty();
+    @Override
+    public boolean writeStatus(byte[] message, boolean fullUpdate, int stream) {
+        OutboundQueue.Offer result = outbound.offerStatus(message, fullUpdate, stream);
+        if (result == OutboundQueue.Offer.OVERFLOW)
+            handleOverflow();
+        return result == OutboundQueue.Offer.QUEUED;
     }
 
-    private boolean isValidNameCharacters(String username) {
-        return username.matches("[a-zA-Z0-9 _-]+");
+    @Override
+    public void setStreamCount(int streams) {
+        outbound.setStreamCount(streams);
     }
 
-    private void handleLogin() throws IOException {
-        this.out.println("Welcome to CareKeeper Aquarium!");
-        while (true) {
-            username = this.in.readLine();
-            
-            // Validate username not null or empty
-            if (!isUsernameNotNullOrEmpty(username)) {
-                handleLoginFail("Invalid username. Please try again.");
-                continue;
-            }    
-
-            // Validate username uses legal characters
-            if (!isValidNameCharacters(username)) {
-                handleLoginFail("Invalid username. Can not contain special characters");
-                continue;
-            }
+    @Override
+    public void startCompression() {
+        outbound.startCompression();
+    }
 
-            // Check if user already logged in
-            if (aquariumManager.hasUser(username)) {
-                handleLoginFail("Username already logged in. Please try a different username.");
-                continue;
+    /**
+     * Ends the read loop as if the client had hung up, so the connection goes
+     * through the usual {@link #handleShutdown()}. This also frees a reader
+     * blocked on a client that vanished without closing its end.
+     */
+    @Override
+    public void close() {
+        try {
+            connection.shutdownInput();
+        } catch (IOException e) {
+            try {
+                connection.close();
+            } catch (IOException closeError) {
+                System.out.println("Error closing client connection: " + closeError.getMessage());
             }
-
-            // Username acceptable
-            break;
-
         }
-        this.out.println("LOGIN:SUCCESSFUL");
-        // Create user profile and add to aquarium manager
-        UserProfile user = new UserProfile(username);
-        aquariumManager.addUser(user);
-        this.out.println("Login successful! Welcome, " + username + ".");
-        System.out.println("User " + username + " has logged in");
-    }
-
-    private void handleLoginFail(String message) {
-        this.out.println("LOGIN:FAIL");
-        this.out.println(message);
     }
 
     private void runMainLoop() throws IOException {
         while (true) {
-            String clientMessage = in.readLine();
-            if (clientMessage == null) {
-                break;
+            boolean keepGoing;
+            if (session.isBinary()) {
+                Frame frame = in.readFrame();
+                keepGoing = frame != null && session.handleFrame(frame);
+            } else {
+                String clientMessage = in.readLine();
+                keepGoing = clientMessage != null && session.handleLine(clientMessage);
             }
-            
-            // Parse command using enum
-            Command command = Command.fromString(clientMessage);
-            
-            // Process commands using switch
-            switch (command) {
-                case ADD_FISH -> { 
-                    String message;
-                    try { message = aquariumManager.addFish(username); }
-                    catch (IllegalStateException e) { message = e.getMessage(); } 
-                    catch (Exception e) { message = "Error adding fish"; }
-                    this.out.println(message);
-                }
-                case VIEW_FISH -> { 
-                    String message;
-                    try { message = aquariumManager.viewFish(username); }
-                    catch (Exception e) { message = "Error viewing fish"; }
-                    this.out.println(message); 
-                }
-                case FEED_FISH -> {
-                    String message;
-                    try { message = aquariumManager.feedFish(username); }
-                    catch (Exception e) { message = "Error feeding fish"; }
-                    this.out.println(message); 
-                }
-                case REMOVE_FISH -> { 
-                    String message = CANCEL_STRING; // Assume cancel
-                    sendFishListToClient(username); // Send fish list to client
-                    String fishName = getName(); // Get the name of the fish to remove
-                    // If not cancelled, attempt to remove the fish
-                    if (!isOperationCancelled(fishName)) {
-                        try { message = aquariumManager.removeFish(username, fishName); }
-                        catch (Exception e) { message = e.getMessage(); } 
-                    }
-                    // Print the outcome to the user
-                    this.out.println(message);
-                }
-                case CLEAN_TANK -> { this.out.println(aquariumManager.cleanTank()); }
-                case VIEW_TANK -> { this.out.println(aquariumManager.getAquariumStateSummary()); }
-                case GET_FISH_FACT -> { 
-                    String message;
-                    this.out.println("FISH_FACT:START");
-                    
-                    try { message = FishFactAPI.getRandomFishFact(); }
-                    catch (Exception e) { message = e.getMessage(); }
-
-                    this.out.println(message);
-                }
-                case QUIT -> { 
-                    this.out.println("Goodbye, " + username + "!"); 
-                    return;
-                }
-                default -> { this.out.println("Unknown command. Please try again."); }
+            if (!keepGoing) {
+                break;
             }
         }
     }
 
-    private void handleShutdown() throws IOException {
-        // Unregister from state observer
-        stateObserver.removePropertyChangeListener(this);
-        
-        if (username != null) {
-            try {
-                this.out.println("Goodbye, " + username + "!");
-                UserProfile user = aquariumManager.getUser(username);
-                aquariumManager.removeUser(user);
-                System.out.println("User " + username + " has disconnected");
-            } catch (NoSuchElementException e) {
-                System.out.println("User " + username + " not found: " + e.getMessage());
+    /**
+     * Writer thread: wait for a message, then write it together with whatever queued
+     * up behind it in one flush.
+     */
+    private void drainOutbound() {
+        try {
+            byte[] message;
+            while ((message = outbound.take()) != null) {
+                outboundWriter.add(message);
+                while (outboundWriter.hasRoom() && (message = outbound.poll()) != null) {
+                    outboundWriter.add(message);
+                }
+                outboundWriter.flush();
             }
+        } catch (IOException e) {
+            // The reader thread notices the broken connection and cleans up
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            outbound.finish();
         }
-        if (this.in != null) { this.in.close(); }
-        if (this.out != null) { this.out.close(); }
     }
 
-    private String getName() throws IOException {
-        String name = in.readLine();
-        if (name == null)
-            return "!cancel";
-        return name;
+    private void handleOverflow() {
+        System.out.println("Client is not reading its messages, disconnecting");
+        outbound.close();
+        close();
     }
 
-    private boolean isOperationCancelled(String value) {
-        return value.equalsIgnoreCase("!cancel");
-    }
-
-    private void sendFishListToClient(String username) {
-        try {
-            UserProfile user = aquariumManager.getUser(username);
-            ArrayList<Fish> fishList = user.getFish();
-            
-            if (fishList.isEmpty()) {
-                this.out.println("FISH_LIST:EMPTY");
-                return;
-            }
-
-            // Send fish list with special format that client can parse
-            this.out.println("FISH_LIST:START");
-            for (int i = 0; i < fishList.size(); i++) {
-                Fish fish = fishList.get(i);
-                this.out.println(fish.getName());
-            }
-            this.out.println("FISH_LIST:END");
-        } catch (NoSuchElementException e) {
-            this.out.println("FISH_LIST:ERROR");
+    private void handleShutdown() throws IOException, InterruptedException {
+        session.close();
+        // Let the writer send what is left, e.g. the goodbye message
+        outbound.close();
+        writer.join(WRITER_DRAIN_MILLIS);
+        // Output first: closing either stream closes the connection. Over a Unix
+        // domain socket that fails at once if the client has gone.
+        if (this.out != null && !writer.isAlive()) {
+            try { this.out.close(); }
+            catch (IOException e) { /* Nobody left to read it */ }
         }
+        // A writer still stuck on the socket is released when the socket closes
+        if (this.in != null) { this.in.close(); }
     }
 }
@@ -0,0 +1,748 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.Command;
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.Frame;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.common.StatusDelta;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.common.TankUpdate;
+import com.carekeeperaquarium.integration.FishFactAPI;
+import com.carekeeperaquarium.model.UserProfile;
+
+/**
+ * Protocol for a single connected client, independent of the transport.
+ * The transport feeds every received line to {@link #handleLine(String)}, or every
+ * frame to {@link #handleFrame(Frame)} once binary framing has been negotiated,
+ * and the session answers through its {@link SessionOutput}.
+ */
+public class ClientSession implements StateListener {
+
+    private static final String CANCEL_STRING = "Cancelled. No changes made";
+    private static final int UNTAGGED = -1;
+
+    private enum State {
+        LOGIN,          // Waiting for a valid username
+        MAIN,           // Waiting for a command
+        SELECTING_FISH, // Fish list sent, waiting for the fish to remove
+        SPECTATING,     // Watching the tank without a user; only view-tank and quit
+        CLOSED
+    }
+
+    private final AquariumManager aquariumManager;
+    private final StateObserver stateObserver;
+    private final SessionOutput out;
+    private final Executor slowTaskExecutor;
+    // Null when the transport does not offer "resume"
+    private final SessionResumer resumer;
+    // This session's token buckets; null when commands are not rate limited
+    private final RateLimiter rateLimiter;
+    private final RateLimiter.Session rateLimits;
+    // Where this session's commands queue for the manager; null when they do not queue
+    private final CommandScheduler scheduler;
+    private final CommandScheduler.Session schedule;
+    private volatile MessageEncoder encoder = TextMessageEncoder.INSTANCE;
+    private volatile boolean deltaUpdates;
+    private volatile boolean requestIds;
+    private volatile boolean heartbeats;
+    private volatile boolean resumable;
+    // Set at login once "resume" was negotiated; the user outlives the connection while it is
+    private volatile String resumeToken;
+    // Set once the client negotiated "mux"; routes the sessions it opens
+    private volatile SessionMultiplexer multiplexer;
+    // System.nanoTime() of the last message received, the last one that was not a
+    // heartbeat, and the last ping sent; read by the SessionReaper
+    private volatile long lastReceivedNanos = System.nanoTime();
+    private volatile long lastActivityNanos = lastReceivedNanos;
+    private volatile long lastPingNanos = lastReceivedNanos;
+    // Request ID of the frame being handled, so replies can be tagged; reader thread only
+    private int currentRequest = UNTAGGED;
+    // Guards the fields below so each update is written against what the client last got
+    private final ReentrantLock statusLock = new ReentrantLock();
+    private long lastVersion = -1;
+    private StatusSnapshot lastStatus;
+    private volatile String username;
+    private State state = State.LOGIN;
+
+    /**
+     * @param slowTaskExecutor runs calls that may block for a long time (fish facts).
+     *                         {@code Runnable::run} runs them inline, holding up
+     *                         every request behind them.
+     */
+    public ClientSession(AquariumManager aquariumManager, StateObserver stateObserver,
+                         SessionOutput out, Executor slowTaskExecutor) {
+        this(aquariumManager, stateObserver, out, slowTaskExecutor, null, null, null);
+    }
+
+    /**
+     * @param resumer     keeps the user of a dropped "resume" session for its grace period;
+     *                    null if the transport does not offer the feature
+     * @param rateLimiter caps how fast commands are accepted; null for no limit
+     * @param scheduler   orders commands fairly between sessions; null to run them at once
+     */
+    ClientSession(AquariumManager aquariumManager, StateObserver stateObserver, SessionOutput out,
+                  Executor slowTaskExecutor, SessionResumer resumer, RateLimiter rateLimiter,
+                  CommandScheduler scheduler) {
+        this.aquariumManager = aquariumManager;
+        this.stateObserver = stateObserver;
+        this.out = out;
+        this.slowTaskExecutor = slowTaskExecutor;
+        this.resumer = resumer;
+        this.rateLimiter = rateLimiter;
+        this.rateLimits = rateLimiter == null ? null : rateLimiter.newSession();
+        this.scheduler = scheduler;
+        this.schedule = scheduler == null ? null : scheduler.newSession(1, this::getUsername);
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isClosed() {
+        return state == State.CLOSED;
+    }
+
+    /**
+     * @return how long this session's commands waited for their turn, or null without a scheduler
+     */
+    LatencyStats getQueueWait() {
+        return schedule == null ? null : schedule.getQueueWait();
+    }
+
+    /**
+     * @return true if the client watches the tank without a user of its own
+     */
+    public boolean isSpectating() {
+        return state == State.SPECTATING;
+    }
+
+    /**
+     * @return true once binary framing is in use; the transport must then read frames
+     */
+    public boolean isBinary() {
+        return encoder == BinaryMessageEncoder.INSTANCE;
+    }
+
+    public void start() {
+        // Register this client as a listener for state changes
+        stateObserver.addListener(this);
+        out.write(encoder.text(Protocol.WELCOME));
+    }
+
+    /**
+     * Start a session opened on a multiplexed connection, which already agreed on
+     * binary framing and the other features, so there is no handshake of its own.
+     */
+    void startMultiplexed(boolean deltaUpdates, boolean requestIds) {
+        this.encoder = BinaryMessageEncoder.INSTANCE;
+        this.deltaUpdates = deltaUpdates;
+        this.requestIds = requestIds;
+        start();
+    }
+
+    /**
+     * Process one line received from the client.
+     * @return false once the session has ended and the connection should be closed
+     */
+    public boolean handleLine(String line) {
+        lastReceivedNanos = System.nanoTime();
+        if (line.equals(Protocol.PING) || line.equals(Protocol.PONG)) {
+            handleHeartbeat(line.equals(Protocol.PING));
+            return state != State.CLOSED;
+        }
+        lastActivityNanos = lastReceivedNanos;
+        switch (state) {
+            case LOGIN -> {
+                if (Protocol.isHandshake(line, Protocol.HELLO))
+                    negotiate(Protocol.parseFeatures(line));
+                else if (resumable && Protocol.isHandshake(line, Protocol.SESSION_RESUME))
+                    handleResume(line.substring(Protocol.SESSION_RESUME.length()).trim());
+                else if (line.equals(Protocol.SPECTATE))
+                    handleSpectate();
+                else
+                    handleLogin(line);
+            }
+            case MAIN -> handleCommandLine(line);
+            case SELECTING_FISH -> handleFishSelection(line);
+            case SPECTATING -> handleSpectatorCommand(Command.fromString(line));
+            case CLOSED -> { }
+        }
+        return state != State.CLOSED;
+    }
+
+    /**
+     * Process one binary frame received from the client.
+     * @return false once the session has ended and the connection should be closed
+     */
+    public boolean handleFrame(Frame frame) {
+        lastReceivedNanos = System.nanoTime();
+        if (frame.opcode() == BinaryCodec.OP_PING || frame.opcode() == BinaryCodec.OP_PONG) {
+            handleHeartbeat(frame.opcode() == BinaryCodec.OP_PING);
+            return state != State.CLOSED;
+        }
+        lastActivityNanos = lastReceivedNanos;
+        SessionMultiplexer sessions = multiplexer;
+        if (sessions != null && (frame.opcode() == BinaryCodec.OP_SESSION
+                || frame.opcode() == BinaryCodec.OP_SESSION_END)) {
+            sessions.handleFrame(frame);
+            return state != State.CLOSED;
+        }
+        if (requestIds && frame.opcode() == BinaryCodec.OP_REQUEST) {
+            BinaryCodec.Tagged request;
+            try {
+                request = BinaryCodec.untag(frame.payload());
+            } catch (IOException e) {
+                out.write(encoder.text("Malformed request."));
+                return state != State.CLOSED;
+            }
+            currentRequest = request.requestId();
+            try {
+                handleUntaggedFrame(request.frame());
+            } finally {
+                currentRequest = UNTAGGED;
+            }
+        } else {
+            handleUntaggedFrame(frame);
+        }
+        return state != State.CLOSED;
+    }
+
+    private void handleUntaggedFrame(Frame frame) {
+        byte opcode = frame.opcode();
+        switch (state) {
+            case LOGIN -> {
+                if (opcode == BinaryCodec.OP_LOGIN)
+                    handleLogin(BinaryCodec.decodeText(frame.payload()));
+                else if (opcode == BinaryCodec.OP_RESUME && resumable)
+                    handleResume(BinaryCodec.decodeText(frame.payload()));
+                else if (opcode == BinaryCodec.OP_SPECTATE)
+                    handleSpectate();
+                else
+                    handleLoginFail("Please log in first.");
+            }
+            case MAIN -> handleCommandFrame(frame);
+            case SPECTATING -> handleSpectatorCommand(Command.fromOpcode(opcode));
+            case SELECTING_FISH -> {
+                if (opcode != BinaryCodec.OP_SELECT_FISH) {
+                    // Anything else cancels the removal and is then handled as usual,
+                    // so a command pipelined behind remove-fish is not lost
+                    handleFishSelection(Protocol.CANCEL);
+                    handleCommandFrame(frame);
+                } else {
+                    // An empty selection cancels
+                    handleFishSelection(frame.payload().length > 0
+                        ? BinaryCodec.decodeText(frame.payload())
+                        : Protocol.CANCEL);
+                }
+            }
+            case CLOSED -> { }
+        }
+    }
+
+    /**
+     * Release the session: unregister from updates and remove the user from the tank,
+     * or, if the client can resume, leave the user there for the grace period.
+     * Safe to call more than once.
+     */
+    public void close() {
+        state = State.CLOSED;
+        // Unregister from state observer
+        stateObserver.removeListener(this);
+        if (schedule != null)
+            schedule.close();
+        if (multiplexer != null)
+            multiplexer.close();
+
+        String name = username;
+        String token = resumeToken;
+        username = null;
+        resumeToken = null;
+        if (name != null && token != null) {
+            // Either it waits for the client to come back or another session already has it
+            if (resumer.detach(token, this, System.nanoTime()))
+                System.out.println("User " + name + " has dropped; keeping their fish for a resume");
+            return;
+        }
+        if (name != null) {
+            try {
+                out.write(encoder.text("Goodbye, " + name + "!"));
+                UserProfile user = aquariumManager.getUser(name);
+                aquariumManager.removeUser(user);
+                System.out.println("User " + name + " has disconnected");
+            } catch (NoSuchElementException e) {
+                System.out.println("User " + name + " not found: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void tankUpdated(StatusBroadcast broadcast) {
+        if (username != null)
+            sendStatusUpdate(broadcast);
+        else if (state == State.SPECTATING)
+            sendSpectatorStatus(broadcast);
+    }
+
+    /**
+     * Spectators all get the same pre-encoded message, so an update costs each one a queue offer.
+     */
+    private void sendSpectatorStatus(StatusBroadcast broadcast) {
+        if (broadcast == null)
+            return;
+        statusLock.lock();
+        try {
+            if (broadcast.getVersion() <= lastVersion)
+                return;
+            out.writeStatus(broadcast.spectatorStatus(encoder), true);
+            lastVersion = broadcast.getVersion();
+        } finally {
+            statusLock.unlock();
+        }
+    }
+
+    private void sendStatusUpdate(StatusBroadcast broadcast) {
+        String name = username;
+        if (broadcast == null || name == null)
+            return;
+
+        statusLock.lock();
+        try {
+            // Updates can race in from several threads; never go back to an older one
+            if (broadcast.getVersion() <= lastVersion)
+                return;
+            TankUpdate update = broadcast.getUpdate();
+            List<FishRecord> fish = update.fishFor(name);
+            if (fish == null)
+                return; // User logged out before this update
+
+            if (deltaUpdates) {
+                StatusSnapshot status = update.statusFor(name);
+                StatusDelta delta = lastStatus == null ? null : StatusDelta.between(lastStatus, status);
+                boolean sent = true;
+                if (delta == null)
+                    sent = out.writeStatus(broadcast.statusBase(encoder, status), true);
+                else if (!delta.isEmpty())
+                    sent = out.writeStatus(encoder.statusDelta(delta), false);
+                // If the client missed this one, the next delta would have nothing to apply to
+                lastStatus = sent ? status : null;
+            } else {
+                out.writeStatus(broadcast.status(encoder, fish), true);
+            }
+            lastVersion = broadcast.getVersion();
+        } finally {
+            statusLock.unlock();
+        }
+    }
+
+    // --- NEGOTIATION ---
+    private void negotiate(Set<String> requested) {
+        List<String> accepted = new ArrayList<>();
+        if (requested.contains(Protocol.FEATURE_BINARY))
+            accepted.add(Protocol.FEATURE_BINARY);
+        if (requested.contains(Protocol.FEATURE_DELTA))
+            accepted.add(Protocol.FEATURE_DELTA);
+        if (requested.contains(Protocol.FEATURE_BINARY)) {
+            if (requested.contains(Protocol.FEATURE_PIPELINE))
+                accepted.add(Protocol.FEATURE_PIPELINE);
+            if (requested.contains(Protocol.FEATURE_MUX))
+                accepted.add(Protocol.FEATURE_MUX);
+        }
+        if (requested.contains(Protocol.FEATURE_DEFLATE))
+            accepted.add(Protocol.FEATURE_DEFLATE);
+        if (requested.contains(Protocol.FEATURE_HEARTBEAT))
+            accepted.add(Protocol.FEATURE_HEARTBEAT);
+        if (requested.contains(Protocol.FEATURE_RESUME) && resumer != null && resumer.isEnabled())
+            accepted.add(Protocol.FEATURE_RESUME);
+
+        // The answer still goes out in text; everything after it uses the new framing
+        out.write(TextMessageEncoder.lines(Protocol.formatHandshake(Protocol.ACCEPT, accepted)));
+        if (accepted.contains(Protocol.FEATURE_DEFLATE))
+            out.startCompression();
+        if (accepted.contains(Protocol.FEATURE_BINARY))
+            encoder = BinaryMessageEncoder.INSTANCE;
+        deltaUpdates = accepted.contains(Protocol.FEATURE_DELTA);
+        requestIds = accepted.contains(Protocol.FEATURE_PIPELINE);
+        heartbeats = accepted.contains(Protocol.FEATURE_HEARTBEAT);
+        resumable = accepted.contains(Protocol.FEATURE_RESUME);
+        if (accepted.contains(Protocol.FEATURE_MUX))
+            multiplexer = new SessionMultiplexer(aquariumManager, stateObserver, out, slowTaskExecutor,
+                rateLimiter, scheduler, deltaUpdates, requestIds);
+    }
+
+    // --- LIVENESS ---
+    private void handleHeartbeat(boolean ping) {
+        // A pong only needs to have been received, which is already recorded
+        if (ping && state != State.CLOSED)
+            out.write(encoder.pong());
+    }
+
+    /**
+     * @return true if the client agreed to answer pings
+     */
+    boolean usesHeartbeats() {
+        return heartbeats;
+    }
+
+    long getLastReceivedNanos() {
+        return lastReceivedNanos;
+    }
+
+    /**
+     * @return when the client last sent something other than a heartbeat
+     */
+    long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    long getLastPingNanos() {
+        return lastPingNanos;
+    }
+
+    void sendPing(long now) {
+        lastPingNanos = now;
+        out.write(encoder.ping());
+    }
+
+    // --- RESUME ---
+    /**
+     * The user moved to a session that resumed with this one's token: let go of it
+     * without removing it and close the connection.
+     */
+    void handOff() {
+        String name = username;
+        username = null;
+        resumeToken = null;
+        state = State.CLOSED;
+        stateObserver.removeListener(this);
+        if (schedule != null)
+            schedule.close();
+        if (name != null)
+            out.write(encoder.text("Session resumed on another connection."));
+        out.close();
+    }
+
+    /**
+     * Forget the token before a quit so the user is removed, unless it already moved on.
+     * @return false if another session took the user over
+     */
+    private boolean releaseToken() {
+        String token = resumeToken;
+        resumeToken = null;
+        return token == null || resumer.release(token, this);
+    }
+
+    private void handleResume(String token) {
+        String name = token.isEmpty() ? null : resumer.resume(token, this);
+        if (name == null) {
+            handleLoginFail("Session expired. Please log in again.");
+            return;
+        }
+        statusLock.lock();
+        try {
+            // Whatever this connection last got, the client needs a full status now
+            lastVersion = -1;
+            lastStatus = null;
+        } finally {
+            statusLock.unlock();
+        }
+        resumeToken = token;
+        username = name;
+        state = State.MAIN;
+        reply(encoder.loginSuccess("Welcome back, " + name + "."));
+        // Catch up from the cached broadcast rather than waiting for the next tick
+        sendStatusUpdate(stateObserver.getLatestBroadcast());
+        System.out.println("User " + name + " has resumed their session");
+    }
+
+    /**
+     * Tell the client why it is being dropped and close the connection.
+     * The transport's usual shutdown then closes the session.
+     */
+    void expire(String reason) {
+        out.write(encoder.text(reason));
+        out.close();
+    }
+
+    // --- LOGIN ---
+    private boolean isUsernameNotNullOrEmpty(String username) {
+        return username != null && !username.trim().isEmpty();
+    }
+
+    private boolean isValidNameCharacters(String username) {
+        return username.matches("[a-zA-Z0-9 _-]+");
+    }
+
+    private void handleLogin(String candidate) {
+        // Validate username not null or empty
+        if (!isUsernameNotNullOrEmpty(candidate)) {
+            handleLoginFail("Invalid username. Please try again.");
+            return;
+        }
+
+        // Validate username uses legal characters
+        if (!isValidNameCharacters(candidate)) {
+            handleLoginFail("Invalid username. Can not contain special characters");
+            return;
+        }
+
+        // Check if user already logged in
+        if (aquariumManager.hasUser(candidate)) {
+            handleLoginFail("Username already logged in. Please try a different username.");
+            return;
+        }
+
+        // Create user profile and add to aquarium manager
+        UserProfile user = new UserProfile(candidate);
+        try {
+            aquariumManager.addUser(user);
+        } catch (IllegalArgumentException e) {
+            // Another connection claimed the name in the meantime
+            handleLoginFail("Username already logged in. Please try a different username.");
+            return;
+        }
+        username = user.getUsername();
+        state = State.MAIN;
+        if (resumable) {
+            // Before the reply, so the client holds the token once it sees it is logged in
+            resumeToken = resumer.issue(this, username);
+            out.write(encoder.resumeToken(resumeToken));
+        }
+        reply(encoder.loginSuccess("Login successful! Welcome, " + username + "."));
+        // The join notification fired before the name was bound, so send the first update directly
+        sendStatusUpdate(stateObserver.getLatestBroadcast());
+        System.out.println("User " + username + " has logged in");
+    }
+
+    private void handleLoginFail(String message) {
+        reply(encoder.loginFail(message));
+    }
+
+    /**
+     * Send the answer to the request being handled, tagged with its ID if the client uses them.
+     */
+    private void reply(byte[] message) {
+        reply(currentRequest, message);
+    }
+
+    private void reply(int requestId, byte[] message) {
+        if (requestId == UNTAGGED)
+            out.write(message);
+        else
+            out.write(BinaryCodec.tag(BinaryCodec.OP_RESPONSE, requestId, message));
+    }
+
+    // --- SPECTATORS ---
+    private void handleSpectate() {
+        state = State.SPECTATING;
+        reply(encoder.loginSuccess("Watching the tank as a spectator."));
+        sendSpectatorStatus(stateObserver.getLatestBroadcast());
+    }
+
+    private void handleSpectatorCommand(Command command) {
+        if (command == Command.VIEW_TANK && isThrottled(Map.of(command, 1)))
+            return;
+        switch (command) {
+            case VIEW_TANK -> {
+                // From the last published update, so spectators never wait on the tank lock
+                StatusBroadcast broadcast = stateObserver.getLatestBroadcast();
+                reply(broadcast == null
+                    ? encoder.tankSummary(aquariumManager.getTankSummary())
+                    : encoder.tankSummary(broadcast.getUpdate().summary()));
+            }
+            case QUIT -> close();
+            default -> reply(encoder.text("Spectators can only view-tank or quit."));
+        }
+    }
+
+    // --- COMMANDS ---
+    private void handleCommandLine(String line) {
+        // "batch add-fish add-fish feed-fish"; commas work as separators too
+        String[] parts = line.trim().split("\\s+", 2);
+        if (parts.length == 2 && Command.fromString(parts[0]) == Command.BATCH) {
+            List<Command> commands = new ArrayList<>();
+            for (String alias : parts[1].split("[,\\s]+")) {
+                commands.add(Command.fromString(alias));
+            }
+            handleBatch(commands);
+        } else {
+            handleCommand(Command.fromString(line));
+        }
+    }
+
+    private void handleCommandFrame(Frame frame) {
+        Command command = Command.fromOpcode(frame.opcode());
+        if (command == Command.BATCH)
+            handleBatch(BinaryCodec.decodeCommands(frame.payload()));
+        else
+            handleCommand(command);
+    }
+
+    private void handleCommand(Command command) {
+        if (command == Command.BATCH) {
+            handleBatch(List.of()); // No commands given
+            return;
+        }
+        // Unknown commands cost nothing to answer, and a quit must always get through
+        if (command != Command.UNKNOWN && command != Command.QUIT && isThrottled(Map.of(command, 1)))
+            return;
+        scheduled(1, () -> runCommand(command));
+    }
+
+    private void runCommand(Command command) {
+        // Process commands using switch
+        switch (command) {
+            case ADD_FISH -> {
+                String message;
+                try { message = aquariumManager.addFish(username); }
+                catch (IllegalStateException e) { message = e.getMessage(); }
+                catch (Exception e) { message = "Error adding fish"; }
+                reply(encoder.text(message));
+            }
+            case VIEW_FISH -> {
+                byte[] message;
+                try { message = encoder.userView(aquariumManager.getUserView(username)); }
+                catch (Exception e) { message = encoder.text("Error viewing fish"); }
+                reply(message);
+            }
+            case FEED_FISH -> {
+                String message;
+                try { message = aquariumManager.feedFish(username); }
+                catch (Exception e) { message = "Error feeding fish"; }
+                reply(encoder.text(message));
+            }
+            case REMOVE_FISH -> {
+                // Send fish list to client and wait for its selection
+                if (sendFishListToClient(username))
+                    state = State.SELECTING_FISH;
+            }
+            case CLEAN_TANK -> reply(encoder.text(aquariumManager.cleanTank()));
+            case VIEW_TANK -> reply(encoder.tankSummary(aquariumManager.getTankSummary()));
+            case GET_FISH_FACT -> {
+                // Runs elsewhere so the replies to later requests are not held up
+                int requestId = currentRequest;
+                slowTaskExecutor.execute(() -> sendFishFact(requestId));
+            }
+            case QUIT -> {
+                // Says goodbye and removes the user, unless a resume already took it over
+                if (releaseToken())
+                    close();
+                else
+                    handOff();
+            }
+            default -> reply(encoder.text("Unknown command. Please try again."));
+        }
+    }
+
+    /**
+     * Run the commands in one go and answer with all their outcomes in one message.
+     */
+    private void handleBatch(List<Command> commands) {
+        // Answered before taking a turn, which a batch with nothing to run must not hold
+        try {
+            AquariumManager.validateBatch(commands);
+        } catch (IllegalArgumentException e) {
+            reply(encoder.text(e.getMessage()));
+            return;
+        }
+        Map<Command, Integer> costs = new EnumMap<>(Command.class);
+        for (Command command : commands) {
+            costs.merge(command, 1, Integer::sum);
+        }
+        // Each command in the batch counts, though it takes the lock only once
+        if (isThrottled(costs))
+            return;
+        // Costs as much as the same commands sent one by one
+        scheduled(commands.size(), () -> {
+            String message;
+            try { message = String.join("\n", aquariumManager.executeBatch(username, commands)); }
+            catch (IllegalArgumentException e) { message = e.getMessage(); }
+            catch (Exception e) { message = "Error running batch"; }
+            reply(encoder.text(message));
+        });
+    }
+
+    /**
+     * Run the command once it is this session's turn at the manager, or right away
+     * when there is no scheduler.
+     * @param cost how many commands it counts as
+     */
+    private void scheduled(int cost, Runnable command) {
+        if (schedule == null)
+            command.run();
+        else
+            schedule.run(cost, command);
+    }
+
+    private <T> T scheduled(int cost, Supplier<T> command) {
+        return schedule == null ? command.get() : schedule.run(cost, command);
+    }
+
+    /**
+     * Answer with a throttled reply instead of running the commands if the client is
+     * sending faster than its limits allow.
+     */
+    private boolean isThrottled(Map<Command, Integer> costs) {
+        if (rateLimits == null)
+            return false;
+        long retryAfterMillis = rateLimits.acquire(costs, System.nanoTime());
+        if (retryAfterMillis == 0)
+            return false;
+        reply(encoder.throttled(retryAfterMillis));
+        return true;
+    }
+
+    private void sendFishFact(int requestId) {
+        String message;
+        try { message = FishFactAPI.getRandomFishFact(); }
+        catch (Exception e) { message = e.getMessage(); }
+        reply(requestId, encoder.fishFact(message));
+    }
+
+    private void handleFishSelection(String fishName) {
+        String message = CANCEL_STRING; // Assume cancel
+        // If not cancelled, attempt to remove the fish
+        if (!isOperationCancelled(fishName)) {
+            message = scheduled(1, () -> {
+                try { return aquariumManager.removeFish(username, fishName); }
+                catch (Exception e) { return e.getMessage(); }
+            });
+        }
+        state = State.MAIN;
+        // Print the outcome to the user
+        reply(encoder.text(message));
+    }
+
+    private boolean isOperationCancelled(String value) {
+        return value == null || value.equalsIgnoreCase(Protocol.CANCEL);
+    }
+
+    /**
+     * @return true if a selectable list was sent and the client will reply with a name
+     */
+    private boolean sendFishListToClient(String username) {
+        try {
+            List<String> fishNames = new ArrayList<>();
+            for (FishRecord fish : aquariumManager.getUserView(username).fish()) {
+                fishNames.add(fish.name());
+            }
+            reply(encoder.fishList(fishNames));
+            return !fishNames.isEmpty();
+        } catch (NoSuchElementException e) {
+            reply(encoder.fishListError());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.carekeeperaquarium.server;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Decides which session's command goes next to the tank, instead of leaving it to
+ * whichever thread wins the tank's locks. Those locks are not fair, so a client sending
+ * commands back to back can grab them again and again while others wait.
+ *
+ * Up to {@code parallelism} commands run at once, each on the thread that submitted it;
+ * commands for different users lock different parts of the tank, so they can use every
+ * core. Once that many run, the others wait their turn in start-time fair queuing order.
+ * Each session has a virtual clock that moves on by a command's cost divided by the
+ * session's weight. The waiting command whose session is furthest behind goes next. A
+ * session that sends nonstop therefore goes to the back after each command, and sessions
+ * served round-robin get equal shares. A session with weight 2 gets twice the share of
+ * one with weight 1, and a batch costs as much as its commands would one by one. Time
+ * spent idle earns a session nothing, so it can not save up turns for later.
+ *
+ * The queue wait of every command is recorded, both overall and per session.
+ *
+ * A submitting thread must be free to block. The blocking transport gives each client
+ * a thread of its own, and the NIO transport hands each connection's input to a virtual
+ * thread, so an event loop never waits here for another session's command.
+ */
+class CommandScheduler {
+
+    private static final int SLOWEST_REPORTED = 3;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final PriorityQueue<Ticket> waiting = new PriorityQueue<>(
+        Comparator.comparingDouble((Ticket ticket) -> ticket.start).thenComparingLong(ticket -> ticket.sequence));
+    private int running;
+    private double virtualTime;
+    private long sequence;
+
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final LatencyStats queueWait = new LatencyStats();
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong reportedCount = new AtomicLong();
+    private final int parallelism;
+
+    private static final class Ticket {
+        final double start;
+        final long sequence;
+        final Condition turn;
+        boolean granted;
+
+        Ticket(double start, long sequence, Condition turn) {
+            this.start = start;
+            this.sequence = sequence;
+            this.turn = turn;
+        }
+    }
+
+    /**
+     * @param parallelism commands that may run at once
+     */
+    CommandScheduler(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the configured scheduler, or null when commands contend for the locks directly
+     */
+    static CommandScheduler fromConfig(ServerConfig config) {
+        return config.getSchedulingMode() == ServerConfig.SchedulingMode.FAIR
+            ? new CommandScheduler(config.getSchedulingParallelism()) : null;
+    }
+
+    /**
+     * @param weight share of turns relative to other sessions; 1 for an equal share
+     * @param name   label for reports, read when they are written
+     */
+    Session newSession(double weight, Supplier<String> name) {
+        if (weight <= 0)
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        Session session = new Session(weight, name);
+        sessions.add(session);
+        return session;
+    }
+
+    // --- ACCESSORS ---
+    LatencyStats getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return commands that had to wait for another to finish
+     */
+    long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return overall queue wait, then the sessions that waited longest on average
+     */
+    String describe() {
+        List<Session> slowest = new ArrayList<>(sessions);
+        slowest.removeIf(session -> session.queueWait.getCount() == 0);
+        slowest.sort(Comparator.comparingDouble((Session session) -> session.queueWait.getAverageMicros()).reversed());
+        List<String> top = new ArrayList<>();
+        for (Session session : slowest.subList(0, Math.min(SLOWEST_REPORTED, slowest.size()))) {
+            String name = session.name.get();
+            top.add((name == null ? "(no user)" : name) + " " + session.queueWait.describe());
+        }
+        return "parallelism=" + parallelism + ", queue wait " + queueWait.describe() + ", queued=" + queuedCount.get()
+            + (top.isEmpty() ? "" : "; slowest sessions: " + String.join("; ", top));
+    }
+
+    /**
+     * Log the queue wait if any command ran since the last report.
+     */
+    void report() {
+        long count = queueWait.getCount();
+        if (reportedCount.getAndSet(count) != count)
+            System.out.println("Command scheduling: " + describe());
+    }
+
+    // --- HELPERS ---
+    /**
+     * Block until the caller's command may run.
+     * @return nanos spent waiting
+     */
+    private long acquire(Session session, int cost) {
+        long queuedNanos = System.nanoTime();
+        lock.lock();
+        try {
+            double start = Math.max(virtualTime, session.finish);
+            session.finish = start + cost / session.weight;
+            if (running < parallelism) {
+                running++;
+                virtualTime = start;
+                return 0;
+            }
+            Ticket ticket = new Ticket(start, sequence++, lock.newCondition());
+            waiting.add(ticket);
+            queuedCount.incrementAndGet();
+            while (!ticket.granted) {
+                // Commands are short, so the wait is too; an interrupt is left for the caller
+                ticket.turn.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return System.nanoTime() - queuedNanos;
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            Ticket next = waiting.poll();
+            if (next == null) {
+                running--;
+                return;
+            }
+            // The slot passes straight to the next command
+            virtualTime = next.start;
+            next.granted = true;
+            next.turn.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One session's place in the schedule and its queue wait.
+     */
+    final class Session {
+        private final double weight;
+        private final Supplier<String> name;
+        private final LatencyStats queueWait = new LatencyStats();
+        // Virtual time at which this session's last command ends; guarded by the scheduler lock
+        private double finish;
+        // Thread running this session's command, to catch a command asking for a second turn
+        private volatile Thread holder;
+
+        private Session(double weight, Supplier<String> name) {
+            this.weight = weight;
+            this.name = name;
+        }
+
+        /**
+         * Run the task once it is this session's turn.
+         * @param cost how many commands the task runs
+         */
+        <T> T run(int cost, Supplier<T> task) {
+            // Waiting here for a turn this thread holds would never end once the slots run out
+            if (holder == Thread.currentThread())
+                throw new IllegalStateException("Command already has its turn");
+            long waitNanos = acquire(this, cost);
+            queueWait.record(waitNanos);
+            CommandScheduler.this.queueWait.record(waitNanos);
+            holder = Thread.currentThread();
+            try {
+                return task.get();
+            } finally {
+                holder = null;
+                release();
+            }
+        }
+
+        void run(int cost, Runnable task) {
+            run(cost, () -> {
+                task.run();
+                return null;
+            });
+        }
+
+        LatencyStats getQueueWait() {
+            return queueWait;
+        }
+
+        /**
+         * Leave the reports; the session has ended.
+         */
+        void close() {
+            sessions.remove(this);
+        }
+    }
+}
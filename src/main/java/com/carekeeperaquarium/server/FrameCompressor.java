@@ -0,0 +1,82 @@
+package com.carekeeperaquarium.server;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import com.carekeeperaquarium.common.Compression;
+
+/**
+ * Compresses the messages of one connection into a single deflate stream and
+ * keeps count of what it saves and what it costs. Only the thread writing to
+ * the connection may use it.
+ */
+class FrameCompressor {
+
+    private final Deflater deflater = Compression.newDeflater();
+    private byte[] buffer = new byte[4096];
+    private long frameCount;
+    private long bytesIn;
+    private long bytesOut;
+    private long compressNanos;
+
+    /**
+     * @return the compressed message, flushed so the client can decode it without waiting for more
+     */
+    byte[] compress(byte[] message) {
+        long start = System.nanoTime();
+        deflater.setInput(message);
+        int length = 0;
+        while (true) {
+            length += deflater.deflate(buffer, length, buffer.length - length, Deflater.SYNC_FLUSH);
+            // A full buffer may mean more output is waiting
+            if (length < buffer.length)
+                break;
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        byte[] compressed = Arrays.copyOf(buffer, length);
+        compressNanos += System.nanoTime() - start;
+        frameCount++;
+        bytesIn += message.length;
+        bytesOut += length;
+        return compressed;
+    }
+
+    /**
+     * Free the native compressor; it can not be used afterwards.
+     */
+    void end() {
+        deflater.end();
+    }
+
+    // --- ACCESSORS ---
+    long getFrameCount() {
+        return frameCount;
+    }
+
+    long getBytesIn() {
+        return bytesIn;
+    }
+
+    long getBytesOut() {
+        return bytesOut;
+    }
+
+    /**
+     * @return uncompressed size divided by compressed size, or 1 before anything was sent
+     */
+    double getRatio() {
+        return bytesOut == 0 ? 1.0 : (double) bytesIn / bytesOut;
+    }
+
+    /**
+     * @return average time spent compressing one message, in microseconds
+     */
+    double getMicrosPerFrame() {
+        return frameCount == 0 ? 0.0 : compressNanos / 1000.0 / frameCount;
+    }
+
+    String describe() {
+        return String.format("%d frames, %d -> %d bytes (%.1fx), %.1f us/frame",
+            frameCount, bytesIn, bytesOut, getRatio(), getMicrosPerFrame());
+    }
+}
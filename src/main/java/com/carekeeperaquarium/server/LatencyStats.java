@@ -0,0 +1,35 @@
+package com.carekeeperaquarium.server;
+
+/**
+ * Running count, average and maximum of a duration measured many times.
+ * Cheap enough to update on every connection or request.
+ */
+class LatencyStats {
+
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    synchronized void record(long nanos) {
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    // --- ACCESSORS ---
+    synchronized long getCount() {
+        return count;
+    }
+
+    synchronized double getAverageMicros() {
+        return count == 0 ? 0.0 : totalNanos / 1000.0 / count;
+    }
+
+    synchronized double getMaxMicros() {
+        return maxNanos / 1000.0;
+    }
+
+    synchronized String describe() {
+        return String.format("avg %.1f us, max %.1f us over %d", getAverageMicros(), getMaxMicros(), count);
+    }
+}
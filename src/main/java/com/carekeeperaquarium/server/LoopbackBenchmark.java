@@ -0,0 +1,322 @@
+package com.carekeeperaquarium.server;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.business.ThreadPoolManager;
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.Command;
+import com.carekeeperaquarium.common.Connection;
+import com.carekeeperaquarium.common.Frame;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.common.ProtocolReader;
+
+/**
+ * Drives many sessions through a {@link LoopbackServer} and reports the latency
+ * and throughput of the full command path, protocol to tank state, with no
+ * networking to blur the numbers. Each session logs in over the binary protocol
+ * with pipelining, then sends its commands one at a time and times each from
+ * request to tagged response. Sessions either get a connection each or share a
+ * few through the "mux" feature, the way a bot fleet would. A share of the requests
+ * can be sent as {@code feed-fish} to mix writes in with reads.
+ *
+ * Run with {@code java -Daquarium.bench.sessions=2000 -jar ... bench}.
+ */
+public class LoopbackBenchmark {
+
+    private static final long DRAIN_MILLIS = 5000;
+
+    private final ServerConfig config;
+    private final LoopbackServer server;
+    private final LatencyStats loginLatency = new LatencyStats();
+    private final LatencyStats requestLatency = new LatencyStats();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public LoopbackBenchmark(ServerConfig config, AquariumManager aquariumManager, StateObserver stateObserver) {
+        this.config = config;
+        this.server = new LoopbackServer(config, aquariumManager, stateObserver);
+    }
+
+    public static void main(String[] args) {
+        StateObserver stateObserver = new StateObserver();
+        LoopbackBenchmark benchmark = new LoopbackBenchmark(
+            benchmarkConfig(), new AquariumManager(stateObserver), stateObserver);
+        try {
+            benchmark.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Benchmark failed: " + e.getMessage());
+        } finally {
+            benchmark.server.shutdown();
+            ThreadPoolManager.shutdown();
+        }
+    }
+
+    /**
+     * The system properties, with admission limits and client threads sized so
+     * that every benchmark session is admitted at once, and no session-wide rate
+     * limit, unless set explicitly.
+     */
+    static ServerConfig benchmarkConfig() {
+        Properties properties = new Properties();
+        properties.putAll(System.getProperties());
+        String sessions = String.valueOf(new ServerConfig(properties).getBenchmarkSessions());
+        properties.putIfAbsent("aquarium.admission.max-sessions", sessions);
+        properties.putIfAbsent("aquarium.admission.max-pending", sessions);
+        properties.putIfAbsent("aquarium.client-executor", "virtual");
+        // Sessions send as fast as they can on purpose
+        properties.putIfAbsent("aquarium.rate.per-second", "0");
+        return new ServerConfig(properties);
+    }
+
+    public void run() throws IOException, InterruptedException {
+        int sessions = config.getBenchmarkSessions();
+        int connections = config.getBenchmarkConnections();
+        int writePercent = config.getBenchmarkWritePercent();
+        System.out.println("Loopback benchmark: " + sessions + " sessions x " + config.getBenchmarkRequests()
+            + " " + config.getBenchmarkCommand().getPrimaryAlias() + " requests"
+            + (writePercent > 0 ? " (" + writePercent + "% feed-fish)" : "") + " over "
+            + (connections > 0 ? connections + " multiplexed" : sessions) + " connections...");
+
+        List<MuxConnection> shared = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            shared.add(new MuxConnection(server.connect()));
+        }
+
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < sessions; i++) {
+                int index = i;
+                if (shared.isEmpty())
+                    clients.execute(() -> runSession(index));
+                else
+                    clients.execute(() -> runSession(index, shared.get(index % shared.size())));
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        for (MuxConnection connection : shared) {
+            connection.close();
+        }
+        // Let the server side of each session finish removing its user
+        long deadline = System.currentTimeMillis() + DRAIN_MILLIS;
+        while (server.getActiveCount() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+
+        System.out.printf("Finished in %.2f s, %.0f requests/s, %d failed sessions%n",
+            seconds, requestLatency.getCount() / seconds, failures.get());
+        System.out.println("Login:   " + loginLatency.describe());
+        System.out.println("Request: " + requestLatency.describe());
+        System.out.println("Server:  " + server.describe());
+    }
+
+    /**
+     * A session on a connection of its own.
+     */
+    private void runSession(int index) {
+        try (Connection connection = server.connect()) {
+            ProtocolReader in = new ProtocolReader(connection.getInputStream());
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            handshake(in, out, List.of(Protocol.FEATURE_BINARY, Protocol.FEATURE_PIPELINE));
+            runSession(index, new Link() {
+                @Override
+                public void send(byte[] frame) throws IOException {
+                    out.write(frame);
+                    out.flush();
+                }
+
+                @Override
+                public Frame receive() throws IOException {
+                    return in.readFrame();
+                }
+            });
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+    }
+
+    /**
+     * A session sharing a multiplexed connection; ends its session but not the connection.
+     */
+    private void runSession(int index, MuxConnection connection) {
+        int sessionId = index + 1;
+        try {
+            runSession(index, connection.open(sessionId));
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        } finally {
+            connection.end(sessionId);
+        }
+    }
+
+    private void runSession(int index, Link link) throws IOException {
+        long started = System.nanoTime();
+        byte[] login = BinaryCodec.frame(BinaryCodec.OP_LOGIN, BinaryCodec.encodeText("bench-" + index));
+        if (call(link, 0, login).opcode() != BinaryCodec.OP_LOGIN_SUCCESS)
+            throw new IOException("Login failed");
+        loginLatency.record(System.nanoTime() - started);
+
+        byte[] command = BinaryCodec.frame(config.getBenchmarkCommand().getOpcode(), new byte[0]);
+        byte[] write = BinaryCodec.frame(Command.FEED_FISH.getOpcode(), new byte[0]);
+        int writePercent = config.getBenchmarkWritePercent();
+        for (int requestId = 1; requestId <= config.getBenchmarkRequests(); requestId++) {
+            // Spread the writes evenly, e.g. every fifth request at 20%
+            boolean isWrite = requestId * writePercent / 100 != (requestId - 1) * writePercent / 100;
+            started = System.nanoTime();
+            call(link, requestId, isWrite ? write : command);
+            requestLatency.record(System.nanoTime() - started);
+        }
+    }
+
+    // --- HELPERS ---
+    /**
+     * Read the welcome, ask for the features and wait for the server to accept.
+     */
+    private static void handshake(ProtocolReader in, OutputStream out, List<String> features) throws IOException {
+        String line = in.readLine();
+        if (line == null || Protocol.isHandshake(line, Protocol.BUSY))
+            throw new IOException("Not admitted: " + line);
+        String hello = Protocol.formatHandshake(Protocol.HELLO, features);
+        out.write((hello + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        do {
+            line = in.readLine();
+            if (line == null)
+                throw new EOFException("Closed during handshake");
+        } while (!Protocol.isHandshake(line, Protocol.ACCEPT));
+    }
+
+    /**
+     * Send a tagged request and wait for its response, skipping status updates.
+     */
+    private static Frame call(Link link, int requestId, byte[] frame) throws IOException {
+        link.send(BinaryCodec.tag(BinaryCodec.OP_REQUEST, requestId, frame));
+        while (true) {
+            Frame reply = link.receive();
+            if (reply == null)
+                throw new EOFException("Closed while waiting for request " + requestId);
+            if (reply.opcode() == BinaryCodec.OP_RESPONSE) {
+                BinaryCodec.Tagged response = BinaryCodec.untag(reply.payload());
+                if (response.requestId() == requestId)
+                    return response.frame();
+            }
+        }
+    }
+
+    /**
+     * Where a session sends its frames and reads the frames meant for it.
+     */
+    private interface Link {
+        void send(byte[] frame) throws IOException;
+
+        /**
+         * @return the next frame, or null once the session or connection has ended
+         */
+        Frame receive() throws IOException;
+    }
+
+    /**
+     * One connection carrying many sessions: a reader thread hands each incoming
+     * frame to the queue of the session it is tagged with.
+     */
+    private static final class MuxConnection {
+        private static final Frame ENDED = new Frame(BinaryCodec.OP_SESSION_END, new byte[0]);
+
+        private final Connection connection;
+        private final ProtocolReader in;
+        private final OutputStream out;
+        private final Map<Integer, BlockingQueue<Frame>> inboxes = new ConcurrentHashMap<>();
+        // Not a monitor: a write may block on a full pipe, which would pin the virtual thread
+        private final ReentrantLock writeLock = new ReentrantLock();
+
+        MuxConnection(Connection connection) throws IOException {
+            this.connection = connection;
+            this.in = new ProtocolReader(connection.getInputStream());
+            this.out = new BufferedOutputStream(connection.getOutputStream());
+            handshake(in, out, List.of(Protocol.FEATURE_BINARY, Protocol.FEATURE_PIPELINE, Protocol.FEATURE_MUX));
+            Thread.ofVirtual().name("bench-mux-reader").start(this::readLoop);
+        }
+
+        Link open(int sessionId) {
+            BlockingQueue<Frame> inbox = new LinkedBlockingQueue<>();
+            inboxes.put(sessionId, inbox);
+            return new Link() {
+                @Override
+                public void send(byte[] frame) throws IOException {
+                    write(BinaryCodec.tag(BinaryCodec.OP_SESSION, sessionId, frame));
+                }
+
+                @Override
+                public Frame receive() throws IOException {
+                    try {
+                        Frame frame = inbox.take();
+                        return frame == ENDED ? null : frame;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted");
+                    }
+                }
+            };
+        }
+
+        void end(int sessionId) {
+            inboxes.remove(sessionId);
+            try {
+                write(BinaryCodec.sessionEnd(sessionId));
+            } catch (IOException e) {
+                // The connection is gone and the session with it
+            }
+        }
+
+        void close() throws IOException {
+            connection.close();
+        }
+
+        private void write(byte[] frame) throws IOException {
+            writeLock.lock();
+            try {
+                out.write(frame);
+                out.flush();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void readLoop() {
+            try {
+                Frame frame;
+                while ((frame = in.readFrame()) != null) {
+                    if (frame.opcode() == BinaryCodec.OP_SESSION) {
+                        BinaryCodec.Tagged tagged = BinaryCodec.untag(frame.payload());
+                        BlockingQueue<Frame> inbox = inboxes.get(tagged.requestId());
+                        if (inbox != null)
+                            inbox.add(tagged.frame());
+                    } else if (frame.opcode() == BinaryCodec.OP_SESSION_END) {
+                        BlockingQueue<Frame> inbox = inboxes.get(BinaryCodec.decodeSessionEnd(frame.payload()));
+                        if (inbox != null)
+                            inbox.add(ENDED);
+                    }
+                }
+            } catch (IOException e) {
+                // Treated like the end of the stream
+            }
+            inboxes.values().forEach(inbox -> inbox.add(ENDED));
+        }
+    }
+}
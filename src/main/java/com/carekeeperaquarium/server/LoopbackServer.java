@@ -0,0 +1,82 @@
+package com.carekeeperaquarium.server;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.business.ThreadPoolManager;
+import com.carekeeperaquarium.common.Connection;
+import com.carekeeperaquarium.common.LoopbackConnection;
+
+/**
+ * In-process transport: each {@link #connect()} hands one end of a
+ * {@link LoopbackConnection} to a {@link ClientHandler} and returns the other,
+ * so sessions run the full command path from protocol to tank state with no
+ * sockets or kernel in between. Meant for benchmarks and stress tests that
+ * drive thousands of sessions from one JVM.
+ */
+public class LoopbackServer {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ServerConfig config;
+    private final AquariumManager aquariumManager;
+    private final StateObserver stateObserver;
+    private final AdmissionControl admission;
+    private final SessionReaper reaper;
+    private final SessionResumer resumer;
+    private final RateLimiter rateLimiter;
+    private final CommandScheduler scheduler;
+
+    public LoopbackServer(ServerConfig config, AquariumManager aquariumManager, StateObserver stateObserver) {
+        this.config = config;
+        this.aquariumManager = aquariumManager;
+        this.stateObserver = stateObserver;
+        this.admission = AdmissionControl.fromConfig(config);
+        this.reaper = SessionReaper.fromConfig(config);
+        this.resumer = SessionResumer.fromConfig(config, aquariumManager);
+        this.rateLimiter = RateLimiter.fromConfig(config);
+        this.scheduler = CommandScheduler.fromConfig(config);
+        ThreadPoolManager.setClientExecutorMode(config.getClientExecutorMode());
+        reaper.start(ThreadPoolManager.getScheduler());
+        resumer.start(ThreadPoolManager.getScheduler());
+    }
+
+    /**
+     * Open a session as the blocking transport would for an accepted socket.
+     * @return the client's end; a full server answers on it with {@code SERVER:BUSY}
+     */
+    public Connection connect() {
+        LoopbackConnection.Pair pair = LoopbackConnection.pair(BUFFER_SIZE);
+        long acceptedNanos = System.nanoTime();
+        if (admission.tryAdmit()) {
+            ThreadPoolManager.getClientExecutor().execute(new ClientHandler(
+                pair.server(), aquariumManager, stateObserver, config, admission, reaper, resumer, rateLimiter, scheduler,
+                acceptedNanos));
+        } else {
+            admission.reject(pair.server());
+        }
+        admission.recordDispatch(acceptedNanos);
+        return pair.client();
+    }
+
+    /**
+     * @return sessions still being served
+     */
+    public int getActiveCount() {
+        return admission.getActiveCount() + admission.getQueuedCount();
+    }
+
+    public String describe() {
+        return admission.describe() + ", reaped=" + reaper.getReapedCount()
+            + ", resumed=" + resumer.getResumedCount()
+            + (rateLimiter == null ? "" : ", " + rateLimiter.describe())
+            + (scheduler == null ? "" : " | " + scheduler.describe())
+            + " | accept " + admission.describeLatency()
+            + " | writes: " + OutboundWriter.describeTotals()
+            + " | reads: " + aquariumManager.describeReads()
+            + " | events: " + stateObserver.describe();
+    }
+
+    public void shutdown() {
+        reaper.stop();
+        resumer.stop();
+    }
+}
@@ -0,0 +1,75 @@
+package com.carekeeperaquarium.server;
+
+import java.util.List;
+
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.StatusDelta;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.common.TankSummary;
+import com.carekeeperaquarium.common.TankUpdate;
+import com.carekeeperaquarium.common.UserView;
+
+/**
+ * Turns server messages into bytes for one wire format.
+ */
+interface MessageEncoder {
+
+    byte[] text(String message);
+
+    byte[] loginSuccess(String message);
+
+    byte[] loginFail(String reason);
+
+    /**
+     * The start of every user's status message for this update; see {@link StatusBroadcast}.
+     */
+    byte[] statusShared(TankUpdate update);
+
+    /**
+     * @param sharedSection what {@link #statusShared(TankUpdate)} returned for the update
+     */
+    byte[] status(byte[] sharedSection, List<FishRecord> fish);
+
+    /**
+     * The tank-wide status spectators get; see {@link StatusBroadcast#spectatorStatus(MessageEncoder)}.
+     */
+    byte[] spectatorStatus(TankSummary summary);
+
+    /**
+     * The full status a client that negotiated "delta" applies the later deltas to.
+     * @param sharedSection what {@link #statusShared(TankUpdate)} returned for the update
+     */
+    byte[] statusBase(byte[] sharedSection, StatusSnapshot status);
+
+    /**
+     * Only called when the "delta" feature was negotiated.
+     */
+    byte[] statusDelta(StatusDelta delta);
+
+    /**
+     * @param fishNames the fish the user can pick from; may be empty
+     */
+    byte[] fishList(List<String> fishNames);
+
+    byte[] fishListError();
+
+    byte[] fishFact(String fact);
+
+    /**
+     * The reply to a command refused by the {@link RateLimiter}.
+     */
+    byte[] throttled(long retryAfterMillis);
+
+    byte[] tankSummary(TankSummary summary);
+
+    byte[] userView(UserView view);
+
+    /**
+     * Only called when the "resume" feature was negotiated.
+     */
+    byte[] resumeToken(String token);
+
+    byte[] ping();
+
+    byte[] pong();
+}
@@ -0,0 +1,161 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.business.ThreadPoolManager;
+import com.carekeeperaquarium.common.ChannelConnection;
+
+/**
+ * Non-blocking server core: acceptor threads spread connections round-robin over
+ * a small, fixed number of {@link NioEventLoop} threads, so the number of sessions
+ * is no longer tied to the number of threads.
+ */
+public class NioAquariumServer {
+
+    private final ServerConfig config;
+    private final AquariumManager aquariumManager;
+    private final StateObserver stateObserver;
+    private final NioEventLoop[] eventLoops;
+    private final AdmissionControl admission;
+    private final SessionReaper reaper;
+    private final SessionResumer resumer;
+    private final RateLimiter rateLimiter;
+    private final CommandScheduler scheduler;
+    private volatile List<List<ServerSocketChannel>> serverChannels = List.of();
+    private final List<Selector> acceptSelectors = new CopyOnWriteArrayList<>();
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public NioAquariumServer(ServerConfig config, AquariumManager aquariumManager,
+                             StateObserver stateObserver) throws IOException {
+        this.config = config;
+        this.aquariumManager = aquariumManager;
+        this.stateObserver = stateObserver;
+        this.admission = AdmissionControl.fromConfig(config);
+        this.reaper = SessionReaper.fromConfig(config);
+        this.resumer = SessionResumer.fromConfig(config, aquariumManager);
+        this.rateLimiter = RateLimiter.fromConfig(config);
+        this.scheduler = CommandScheduler.fromConfig(config);
+        this.eventLoops = new NioEventLoop[Math.max(1, config.getEventLoopThreads())];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new NioEventLoop(config, aquariumManager, stateObserver, admission, reaper, resumer,
+                rateLimiter, scheduler);
+        }
+    }
+
+    /**
+     * Accept connections until {@link #shutdown()} is called.
+     */
+    public void run() throws IOException {
+        for (int i = 0; i < eventLoops.length; i++) {
+            Thread thread = new Thread(eventLoops[i], "aquarium-nio-" + i);
+            thread.start();
+        }
+
+        reaper.start(ThreadPoolManager.getScheduler());
+        resumer.start(ThreadPoolManager.getScheduler());
+        ThreadPoolManager.getScheduler().scheduleAtFixedRate(admission::report, 1, 1, TimeUnit.MINUTES);
+        if (scheduler != null)
+            ThreadPoolManager.getScheduler().scheduleAtFixedRate(scheduler::report, 1, 1, TimeUnit.MINUTES);
+
+        serverChannels = ServerChannels.open(config.getListenAddresses(), config.getAcceptorThreads());
+        List<Thread> acceptors = new ArrayList<>();
+        for (List<ServerSocketChannel> channels : serverChannels) {
+            Selector selector = Selector.open();
+            acceptSelectors.add(selector);
+            for (ServerSocketChannel channel : channels) {
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_ACCEPT);
+            }
+            acceptors.add(new Thread(() -> acceptLoop(selector), "aquarium-acceptor-" + acceptors.size()));
+        }
+
+        System.out.println("Aquarium Server (nio, " + eventLoops.length + " event loops, "
+            + acceptors.size() + " acceptors) is starting on "
+            + config.describeListenAddresses() + "...");
+
+        acceptors.forEach(Thread::start);
+        for (Thread acceptor : acceptors) {
+            try {
+                acceptor.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Closed by shutdown()
+        System.out.println("Server socket closed.");
+    }
+
+    private void acceptLoop(Selector selector) {
+        try {
+            while (running) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    ServerSocketChannel serverChannel = (ServerSocketChannel) keys.next().channel();
+                    keys.remove();
+                    acceptAll(serverChannel);
+                }
+            }
+        } catch (IOException | ClosedSelectorException | CancelledKeyException e) {
+            if (running) {
+                System.err.println("Acceptor stopped: " + e.getMessage());
+            }
+        }
+    }
+
+    private void acceptAll(ServerSocketChannel serverChannel) throws IOException {
+        SocketChannel channel;
+        // Another acceptor sharing the channel may have taken the connection already
+        while ((channel = serverChannel.accept()) != null) {
+            long acceptedNanos = System.nanoTime();
+            if (admission.tryAdmit()) {
+                int next = Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length);
+                eventLoops[next].register(channel, acceptedNanos);
+            } else {
+                admission.reject(new ChannelConnection(channel));
+            }
+            admission.recordDispatch(acceptedNanos);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        reaper.stop();
+        resumer.stop();
+        System.out.println("Connections: " + admission.describe() + ", reaped=" + reaper.getReapedCount()
+            + ", resumed=" + resumer.getResumedCount());
+        if (rateLimiter != null)
+            System.out.println("Rate limits: " + rateLimiter.describe());
+        if (scheduler != null)
+            System.out.println("Command scheduling: " + scheduler.describe());
+        System.out.println("Accept latency: " + admission.describeLatency());
+        System.out.println("Writes: " + OutboundWriter.describeTotals());
+        System.out.println("Reads: " + aquariumManager.describeReads());
+        System.out.println("State events: " + stateObserver.describe());
+        ServerChannels.close(serverChannels);
+        try {
+            for (Selector acceptSelector : acceptSelectors)
+                acceptSelector.close();
+        } catch (IOException e) {
+            System.err.println("Error during shutdown: " + e.getMessage());
+        }
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+    }
+}
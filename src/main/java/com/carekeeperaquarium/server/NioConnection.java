@@ -0,0 +1,349 @@
+package com.carekeeperaquarium.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.Frame;
+
+/**
+ * Non-blocking transport for one client. Reads are split into lines, or frames once
+ * binary framing is negotiated, on the event loop thread, then handed in order to the
+ * {@link ClientSession} on a {@link SerialExecutor} of the connection's own. A command
+ * may wait there for its turn in the {@link CommandScheduler} without holding up the
+ * other connections of the loop. While input is being handled the loop stops reading:
+ * after each line in text mode, since a line can switch the session to binary framing,
+ * and after {@link #MAX_IN_FLIGHT} frames in binary mode. Writes may come from any
+ * thread and wait in a bounded {@link OutboundQueue} until the channel accepts them.
+ */
+class NioConnection implements SessionOutput {
+
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int MAX_LINE_LENGTH = 8192;
+    static final int MAX_IN_FLIGHT = 32;
+
+    private final NioEventLoop eventLoop;
+    private final SocketChannel channel;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+    private final byte[] frameHeader = new byte[BinaryCodec.HEADER_LENGTH];
+    private int headerLength;
+    private byte[] framePayload;
+    private int payloadOffset;
+    private final OutboundQueue outbound;
+    private final AdmissionControl admission;
+    private final OutboundWriter outboundWriter; // Event loop only
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final SerialExecutor sessionRunner = new SerialExecutor("aquarium-nio-session");
+    private int inFlight;          // Event loop only: inputs handed over, not yet handled
+    private boolean readPaused;    // Event loop only
+    private boolean inputEnded;    // Event loop only
+    private boolean sessionEnded;  // Session runner only
+    private ClientSession session;
+    private SelectionKey key;
+    private boolean closeRequested;
+    private volatile boolean closed;
+
+    NioConnection(NioEventLoop eventLoop, SocketChannel channel, OutboundQueue outbound,
+                  AdmissionControl admission) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.outbound = outbound;
+        this.admission = admission;
+        this.outboundWriter = new OutboundWriter(channel);
+    }
+
+    void setSession(ClientSession session) {
+        this.session = session;
+    }
+
+    // --- EVENT LOOP CALLBACKS ---
+    void start(long acceptedNanos) {
+        admission.sessionStarted(acceptedNanos);
+        try {
+            channel.configureBlocking(false);
+            key = channel.register(eventLoop.getSelector(), SelectionKey.OP_READ, this);
+            sessionRunner.execute(session::start);
+        } catch (IOException e) {
+            System.out.println("Connection error with client: " + e.getMessage());
+            closeNow();
+        }
+    }
+
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            closeNow();
+            return;
+        }
+        if (read < 0) {
+            // Commands already read still run before the connection goes
+            inputEnded = true;
+            setReadPaused(true);
+            if (inFlight == 0)
+                closeNow();
+            return;
+        }
+
+        readBuffered();
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    // --- SESSION OUTPUT ---
+    @Override
+    public void write(byte[] message) {
+        if (closed)
+            return;
+        if (outbound.offer(message) == OutboundQueue.Offer.OVERFLOW)
+            handleOverflow();
+        else
+            scheduleFlush();
+    }
+
+    @Override
+    public boolean writeStatus(byte[] message, boolean fullUpdate) {
+        return writeStatus(message, fullUpdate, 0);
+    }
+
+    @Override
+    public boolean writeStatus(byte[] message, boolean fullUpdate, int stream) {
+        if (closed)
+            return false;
+        OutboundQueue.Offer result = outbound.offerStatus(message, fullUpdate, stream);
+        if (result == OutboundQueue.Offer.OVERFLOW)
+            handleOverflow();
+        else if (result == OutboundQueue.Offer.QUEUED)
+            scheduleFlush();
+        return result == OutboundQueue.Offer.QUEUED;
+    }
+
+    @Override
+    public void setStreamCount(int streams) {
+        outbound.setStreamCount(streams);
+    }
+
+    @Override
+    public void startCompression() {
+        outbound.startCompression();
+    }
+
+    @Override
+    public void close() {
+        if (eventLoop.inEventLoop()) {
+            requestClose();
+        } else {
+            eventLoop.execute(this::requestClose);
+        }
+    }
+
+    // --- HELPERS ---
+    /**
+     * Parse what has been read so far, up to the point where reading pauses; the rest
+     * stays in the buffer for {@link #inputHandled(boolean)} to pick up.
+     */
+    private void readBuffered() {
+        readBuffer.flip();
+        while (readBuffer.hasRemaining() && !readPaused && !closeRequested && !closed) {
+            if (session.isBinary())
+                readFrame();
+            else
+                readLine();
+        }
+        readBuffer.compact();
+    }
+
+    /**
+     * Hand one line or frame to the session runner, pausing reads if the session has
+     * as much as it may have in flight.
+     */
+    private void dispatch(BooleanSupplier input) {
+        inFlight++;
+        if (!canTakeInput())
+            setReadPaused(true);
+        sessionRunner.execute(() -> {
+            boolean keepGoing = false;
+            try {
+                keepGoing = !sessionEnded && !closed && input.getAsBoolean();
+            } catch (RuntimeException e) {
+                System.out.println("Error handling client input, disconnecting: " + e.getMessage());
+            } finally {
+                // Always reported back, or the loop would wait for it and never read again
+                sessionEnded = !keepGoing;
+                boolean handled = keepGoing;
+                eventLoop.execute(() -> inputHandled(handled));
+            }
+        });
+    }
+
+    private void inputHandled(boolean keepGoing) {
+        inFlight--;
+        if (closed)
+            return;
+        if (inputEnded) {
+            if (inFlight == 0)
+                closeNow();
+        } else if (!keepGoing) {
+            requestClose();
+        } else if (readPaused && canTakeInput()) {
+            setReadPaused(false);
+            readBuffered();
+        }
+    }
+
+    private boolean canTakeInput() {
+        return session.isBinary() ? inFlight < MAX_IN_FLIGHT : inFlight == 0;
+    }
+
+    private void setReadPaused(boolean paused) {
+        readPaused = paused;
+        if (key.isValid())
+            key.interestOps(paused ? key.interestOps() & ~SelectionKey.OP_READ
+                                   : key.interestOps() | SelectionKey.OP_READ);
+    }
+
+    /**
+     * Consume bytes up to the end of a line, handing a complete line to the session.
+     */
+    private void readLine() {
+        while (readBuffer.hasRemaining()) {
+            byte b = readBuffer.get();
+            if (b == '\n') {
+                String line = takeLine();
+                dispatch(() -> session.handleLine(line));
+                return;
+            }
+            if (lineBuffer.size() >= MAX_LINE_LENGTH) {
+                System.out.println("Client line too long, disconnecting");
+                closeNow();
+                return;
+            }
+            lineBuffer.write(b);
+        }
+    }
+
+    private String takeLine() {
+        byte[] bytes = lineBuffer.toByteArray();
+        lineBuffer.reset();
+        int length = bytes.length;
+        if (length > 0 && bytes[length - 1] == '\r')
+            length--;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Consume bytes of the current binary frame, handing it to the session once complete.
+     */
+    private void readFrame() {
+        if (framePayload == null) {
+            while (headerLength < BinaryCodec.HEADER_LENGTH && readBuffer.hasRemaining()) {
+                frameHeader[headerLength++] = readBuffer.get();
+            }
+            if (headerLength < BinaryCodec.HEADER_LENGTH)
+                return;
+            int length = ByteBuffer.wrap(frameHeader, 1, 4).getInt();
+            try {
+                BinaryCodec.checkPayloadLength(length);
+            } catch (IOException e) {
+                System.out.println("Bad frame from client, disconnecting: " + e.getMessage());
+                closeNow();
+                return;
+            }
+            framePayload = new byte[length];
+            payloadOffset = 0;
+        }
+
+        int count = Math.min(readBuffer.remaining(), framePayload.length - payloadOffset);
+        readBuffer.get(framePayload, payloadOffset, count);
+        payloadOffset += count;
+        if (payloadOffset < framePayload.length)
+            return;
+
+        Frame frame = new Frame(frameHeader[0], framePayload);
+        framePayload = null;
+        headerLength = 0;
+        dispatch(() -> session.handleFrame(frame));
+    }
+
+    private void scheduleFlush() {
+        if (eventLoop.inEventLoop()) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    private void flush() {
+        if (closed)
+            return;
+        try {
+            while (true) {
+                // Everything queued goes out in one gathering write
+                byte[] next;
+                while (outboundWriter.hasRoom() && (next = outbound.poll()) != null) {
+                    outboundWriter.add(next);
+                }
+                if (!outboundWriter.hasPending())
+                    break;
+                if (!outboundWriter.flush()) {
+                    // Socket buffer is full, wait for the selector to report writability
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (closeRequested)
+                closeNow();
+        } catch (IOException e) {
+            closeNow();
+        }
+    }
+
+    private void handleOverflow() {
+        System.out.println("Client is not reading its messages, disconnecting");
+        outbound.close();
+        if (eventLoop.inEventLoop())
+            closeNow();
+        else
+            eventLoop.execute(this::closeNow);
+    }
+
+    /**
+     * Close once everything already queued has been written.
+     */
+    private void requestClose() {
+        closeRequested = true;
+        flush();
+    }
+
+    void closeNow() {
+        if (closed)
+            return;
+        closed = true;
+        outbound.close();
+        outbound.finish();
+        if (key != null)
+            key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing client channel: " + e.getMessage());
+        }
+        if (session != null)
+            sessionRunner.execute(session::close); // After any input it is still handling
+        admission.sessionEnded();
+    }
+}
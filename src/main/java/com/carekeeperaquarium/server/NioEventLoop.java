@@ -0,0 +1,141 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.business.ThreadPoolManager;
+
+/**
+ * A single selector thread serving many {@link NioConnection}s.
+ * Other threads hand work to the loop through {@link #execute(Runnable)}.
+ */
+class NioEventLoop implements Runnable {
+
+    private final Selector selector;
+    private final ServerConfig config;
+    private final AquariumManager aquariumManager;
+    private final StateObserver stateObserver;
+    private final AdmissionControl admission;
+    private final SessionReaper reaper;
+    private final SessionResumer resumer;
+    private final RateLimiter rateLimiter;
+    private final CommandScheduler scheduler;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile Thread thread;
+    private volatile boolean running = true;
+
+    NioEventLoop(ServerConfig config, AquariumManager aquariumManager, StateObserver stateObserver,
+                 AdmissionControl admission, SessionReaper reaper, SessionResumer resumer,
+                 RateLimiter rateLimiter, CommandScheduler scheduler) throws IOException {
+        this.selector = Selector.open();
+        this.config = config;
+        this.aquariumManager = aquariumManager;
+        this.stateObserver = stateObserver;
+        this.admission = admission;
+        this.reaper = reaper;
+        this.resumer = resumer;
+        this.rateLimiter = rateLimiter;
+        this.scheduler = scheduler;
+    }
+
+    Selector getSelector() {
+        return selector;
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Run a task on the loop thread and wake the selector so it runs promptly.
+     */
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Hand over a freshly accepted channel. Registration happens on the loop thread.
+     * @param acceptedNanos {@link System#nanoTime()} when the channel was accepted
+     */
+    void register(SocketChannel channel, long acceptedNanos) {
+        execute(() -> {
+            NioConnection connection = new NioConnection(
+                this, channel, OutboundQueue.fromConfig(config), admission);
+            ClientSession session = new ClientSession(
+                aquariumManager, stateObserver, connection, ThreadPoolManager.getWorkerExecutor(),
+                resumer, rateLimiter, scheduler);
+            connection.setSession(session);
+            connection.start(acceptedNanos);
+            reaper.register(session);
+        });
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        try {
+            while (running) {
+                selector.select();
+                runTasks();
+                processSelectedKeys();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                System.err.println("Event loop stopped: " + e.getMessage());
+            }
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Event loop task failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            NioConnection connection = (NioConnection) key.attachment();
+            if (key.isValid() && key.isReadable()) {
+                connection.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.onWritable();
+            }
+        }
+    }
+
+    private void closeAll() {
+        try {
+            for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                ((NioConnection) key.attachment()).closeNow();
+            }
+            selector.close();
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("Error closing event loop: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.carekeeperaquarium.server;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.carekeeperaquarium.server.ServerConfig.OverflowPolicy;
+
+/**
+ * Bounded queue of encoded messages waiting to be written to one client, so that
+ * producers (the session, state-change broadcasts) never block on the socket.
+ *
+ * When the client stops reading and the queue fills up, the {@link OverflowPolicy}
+ * decides what happens: with DROP_STALE a new full status replaces any status
+ * updates still queued and other status updates are dropped, with DISCONNECT
+ * the connection is dropped instead. Ordinary replies are never dropped. When
+ * several sessions share the connection, each status update names its stream
+ * (the session ID) and only replaces updates queued for the same stream.
+ *
+ * Once compression is started, messages queued from then on are compressed as
+ * they are taken off the queue, so the deflate stream only ever contains what is
+ * actually written. The queue must then have a single consumer.
+ */
+class OutboundQueue {
+
+    enum Offer {
+        QUEUED,
+        DROPPED,  // Status update discarded; the session must send a full one next
+        OVERFLOW  // Queue full; the connection should be closed
+    }
+
+    private record Entry(byte[] message, boolean status, int stream, boolean compressed) { }
+
+    private final int baseCapacity;
+    private int capacity;
+    private final OverflowPolicy policy;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private long droppedCount;
+    private boolean closed;
+    private FrameCompressor compressor;
+
+    OutboundQueue(int capacity, OverflowPolicy policy) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Outbound queue capacity must be at least 1");
+        this.baseCapacity = capacity;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    static OutboundQueue fromConfig(ServerConfig config) {
+        return new OutboundQueue(config.getOutboundCapacity(), config.getOverflowPolicy());
+    }
+
+    // --- PRODUCERS ---
+    Offer offer(byte[] message) {
+        lock.lock();
+        try {
+            if (closed)
+                return Offer.DROPPED;
+            if (entries.size() >= capacity)
+                return Offer.OVERFLOW;
+            add(new Entry(message, false, 0, compressor != null));
+            return Offer.QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param fullUpdate true if the message replaces the client's whole status,
+     *                   false if it builds on the previous one (a delta)
+     */
+    Offer offerStatus(byte[] message, boolean fullUpdate) {
+        return offerStatus(message, fullUpdate, 0);
+    }
+
+    /**
+     * @param stream the session the update is for, on a connection carrying several
+     */
+    Offer offerStatus(byte[] message, boolean fullUpdate, int stream) {
+        lock.lock();
+        try {
+            if (closed)
+                return Offer.DROPPED;
+            if (fullUpdate && policy == OverflowPolicy.DROP_STALE)
+                removeQueuedStatus(stream);
+            if (entries.size() < capacity) {
+                add(new Entry(message, true, stream, compressor != null));
+                return Offer.QUEUED;
+            }
+            if (policy == OverflowPolicy.DISCONNECT)
+                return Offer.OVERFLOW;
+            droppedCount++;
+            return Offer.DROPPED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compress every message queued after this call; the ones already queued are
+     * sent as they are.
+     */
+    void startCompression() {
+        lock.lock();
+        try {
+            if (compressor == null)
+                compressor = new FrameCompressor();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The connection now carries this many sessions; each gets the configured
+     * capacity, so one status update to all of them still leaves room for replies.
+     */
+    void setStreamCount(int streams) {
+        lock.lock();
+        try {
+            capacity = baseCapacity * Math.max(1, streams);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --- CONSUMERS ---
+    /**
+     * @return the next message, or null if none is queued
+     */
+    byte[] poll() {
+        Entry entry;
+        lock.lock();
+        try {
+            entry = entries.poll();
+        } finally {
+            lock.unlock();
+        }
+        return prepare(entry);
+    }
+
+    /**
+     * Wait for the next message.
+     * @return the message, or null once the queue is closed and drained
+     */
+    byte[] take() throws InterruptedException {
+        Entry entry;
+        lock.lock();
+        try {
+            while (entries.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            entry = entries.poll();
+        } finally {
+            lock.unlock();
+        }
+        return prepare(entry);
+    }
+
+    /**
+     * Refuse further messages; {@link #take()} returns what is left, then null.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by the consumer once it stops writing: releases the compressor
+     * and reports what compression achieved on this connection.
+     */
+    void finish() {
+        FrameCompressor finished;
+        lock.lock();
+        try {
+            finished = compressor;
+        } finally {
+            lock.unlock();
+        }
+        if (finished == null)
+            return;
+        if (finished.getFrameCount() > 0)
+            System.out.println("Client compression: " + finished.describe());
+        finished.end();
+    }
+
+    // --- ACCESSORS ---
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return entries.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how many status updates were dropped or replaced before being written
+     */
+    long getDroppedCount() {
+        lock.lock();
+        try {
+            return droppedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the compressor, or null if compression was not started
+     */
+    FrameCompressor getCompressor() {
+        lock.lock();
+        try {
+            return compressor;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // --- HELPERS ---
+    /**
+     * Runs outside the lock so producers are not held up by compression.
+     * Safe because there is only one consumer.
+     */
+    private byte[] prepare(Entry entry) {
+        if (entry == null)
+            return null;
+        return entry.compressed() ? getCompressor().compress(entry.message()) : entry.message();
+    }
+
+    private void add(Entry entry) {
+        entries.add(entry);
+        notEmpty.signal();
+    }
+
+    private void removeQueuedStatus(int stream) {
+        Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.status() && entry.stream() == stream) {
+                it.remove();
+                droppedCount++;
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.carekeeperaquarium.common.ChannelConnection;
+import com.carekeeperaquarium.common.Connection;
+
+/**
+ * Collects whole messages and writes them to the client in as few calls as it can.
+ * Each message is one complete response, so nothing is written until
+ * {@link #flush()}, and one flush sends everything collected since the last. Over a
+ * socket channel the messages go out together in one gathering write, without being
+ * copied into a buffer first. Over a plain stream they are joined and written once.
+ *
+ * Counts the write calls and flushes of its connection, and adds them to totals for
+ * the whole server. On a socket each write call is one system call.
+ *
+ * Used by one writer at a time: the connection's writer thread or its event loop.
+ */
+class OutboundWriter {
+
+    // Enough to empty a busy queue in one go while staying well under IOV_MAX
+    static final int MAX_GATHER = 64;
+
+    private static final AtomicLong totalWriteCalls = new AtomicLong();
+    private static final AtomicLong totalFlushes = new AtomicLong();
+    private static final AtomicLong totalMessages = new AtomicLong();
+
+    private final GatheringByteChannel channel; // Null when writing to a stream
+    private final OutputStream stream;
+    private final ByteBuffer[] pending = new ByteBuffer[MAX_GATHER];
+    private int first;  // Index of the first message not fully written
+    private int count;  // Messages collected
+    private long writeCalls;
+    private long flushes;
+    private long messages;
+    private long bytes;
+
+    OutboundWriter(GatheringByteChannel channel) {
+        this.channel = channel;
+        this.stream = null;
+    }
+
+    OutboundWriter(OutputStream stream) {
+        this.channel = null;
+        this.stream = stream;
+    }
+
+    /**
+     * @return a writer using gathering writes if the connection is a socket channel
+     */
+    static OutboundWriter forConnection(Connection connection) {
+        if (connection instanceof ChannelConnection channelConnection)
+            return new OutboundWriter(channelConnection.getChannel());
+        return new OutboundWriter(connection.getOutputStream());
+    }
+
+    // --- ACCESSORS ---
+    /**
+     * @return false once {@link #MAX_GATHER} messages wait for the next flush
+     */
+    boolean hasRoom() {
+        return count < MAX_GATHER;
+    }
+
+    /**
+     * @return true if collected messages are not fully written yet
+     */
+    boolean hasPending() {
+        return first < count;
+    }
+
+    long getWriteCalls() {
+        return writeCalls;
+    }
+
+    long getFlushCount() {
+        return flushes;
+    }
+
+    String describe() {
+        return describe(writeCalls, flushes, messages) + ", bytes=" + bytes;
+    }
+
+    /**
+     * @return write calls and flushes of every connection so far
+     */
+    static String describeTotals() {
+        return describe(totalWriteCalls.get(), totalFlushes.get(), totalMessages.get());
+    }
+
+    private static String describe(long writeCalls, long flushes, long messages) {
+        return String.format("messages=%d, flushes=%d, write calls=%d (%.1f messages per call)",
+            messages, flushes, writeCalls, writeCalls == 0 ? 0.0 : (double) messages / writeCalls);
+    }
+
+    // --- MODIFIERS ---
+    /**
+     * Collect a message for the next flush. The caller must check {@link #hasRoom()}.
+     */
+    void add(byte[] message) {
+        if (!hasRoom())
+            throw new IllegalStateException("Flush before adding more than " + MAX_GATHER + " messages");
+        pending[count++] = ByteBuffer.wrap(message);
+    }
+
+    /**
+     * Write what was collected. A blocking transport writes everything; a non-blocking
+     * channel may stop early when the socket buffer is full, and the rest goes on the
+     * next call.
+     * @return true if everything collected has been written
+     */
+    boolean flush() throws IOException {
+        if (!hasPending())
+            return true;
+        flushes++;
+        totalFlushes.incrementAndGet();
+        if (channel != null)
+            writeGathering();
+        else
+            writeJoined();
+        if (hasPending())
+            return false;
+        messages += count;
+        totalMessages.addAndGet(count);
+        for (int i = 0; i < count; i++) {
+            pending[i] = null;
+        }
+        first = 0;
+        count = 0;
+        return true;
+    }
+
+    // --- HELPERS ---
+    private void writeGathering() throws IOException {
+        while (hasPending()) {
+            long written = channel.write(pending, first, count - first);
+            countWrite(written);
+            while (first < count && !pending[first].hasRemaining()) {
+                first++;
+            }
+            if (written == 0)
+                return; // Non-blocking channel with a full socket buffer
+        }
+    }
+
+    private void writeJoined() throws IOException {
+        if (count - first == 1) {
+            ByteBuffer message = pending[first];
+            stream.write(message.array(), message.position(), message.remaining());
+            countWrite(message.remaining());
+        } else {
+            int length = 0;
+            for (int i = first; i < count; i++) {
+                length += pending[i].remaining();
+            }
+            byte[] joined = new byte[length];
+            int offset = 0;
+            for (int i = first; i < count; i++) {
+                int remaining = pending[i].remaining();
+                pending[i].get(joined, offset, remaining);
+                offset += remaining;
+            }
+            stream.write(joined);
+            countWrite(length);
+        }
+        stream.flush();
+        for (int i = first; i < count; i++) {
+            pending[i].position(pending[i].limit());
+        }
+        first = count;
+    }
+
+    private void countWrite(long written) {
+        writeCalls++;
+        totalWriteCalls.incrementAndGet();
+        bytes += written;
+    }
+}
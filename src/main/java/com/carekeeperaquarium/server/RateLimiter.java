@@ -0,0 +1,156 @@
+package com.carekeeperaquarium.server;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.carekeeperaquarium.common.Command;
+
+/**
+ * Token buckets that cap how fast one session may send commands, so a client
+ * looping on {@code feed-fish} can not keep the tank busy and flood every
+ * other session with status updates. Each session gets a bucket for all of its
+ * commands and, where configured, one per command; a command runs only if every
+ * bucket it draws from has a token, and is answered with a throttled reply
+ * otherwise. Quitting is never limited.
+ *
+ * The settings and counters are shared by all sessions; the buckets belong to
+ * one {@link Session} each.
+ */
+class RateLimiter {
+
+    private final double commandsPerSecond;
+    private final double burst;
+    private final Map<Command, Double> perCommand;
+    private final AtomicLong throttledCount = new AtomicLong();
+    private final Map<Command, AtomicLong> throttledByCommand = new EnumMap<>(Command.class);
+
+    /**
+     * @param commandsPerSecond refill rate of each session's bucket; 0 for no session-wide limit
+     * @param burst             commands a session may send at once after a quiet spell
+     * @param perCommand        refill rates for commands limited on their own; their burst is
+     *                          one second's worth
+     */
+    RateLimiter(double commandsPerSecond, double burst, Map<Command, Double> perCommand) {
+        this.commandsPerSecond = commandsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.perCommand = perCommand.isEmpty() ? Map.of() : new EnumMap<>(perCommand);
+        for (Command command : Command.values()) {
+            throttledByCommand.put(command, new AtomicLong());
+        }
+    }
+
+    /**
+     * @return the configured limiter, or null when no limit is set at all
+     */
+    static RateLimiter fromConfig(ServerConfig config) {
+        RateLimiter limiter = new RateLimiter(config.getRateLimit(), config.getRateBurst(),
+            config.getCommandRateLimits());
+        return limiter.commandsPerSecond > 0 || !limiter.perCommand.isEmpty() ? limiter : null;
+    }
+
+    Session newSession() {
+        return new Session(System.nanoTime());
+    }
+
+    // --- ACCESSORS ---
+    long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    long getThrottledCount(Command command) {
+        return throttledByCommand.get(command).get();
+    }
+
+    String describe() {
+        List<String> byCommand = new ArrayList<>();
+        throttledByCommand.forEach((command, count) -> {
+            if (count.get() > 0)
+                byCommand.add(command.getPrimaryAlias() + "=" + count.get());
+        });
+        return "throttled=" + throttledCount.get()
+            + (byCommand.isEmpty() ? "" : " (" + String.join(", ", byCommand) + ")");
+    }
+
+    /**
+     * One session's buckets. Used from the session's reader thread only.
+     */
+    final class Session {
+        private final TokenBucket all;
+        private final Map<Command, TokenBucket> commands = new EnumMap<>(Command.class);
+
+        private Session(long now) {
+            this.all = commandsPerSecond > 0 ? new TokenBucket(commandsPerSecond, burst, now) : null;
+            perCommand.forEach((command, rate) -> commands.put(command, new TokenBucket(rate, Math.max(1, rate), now)));
+        }
+
+        /**
+         * Take one token per command from every bucket involved, or none if any is short.
+         * @param costs how many of each command are about to run
+         * @param now   the current {@link System#nanoTime()}
+         * @return 0 if the commands may run, otherwise the millis until they could
+         */
+        long acquire(Map<Command, Integer> costs, long now) {
+            int total = 0;
+            long waitNanos = 0;
+            for (Map.Entry<Command, Integer> cost : costs.entrySet()) {
+                total += cost.getValue();
+                TokenBucket bucket = commands.get(cost.getKey());
+                if (bucket != null)
+                    waitNanos = Math.max(waitNanos, bucket.nanosUntil(cost.getValue(), now));
+            }
+            if (all != null)
+                waitNanos = Math.max(waitNanos, all.nanosUntil(total, now));
+
+            if (waitNanos > 0) {
+                throttledCount.incrementAndGet();
+                costs.keySet().forEach(command -> throttledByCommand.get(command).incrementAndGet());
+                return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            }
+            for (Map.Entry<Command, Integer> cost : costs.entrySet()) {
+                TokenBucket bucket = commands.get(cost.getKey());
+                if (bucket != null)
+                    bucket.take(cost.getValue());
+            }
+            if (all != null)
+                all.take(total);
+            return 0;
+        }
+    }
+
+    /**
+     * Refills continuously up to its capacity. Taking more than the capacity at once
+     * (a large batch) needs a full bucket and leaves it in debt, so batching does not
+     * raise the average rate.
+     */
+    static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double perSecond, double capacity, long now) {
+            this.capacity = capacity;
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefillNanos = now;
+        }
+
+        /**
+         * @return 0 if the tokens are there now, otherwise how long until they will be
+         */
+        long nanosUntil(int count, long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = now;
+            double needed = Math.min(count, capacity);
+            return tokens >= needed ? 0 : (long) Math.ceil((needed - tokens) / tokensPerNano);
+        }
+
+        void take(int count) {
+            tokens -= count;
+        }
+    }
+}
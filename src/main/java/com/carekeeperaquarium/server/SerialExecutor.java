@@ -0,0 +1,44 @@
+package com.carekeeperaquarium.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks one at a time and in order, on a virtual thread started whenever work
+ * arrives while none is running. A task may block, e.g. waiting for its turn in the
+ * {@link CommandScheduler}; only the later tasks of the same executor wait for it.
+ */
+final class SerialExecutor implements Executor {
+    private final String name;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    SerialExecutor(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (running.compareAndSet(false, true))
+            Thread.ofVirtual().name(name).start(this::drain);
+    }
+
+    // --- HELPERS ---
+    private void drain() {
+        do {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Task on " + name + " failed: " + e.getMessage());
+                }
+            }
+            running.set(false);
+            // A task added after the last poll but before the reset started no thread
+        } while (!tasks.isEmpty() && running.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,111 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binds the listen addresses for the acceptor threads of either transport.
+ *
+ * With more than one acceptor and SO_REUSEPORT available, each acceptor gets its
+ * own channel per address and the kernel spreads connections over them; otherwise
+ * the acceptors share one channel per address. Unix domain sockets never support
+ * SO_REUSEPORT, so they are always shared.
+ */
+final class ServerChannels {
+
+    private ServerChannels() {
+        // Static helpers only
+    }
+
+    /**
+     * @return for each acceptor, the (blocking) channels it should accept on
+     */
+    static List<List<ServerSocketChannel>> open(List<SocketAddress> addresses, int acceptorCount)
+            throws IOException {
+        List<List<ServerSocketChannel>> channelsPerAcceptor = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, acceptorCount); i++) {
+            channelsPerAcceptor.add(new ArrayList<>());
+        }
+        for (SocketAddress address : addresses) {
+            ServerSocketChannel shared = null;
+            for (List<ServerSocketChannel> channels : channelsPerAcceptor) {
+                if (shared == null) {
+                    ServerSocketChannel channel = bind(address, channelsPerAcceptor.size() > 1);
+                    channels.add(channel);
+                    if (!reusesPort(channel))
+                        shared = channel;
+                } else {
+                    channels.add(shared);
+                }
+            }
+        }
+        return channelsPerAcceptor;
+    }
+
+    /**
+     * Close every channel and remove the files of Unix domain sockets.
+     */
+    static void close(List<List<ServerSocketChannel>> channelsPerAcceptor) {
+        for (List<ServerSocketChannel> channels : channelsPerAcceptor) {
+            for (ServerSocketChannel channel : channels) {
+                try {
+                    SocketAddress address = channel.isOpen() ? channel.getLocalAddress() : null;
+                    channel.close();
+                    if (address instanceof UnixDomainSocketAddress unix)
+                        Files.deleteIfExists(unix.getPath());
+                } catch (IOException e) {
+                    System.err.println("Error closing server channel: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // --- HELPERS ---
+    private static ServerSocketChannel bind(SocketAddress address, boolean reusePort) throws IOException {
+        if (address instanceof UnixDomainSocketAddress unix) {
+            removeStaleSocket(unix.getPath());
+            ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.bind(unix);
+            return channel;
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        if (reusePort && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        channel.bind(address);
+        return channel;
+    }
+
+    private static boolean reusesPort(ServerSocketChannel channel) throws IOException {
+        return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)
+            && channel.getOption(StandardSocketOptions.SO_REUSEPORT).booleanValue();
+    }
+
+    /**
+     * A socket file left behind by a server that did not shut down cleanly
+     * would make the bind fail. It is only removed if nothing answers on it, so a
+     * second server can not take the socket of one still running. Regular files
+     * and directories are left alone.
+     */
+    private static void removeStaleSocket(Path path) throws IOException {
+        if (!Files.exists(path) || Files.isRegularFile(path) || Files.isDirectory(path))
+            return;
+        try (SocketChannel probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(UnixDomainSocketAddress.of(path));
+        } catch (ConnectException e) {
+            Files.delete(path);
+            return;
+        }
+        throw new BindException("Address already in use: " + path);
+    }
+}
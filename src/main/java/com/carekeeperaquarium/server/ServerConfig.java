@@ -0,0 +1,299 @@
+package com.carekeeperaquarium.server;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import com.carekeeperaquarium.business.ThreadPoolManager.ClientExecutorMode;
+import com.carekeeperaquarium.common.Addresses;
+import com.carekeeperaquarium.common.Command;
+
+/**
+ * Startup configuration for the aquarium server.
+ * Values are read from "aquarium.*" system properties so they can be passed
+ * on the command line, e.g. {@code java -Daquarium.transport=nio -jar ...}.
+ */
+public class ServerConfig {
+
+    public enum TransportMode {
+        BLOCKING, // One thread per connection (original behaviour)
+        NIO       // Selector based event loops
+    }
+
+    public enum OverflowPolicy {
+        DROP_STALE, // Drop or replace queued status updates, keep the client
+        DISCONNECT  // Close the connection
+    }
+
+    public enum SchedulingMode {
+        FAIR, // Sessions take turns at the manager, see CommandScheduler
+        OFF   // Commands race for the tank locks
+    }
+
+    private static final String PREFIX = "aquarium.";
+
+    private final Properties properties;
+
+    public ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static ServerConfig fromSystemProperties() {
+        return new ServerConfig(System.getProperties());
+    }
+
+    // --- ACCESSORS ---
+    public TransportMode getTransportMode() {
+        return getEnum("transport", TransportMode.class, TransportMode.BLOCKING);
+    }
+
+    public int getPort() {
+        return getInt("port", AquariumServer.SERVER_PORT);
+    }
+
+    /**
+     * @return the addresses to listen on, from a list such as
+     *         {@code ":8080,127.0.0.1:9090,unix:/tmp/aquarium.sock"};
+     *         defaults to every interface on {@link #getPort()}
+     */
+    public List<SocketAddress> getListenAddresses() {
+        List<SocketAddress> addresses = new ArrayList<>();
+        String value = get("listen");
+        if (value == null) {
+            addresses.add(new InetSocketAddress(getPort()));
+            return addresses;
+        }
+        for (String entry : value.split(",")) {
+            if (entry.isBlank())
+                continue;
+            try {
+                addresses.add(Addresses.parse(entry.trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid address in " + PREFIX + "listen: " + entry.trim());
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * @return the listen addresses as "host:port" or "unix:path", with "*" for all interfaces
+     */
+    public String describeListenAddresses() {
+        List<String> names = new ArrayList<>();
+        for (SocketAddress address : getListenAddresses()) {
+            names.add(Addresses.format(address));
+        }
+        return String.join(", ", names);
+    }
+
+    /**
+     * @return how many threads accept connections on each listen address
+     */
+    public int getAcceptorThreads() {
+        return getInt("acceptors", 1);
+    }
+
+    public int getEventLoopThreads() {
+        return getInt("nio.threads", Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public ClientExecutorMode getClientExecutorMode() {
+        return getEnum("client-executor", ClientExecutorMode.class, ClientExecutorMode.FIXED);
+    }
+
+    public Duration getPinningThreshold() {
+        return Duration.ofMillis(getInt("pinning.threshold-ms", 20));
+    }
+
+    /**
+     * @return how many messages may wait to be written to one client
+     */
+    public int getOutboundCapacity() {
+        return getInt("outbound.capacity", 256);
+    }
+
+    /**
+     * @return what to do when a client does not read fast enough to keep its queue below capacity
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return getEnum("outbound.policy", OverflowPolicy.class, OverflowPolicy.DROP_STALE);
+    }
+
+    /**
+     * @return how many connections may be admitted at once, served or waiting
+     */
+    public int getMaxSessions() {
+        return getInt("admission.max-sessions", 1000);
+    }
+
+    /**
+     * @return how many admitted connections may wait for a free client thread
+     */
+    public int getMaxPendingConnections() {
+        return getInt("admission.max-pending", 32);
+    }
+
+    /**
+     * @return how long rejected clients are told to wait before reconnecting
+     */
+    public Duration getBusyRetryAfter() {
+        return Duration.ofSeconds(getInt("admission.retry-after-seconds", 5));
+    }
+
+    /**
+     * @return how long a client using heartbeats may stay quiet before it is pinged
+     */
+    public Duration getHeartbeatInterval() {
+        return Duration.ofSeconds(getInt("heartbeat.interval-seconds", 30));
+    }
+
+    /**
+     * @return how long a client using heartbeats may send nothing at all before it is dropped
+     */
+    public Duration getReadTimeout() {
+        return Duration.ofSeconds(getInt("read-timeout-seconds", 90));
+    }
+
+    /**
+     * @return how long any client may go without sending a command before it is dropped
+     */
+    public Duration getIdleTimeout() {
+        return Duration.ofSeconds(getInt("idle-timeout-seconds", 1800));
+    }
+
+    /**
+     * @return how long a "resume" client's user stays in the tank after its connection
+     *         drops; zero removes it right away and turns the feature off
+     */
+    public Duration getResumeGracePeriod() {
+        return Duration.ofSeconds(getInt("resume.grace-seconds", 60));
+    }
+
+    /**
+     * @return commands per second each session may keep up, or 0 for no session-wide limit
+     */
+    public int getRateLimit() {
+        return getInt("rate.per-second", 20);
+    }
+
+    /**
+     * @return commands a session may send at once after a quiet spell
+     */
+    public int getRateBurst() {
+        return getInt("rate.burst", 40);
+    }
+
+    /**
+     * @return per-second limits for single commands, from e.g. "aquarium.rate.feed-fish.per-second"
+     */
+    public Map<Command, Double> getCommandRateLimits() {
+        Map<Command, Double> limits = new EnumMap<>(Command.class);
+        for (Command command : Command.values()) {
+            if (command == Command.UNKNOWN || command == Command.QUIT)
+                continue;
+            int limit = getInt("rate." + command.getPrimaryAlias() + ".per-second", 0);
+            if (limit > 0)
+                limits.put(command, (double) limit);
+        }
+        return limits;
+    }
+
+    public SchedulingMode getSchedulingMode() {
+        return getEnum("scheduling", SchedulingMode.class, SchedulingMode.FAIR);
+    }
+
+    /**
+     * @return commands the fair scheduler lets run at once
+     */
+    public int getSchedulingParallelism() {
+        return getInt("scheduling.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return the port of the read-only HTTP status endpoint, or 0 for none
+     */
+    public int getHttpPort() {
+        return getInt("http.port", 0);
+    }
+
+    /**
+     * @return how many in-process sessions {@link LoopbackBenchmark} runs at once
+     */
+    public int getBenchmarkSessions() {
+        return getInt("bench.sessions", 1000);
+    }
+
+    /**
+     * @return how many commands each benchmark session sends, one at a time
+     */
+    public int getBenchmarkRequests() {
+        return getInt("bench.requests", 100);
+    }
+
+    /**
+     * @return how many connections benchmark sessions share through "mux",
+     *         or 0 for a connection of their own each
+     */
+    public int getBenchmarkConnections() {
+        return getInt("bench.connections", 0);
+    }
+
+    /**
+     * @return percent of benchmark requests sent as feed-fish instead of the benchmark command
+     */
+    public int getBenchmarkWritePercent() {
+        int percent = getInt("bench.write-percent", 0);
+        if (percent < 0 || percent > 100)
+            throw new IllegalArgumentException("Invalid value for " + PREFIX + "bench.write-percent: " + percent);
+        return percent;
+    }
+
+    /**
+     * @return the command benchmark sessions send; one without a prompt or outside call
+     */
+    public Command getBenchmarkCommand() {
+        String value = get("bench.command");
+        if (value == null)
+            return Command.VIEW_TANK;
+        Command command = Command.fromString(value);
+        return switch (command) {
+            case UNKNOWN, QUIT, BATCH, REMOVE_FISH, GET_FISH_FACT ->
+                throw new IllegalArgumentException("Invalid value for " + PREFIX + "bench.command: " + value);
+            default -> command;
+        };
+    }
+
+    // --- HELPERS ---
+    private String get(String key) {
+        String value = properties.getProperty(PREFIX + key);
+        return (value == null || value.isBlank()) ? null : value.trim();
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = get(key);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + PREFIX + key + ": " + value);
+        }
+    }
+
+    private <E extends Enum<E>> E getEnum(String key, Class<E> type, E defaultValue) {
+        String value = get(key);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + PREFIX + key + ": " + value);
+        }
+    }
+}
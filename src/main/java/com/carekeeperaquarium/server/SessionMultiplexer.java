@@ -0,0 +1,160 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.Frame;
+
+/**
+ * The logical sessions carried by one connection once its client negotiated "mux",
+ * so that a bot fleet needs a handful of connections instead of one per login.
+ *
+ * The first {@link BinaryCodec#OP_SESSION} frame with a new ID (from 1) opens a
+ * {@link ClientSession} for it, framed like the connection (binary, with its delta
+ * and pipeline settings), and everything that session sends goes back wrapped in
+ * {@code OP_SESSION} with the same ID. A session ends when it quits, when the client
+ * sends {@link BinaryCodec#OP_SESSION_END}, or when the connection closes; the
+ * server confirms with {@code OP_SESSION_END} in the first two cases.
+ *
+ * Heartbeats, compression and the idle timeout stay with the connection.
+ */
+class SessionMultiplexer {
+
+    static final int MAX_SESSIONS = 1024;
+
+    private final AquariumManager aquariumManager;
+    private final StateObserver stateObserver;
+    private final SessionOutput connection;
+    private final Executor slowTaskExecutor;
+    private final RateLimiter rateLimiter;
+    private final CommandScheduler scheduler;
+    private final boolean deltaUpdates;
+    private final boolean requestIds;
+    // Opened and fed by the reader; ended from there or from the connection closing
+    private final Map<Integer, ClientSession> sessions = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    SessionMultiplexer(AquariumManager aquariumManager, StateObserver stateObserver, SessionOutput connection,
+                       Executor slowTaskExecutor, RateLimiter rateLimiter, CommandScheduler scheduler,
+                       boolean deltaUpdates, boolean requestIds) {
+        this.aquariumManager = aquariumManager;
+        this.stateObserver = stateObserver;
+        this.connection = connection;
+        this.slowTaskExecutor = slowTaskExecutor;
+        this.rateLimiter = rateLimiter;
+        this.scheduler = scheduler;
+        this.deltaUpdates = deltaUpdates;
+        this.requestIds = requestIds;
+    }
+
+    /**
+     * Route an {@code OP_SESSION} or {@code OP_SESSION_END} frame to its session.
+     */
+    void handleFrame(Frame frame) {
+        try {
+            if (frame.opcode() == BinaryCodec.OP_SESSION_END) {
+                endSession(BinaryCodec.decodeSessionEnd(frame.payload()));
+                return;
+            }
+            BinaryCodec.Tagged tagged = BinaryCodec.untag(frame.payload());
+            ClientSession session = sessions.get(tagged.requestId());
+            if (session == null) {
+                session = openSession(tagged.requestId());
+                if (session == null)
+                    return;
+            }
+            if (!session.handleFrame(tagged.frame()))
+                endSession(tagged.requestId());
+        } catch (IOException e) {
+            connection.write(BinaryMessageEncoder.INSTANCE.text("Malformed session frame."));
+        }
+    }
+
+    /**
+     * End every session, removing their users; the connection is closing.
+     */
+    void close() {
+        closed = true;
+        for (ClientSession session : sessions.values()) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    int getSessionCount() {
+        return sessions.size();
+    }
+
+    // --- HELPERS ---
+    private ClientSession openSession(int sessionId) {
+        if (closed)
+            return null;
+        if (sessionId < 1) {
+            // Stream 0 is the connection's own session
+            connection.write(BinaryMessageEncoder.INSTANCE.text("Session IDs start at 1."));
+            return null;
+        }
+        if (sessions.size() >= MAX_SESSIONS) {
+            connection.write(BinaryMessageEncoder.INSTANCE.text(
+                "Too many sessions on this connection (max " + MAX_SESSIONS + ")."));
+            connection.write(BinaryCodec.sessionEnd(sessionId));
+            return null;
+        }
+        // Each session has its own limits and turns, so a fleet's bots do not throttle each other
+        ClientSession session = new ClientSession(aquariumManager, stateObserver, new Output(sessionId),
+            slowTaskExecutor, null, rateLimiter, scheduler);
+        sessions.put(sessionId, session);
+        connection.setStreamCount(sessions.size() + 1);
+        session.startMultiplexed(deltaUpdates, requestIds);
+        return session;
+    }
+
+    private void endSession(int sessionId) {
+        ClientSession session = sessions.remove(sessionId);
+        if (session == null)
+            return;
+        // Goodbye first, then the end marker
+        session.close();
+        connection.write(BinaryCodec.sessionEnd(sessionId));
+        connection.setStreamCount(sessions.size() + 1);
+    }
+
+    /**
+     * What one session writes, wrapped with its ID onto the shared connection.
+     */
+    private final class Output implements SessionOutput {
+        private final int sessionId;
+
+        Output(int sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public void write(byte[] message) {
+            connection.write(BinaryCodec.tag(BinaryCodec.OP_SESSION, sessionId, message));
+        }
+
+        @Override
+        public boolean writeStatus(byte[] message, boolean fullUpdate) {
+            return connection.writeStatus(
+                BinaryCodec.tag(BinaryCodec.OP_SESSION, sessionId, message), fullUpdate, sessionId);
+        }
+
+        @Override
+        public void startCompression() {
+            // Compression belongs to the connection
+        }
+
+        /**
+         * Ends only this session; the connection stays open.
+         */
+        @Override
+        public void close() {
+            endSession(sessionId);
+        }
+    }
+}
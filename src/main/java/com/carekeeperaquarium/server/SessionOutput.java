@@ -0,0 +1,49 @@
+package com.carekeeperaquarium.server;
+
+/**
+ * Destination for the encoded messages a {@link ClientSession} sends to its client.
+ * Implemented by each transport (blocking socket, NIO channel).
+ */
+public interface SessionOutput {
+
+    /**
+     * Send one complete, already encoded message.
+     * The bytes of a single call are never interleaved with another message.
+     */
+    void write(byte[] message);
+
+    /**
+     * Send a status update. Unlike {@link #write(byte[])} it may be dropped when the
+     * client is not keeping up.
+     * @param fullUpdate true for a complete status, false for a delta on the previous one
+     * @return false if it was dropped, so the next update must be a complete one
+     */
+    boolean writeStatus(byte[] message, boolean fullUpdate);
+
+    /**
+     * Send a status update for one of several sessions sharing the connection;
+     * a dropped update only ever makes way for a newer one of the same stream.
+     * @param stream the ID of the session the update is for
+     */
+    default boolean writeStatus(byte[] message, boolean fullUpdate, int stream) {
+        return writeStatus(message, fullUpdate);
+    }
+
+    /**
+     * The connection now carries this many sessions (its own plus multiplexed
+     * ones), so it can make room for as many status updates at a time.
+     */
+    default void setStreamCount(int streams) {
+    }
+
+    /**
+     * Compress everything written after this call with the connection's
+     * deflate stream. Messages written before it are sent unchanged.
+     */
+    void startCompression();
+
+    /**
+     * Close the underlying connection.
+     */
+    void close();
+}
@@ -0,0 +1,114 @@
+package com.carekeeperaquarium.server;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds sessions whose client has gone away without closing the connection,
+ * so they stop holding a client thread and their fish stop costing time in
+ * every tick.
+ *
+ * Sessions that negotiated heartbeats are pinged once they have been quiet for
+ * the heartbeat interval and expire when nothing at all arrives within the read
+ * timeout. Any session but a spectator expires when its client sends no command
+ * within the idle timeout. A zero duration turns the check off.
+ */
+class SessionReaper {
+
+    private static final long SWEEP_PERIOD_MILLIS = 1000;
+
+    private final long heartbeatIntervalNanos;
+    private final long readTimeoutNanos;
+    private final long idleTimeoutNanos;
+    private final Set<ClientSession> sessions = ConcurrentHashMap.newKeySet();
+    private final AtomicLong reapedCount = new AtomicLong();
+    private ScheduledFuture<?> sweeper;
+
+    SessionReaper(Duration heartbeatInterval, Duration readTimeout, Duration idleTimeout) {
+        this.heartbeatIntervalNanos = heartbeatInterval.toNanos();
+        this.readTimeoutNanos = readTimeout.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    static SessionReaper fromConfig(ServerConfig config) {
+        return new SessionReaper(config.getHeartbeatInterval(), config.getReadTimeout(),
+            config.getIdleTimeout());
+    }
+
+    // --- LIFECYCLE ---
+    synchronized void start(ScheduledExecutorService scheduler) {
+        if (sweeper == null)
+            sweeper = scheduler.scheduleWithFixedDelay(() -> sweep(System.nanoTime()),
+                SWEEP_PERIOD_MILLIS, SWEEP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (sweeper != null)
+            sweeper.cancel(false);
+        sweeper = null;
+    }
+
+    // --- MODIFIERS ---
+    void register(ClientSession session) {
+        sessions.add(session);
+    }
+
+    void unregister(ClientSession session) {
+        sessions.remove(session);
+    }
+
+    /**
+     * Ping quiet sessions and expire dead ones.
+     * @param now the current {@link System#nanoTime()}
+     */
+    void sweep(long now) {
+        for (ClientSession session : sessions) {
+            if (session.isClosed()) {
+                sessions.remove(session);
+                continue;
+            }
+            String reason = checkSession(session, now);
+            if (reason != null) {
+                sessions.remove(session);
+                reapedCount.incrementAndGet();
+                String who = session.getUsername() == null ? "client" : session.getUsername();
+                System.out.println("Dropping " + who + ": " + reason);
+                session.expire("Disconnected: " + reason);
+            }
+        }
+    }
+
+    // --- ACCESSORS ---
+    long getReapedCount() {
+        return reapedCount.get();
+    }
+
+    int getSessionCount() {
+        return sessions.size();
+    }
+
+    // --- HELPERS ---
+    /**
+     * @return why the session should be dropped, or null to keep it
+     */
+    private String checkSession(ClientSession session, long now) {
+        // Spectators only watch, so never sending a command is expected of them
+        if (idleTimeoutNanos > 0 && !session.isSpectating()
+                && now - session.getLastActivityNanos() >= idleTimeoutNanos)
+            return "idle for too long";
+        if (!session.usesHeartbeats())
+            return null;
+        long quiet = now - session.getLastReceivedNanos();
+        if (readTimeoutNanos > 0 && quiet >= readTimeoutNanos)
+            return "no heartbeat";
+        if (heartbeatIntervalNanos > 0 && quiet >= heartbeatIntervalNanos
+                && now - session.getLastPingNanos() >= heartbeatIntervalNanos)
+            session.sendPing(now);
+        return null;
+    }
+}
@@ -0,0 +1,190 @@
+package com.carekeeperaquarium.server;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.carekeeperaquarium.business.AquariumManager;
+
+/**
+ * Keeps the users of sessions that negotiated "resume" in the tank for a grace
+ * period after their connection drops, so a client on a flaky network can come
+ * back with its token and carry on with its fish instead of starting over.
+ *
+ * Each token belongs to one user and is owned by at most one live session. When
+ * that session's connection ends the user is detached; a resume within the grace
+ * period hands the user to the new session, and otherwise the sweep removes it.
+ * A resume while the old connection still looks alive takes the user over and
+ * drops the old session, since the server is often the last to notice a dead link.
+ */
+class SessionResumer {
+
+    private static final long SWEEP_PERIOD_MILLIS = 1000;
+    private static final int TOKEN_BYTES = 18;
+
+    private final AquariumManager aquariumManager;
+    private final long graceNanos;
+    private final SecureRandom random = new SecureRandom();
+    // Guarded by this
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final AtomicLong resumedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private ScheduledFuture<?> sweeper;
+
+    private static final class Entry {
+        final String username;
+        ClientSession owner;   // Null while detached
+        long detachedNanos;
+
+        Entry(String username, ClientSession owner) {
+            this.username = username;
+            this.owner = owner;
+        }
+    }
+
+    SessionResumer(AquariumManager aquariumManager, Duration gracePeriod) {
+        this.aquariumManager = aquariumManager;
+        this.graceNanos = gracePeriod.toNanos();
+    }
+
+    static SessionResumer fromConfig(ServerConfig config, AquariumManager aquariumManager) {
+        return new SessionResumer(aquariumManager, config.getResumeGracePeriod());
+    }
+
+    // --- LIFECYCLE ---
+    synchronized void start(ScheduledExecutorService scheduler) {
+        if (sweeper == null && isEnabled())
+            sweeper = scheduler.scheduleWithFixedDelay(() -> sweep(System.nanoTime()),
+                SWEEP_PERIOD_MILLIS, SWEEP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void stop() {
+        if (sweeper != null)
+            sweeper.cancel(false);
+        sweeper = null;
+    }
+
+    // --- ACCESSORS ---
+    /**
+     * @return false when the grace period is zero and "resume" is not offered
+     */
+    boolean isEnabled() {
+        return graceNanos > 0;
+    }
+
+    synchronized int getDetachedCount() {
+        int detached = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.owner == null)
+                detached++;
+        }
+        return detached;
+    }
+
+    long getResumedCount() {
+        return resumedCount.get();
+    }
+
+    long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    // --- MODIFIERS ---
+    /**
+     * @return a new token for the user, owned by the session that just logged in
+     */
+    synchronized String issue(ClientSession session, String username) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        String token;
+        do {
+            random.nextBytes(bytes);
+            token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        } while (entries.containsKey(token));
+        entries.put(token, new Entry(username, session));
+        return token;
+    }
+
+    /**
+     * Keep the user for the grace period; its session's connection has ended.
+     * @return false if another session already took the user over
+     */
+    synchronized boolean detach(String token, ClientSession session, long now) {
+        Entry entry = entries.get(token);
+        if (entry == null || entry.owner != session)
+            return false;
+        entry.owner = null;
+        entry.detachedNanos = now;
+        return true;
+    }
+
+    /**
+     * Forget the token; the user quit and is removed by its session.
+     * @return false if another session already took the user over
+     */
+    synchronized boolean release(String token, ClientSession session) {
+        Entry entry = entries.get(token);
+        if (entry == null || entry.owner != session)
+            return false;
+        entries.remove(token);
+        return true;
+    }
+
+    /**
+     * Hand the token's user to a new session, dropping the old one if still attached.
+     * @return the username, or null if the token is unknown or has expired
+     */
+    String resume(String token, ClientSession session) {
+        ClientSession previous;
+        String username;
+        synchronized (this) {
+            Entry entry = entries.get(token);
+            if (entry == null)
+                return null;
+            previous = entry.owner;
+            entry.owner = session;
+            username = entry.username;
+        }
+        resumedCount.incrementAndGet();
+        if (previous != null)
+            previous.handOff();
+        return username;
+    }
+
+    /**
+     * Remove the users whose grace period has run out.
+     * @param now the current {@link System#nanoTime()}
+     */
+    void sweep(long now) {
+        List<String> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.owner == null && now - entry.detachedNanos >= graceNanos) {
+                    it.remove();
+                    expired.add(entry.username);
+                }
+            }
+        }
+        // Outside the monitor: removing a user waits for the manager's lock
+        for (String username : expired) {
+            expiredCount.incrementAndGet();
+            try {
+                aquariumManager.removeUser(aquariumManager.getUser(username));
+                System.out.println("User " + username + " did not come back and was removed");
+            } catch (NoSuchElementException e) {
+                System.out.println("User " + username + " not found: " + e.getMessage());
+            }
+        }
+    }
+}
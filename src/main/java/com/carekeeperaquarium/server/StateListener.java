@@ -0,0 +1,15 @@
+package com.carekeeperaquarium.server;
+
+/**
+ * Subscriber to the tank's state changes on a {@link StateObserver}.
+ */
+@FunctionalInterface
+public interface StateListener {
+
+    /**
+     * Called on the observer's dispatch thread, one update at a time and in version
+     * order. Updates that arrive while an earlier one is still being handed out may be
+     * skipped in favour of the newest.
+     */
+    void tankUpdated(StatusBroadcast broadcast);
+}
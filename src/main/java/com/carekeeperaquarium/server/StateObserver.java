@@ -1,41 +1,107 @@
 package com.carekeeperaquarium.server;
 
-import java.beans.PropertyChangeEvent;
-import java.beans.PropertyChangeListener;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import com.carekeeperaquarium.common.TankUpdate;
+
+/**
+ * Event bus for the tank's state changes. {@link #publish(TankUpdate)} only records
+ * the update and hands it to the dispatch executor, so the command that changed the
+ * tank does not wait while every session encodes and queues its status. Listeners are
+ * called from that executor instead.
+ *
+ * The default executor is one daemon thread, so updates go out one at a time and in
+ * order. If updates are published faster than they go out, only the newest waiting
+ * one is delivered: every listener wants the latest state, and sessions skip versions
+ * older than the last one they sent anyway.
+ */
 public class StateObserver {
-    private final List<PropertyChangeListener> listeners;
-    private String aquariumSummary;
+    private final List<StateListener> listeners;
+    private final Executor dispatcher;
+    private volatile StatusBroadcast latestBroadcast;
+    // Published but not handed out yet; newer updates replace it
+    private final AtomicReference<StatusBroadcast> pending = new AtomicReference<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong listenerFailures = new AtomicLong();
+    private final LatencyStats fanOut = new LatencyStats();
 
     public StateObserver() {
-        listeners = new ArrayList<>();
-        aquariumSummary = "Nothing yet...";
+        this(Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "aquarium-events");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * @param dispatcher runs the deliveries; it must run them one at a time, and
+     *                   {@code Runnable::run} delivers on the publishing thread
+     */
+    public StateObserver(Executor dispatcher) {
+        // Sessions come and go on their own threads while updates are being sent
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.dispatcher = dispatcher;
     }
 
-    public void addPropertyChangeListener(PropertyChangeListener listener) {
+    public void addListener(StateListener listener) {
         listeners.add(listener);
     }
 
-    public void removePropertyChangeListener(PropertyChangeListener listener) {
+    public void removeListener(StateListener listener) {
         listeners.remove(listener);
     }
 
-    public String getAquariumSummary() {
-        return aquariumSummary;
+    /**
+     * @return the most recent update, or null if nothing has changed yet
+     */
+    StatusBroadcast getLatestBroadcast() {
+        return latestBroadcast;
+    }
+
+    /**
+     * @return updates published, delivered and skipped, and how long handing one out takes
+     */
+    String describe() {
+        return "published=" + published.get() + ", delivered=" + delivered.get() + ", skipped=" + skipped.get()
+            + ", listener failures=" + listenerFailures.get() + ", fan-out " + fanOut.describe();
     }
 
-    public void setAquariumSummary(String newSummary) {
-        String oldSummary = this.aquariumSummary;
-        this.aquariumSummary = newSummary;
-        firePropertyChangeEvent("tankUpdate", oldSummary, newSummary);
+    /**
+     * Share a state change with every listener, from the dispatch executor.
+     * Called by one thread at a time, in version order.
+     */
+    public void publish(TankUpdate update) {
+        StatusBroadcast broadcast = new StatusBroadcast(update);
+        this.latestBroadcast = broadcast;
+        published.incrementAndGet();
+        if (pending.getAndSet(broadcast) != null)
+            skipped.incrementAndGet();
+        dispatcher.execute(this::deliverPending);
     }
 
-    private void firePropertyChangeEvent(String propertyName, String oldSummary, String newSummary) {
-        PropertyChangeEvent event = new PropertyChangeEvent(this, propertyName, oldSummary, newSummary);
-        for (PropertyChangeListener listener : listeners) {
-            listener.propertyChange(event);
+    // --- HELPERS ---
+    private void deliverPending() {
+        StatusBroadcast broadcast = pending.getAndSet(null);
+        if (broadcast == null)
+            return; // An earlier run delivered it along with its own
+        long started = System.nanoTime();
+        for (StateListener listener : listeners) {
+            try {
+                listener.tankUpdated(broadcast);
+            } catch (RuntimeException e) {
+                // One broken session must not keep the update from the others
+                listenerFailures.incrementAndGet();
+                System.err.println("State listener failed: " + e);
+            }
         }
+        delivered.incrementAndGet();
+        fanOut.record(System.nanoTime() - started);
     }
 }
@@ -0,0 +1,59 @@
+package com.carekeeperaquarium.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.common.TankUpdate;
+
+/**
+ * One published {@link TankUpdate} as it goes out to every session. The tank-wide
+ * section of the status message is encoded at most once per wire format and reused
+ * by every connection, so each session only encodes its own fish. Spectators get
+ * one whole message per wire format, shared by all of them.
+ */
+public class StatusBroadcast {
+    private final TankUpdate update;
+    private final Map<MessageEncoder, byte[]> sharedSections = new ConcurrentHashMap<>(2);
+    private final Map<MessageEncoder, byte[]> spectatorStatuses = new ConcurrentHashMap<>(2);
+
+    StatusBroadcast(TankUpdate update) {
+        this.update = update;
+    }
+
+    // --- ACCESSORS ---
+    public TankUpdate getUpdate() {
+        return update;
+    }
+
+    public long getVersion() {
+        return update.version();
+    }
+
+    byte[] sharedSection(MessageEncoder encoder) {
+        return sharedSections.computeIfAbsent(encoder, e -> e.statusShared(update));
+    }
+
+    /**
+     * @return the tank summary message every spectator gets for this update
+     */
+    byte[] spectatorStatus(MessageEncoder encoder) {
+        return spectatorStatuses.computeIfAbsent(encoder, e -> e.spectatorStatus(update.summary()));
+    }
+
+    /**
+     * @return the full status message for a user with the given fish
+     */
+    byte[] status(MessageEncoder encoder, List<FishRecord> fish) {
+        return encoder.status(sharedSection(encoder), fish);
+    }
+
+    /**
+     * @return the full status a "delta" client builds on, for a user with the given status
+     */
+    byte[] statusBase(MessageEncoder encoder, StatusSnapshot status) {
+        return encoder.statusBase(sharedSection(encoder), status);
+    }
+}
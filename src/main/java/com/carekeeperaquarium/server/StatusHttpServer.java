@@ -0,0 +1,188 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.TankSummary;
+import com.carekeeperaquarium.common.TankUpdate;
+import com.carekeeperaquarium.common.UserSummary;
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Read-only JSON view of the tank for dashboards, so they need neither the line
+ * protocol nor a login:
+ * <ul>
+ *   <li>{@code GET /tank} - cleanliness and every user with points and fish owned</li>
+ *   <li>{@code GET /users} - just the user list</li>
+ *   <li>{@code GET /users/<name>/fish} - one user's fish</li>
+ * </ul>
+ * Everything is built from the latest {@link TankUpdate} the {@link StateObserver}
+ * published, never from the manager, so polling takes no lock. Bodies are encoded at
+ * most once per state version and carry the version as their ETag; a request whose
+ * {@code If-None-Match} still matches gets 304 with no body.
+ */
+public class StatusHttpServer {
+
+    private static final String JSON = "application/json; charset=utf-8";
+
+    private final StateObserver stateObserver;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Gson gson = new Gson();
+    // Bodies for the version in it; replaced as a whole when a newer version is asked for
+    private volatile VersionCache cache;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong notModifiedCount = new AtomicLong();
+    private final AtomicLong encodedCount = new AtomicLong();
+
+    private record VersionCache(TankUpdate update, Map<String, byte[]> bodies) {
+        long version() {
+            return update.version();
+        }
+    }
+
+    private record TankJson(long version, double cleanliness, double maxCleanliness, int usersOnline,
+                            List<UserSummary> users) {
+    }
+
+    private record UsersJson(long version, List<UserSummary> users) {
+    }
+
+    private record FishJson(long version, String username, List<FishRecord> fish) {
+    }
+
+    public StatusHttpServer(int port, StateObserver stateObserver) throws IOException {
+        this.stateObserver = stateObserver;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Tank status available over HTTP on port " + getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        System.out.println("HTTP: " + describe());
+    }
+
+    // --- ACCESSORS ---
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String describe() {
+        return "requests=" + requestCount.get() + ", not modified=" + notModifiedCount.get()
+            + ", bodies encoded=" + encodedCount.get();
+    }
+
+    // --- HELPERS ---
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StatusBroadcast broadcast = stateObserver.getLatestBroadcast();
+            if (broadcast == null) {
+                // Nothing published yet; the first tick is moments away
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            VersionCache current = cacheFor(broadcast.getUpdate());
+            String path = exchange.getRequestURI().getPath();
+            String etag = "\"" + current.version() + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+            byte[] body = current.bodies().get(path);
+            if (body == null) {
+                Object json = toJson(current.update(), path);
+                if (json == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                body = gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+                encodedCount.incrementAndGet();
+                current.bodies().put(path, body);
+            }
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                notModifiedCount.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", JSON);
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * @return the cache for the update, starting a new one if the update is newer
+     */
+    private VersionCache cacheFor(TankUpdate update) {
+        VersionCache current = cache;
+        if (current == null || current.version() < update.version()) {
+            // Two requests may race to replace it; either result is correct
+            current = new VersionCache(update, new ConcurrentHashMap<>());
+            cache = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return what to serve at the path, or null if there is nothing there
+     */
+    private static Object toJson(TankUpdate update, String path) {
+        if (path.equals("/tank")) {
+            TankSummary summary = update.summary();
+            return new TankJson(update.version(), update.cleanliness(), update.maxCleanliness(),
+                update.usersOnline(), summary.users());
+        }
+        if (path.equals("/users"))
+            return new UsersJson(update.version(), update.summary().users());
+        if (path.startsWith("/users/") && path.endsWith("/fish")) {
+            String username = path.substring("/users/".length(), path.length() - "/fish".length());
+            List<FishRecord> fish = update.fishFor(username);
+            return fish == null ? null : new FishJson(update.version(), username, fish);
+        }
+        return null;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null)
+            return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/"))
+                value = value.substring(2);
+            if (value.equals(etag) || value.equals("*"))
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,138 @@
+package com.carekeeperaquarium.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.common.StatusDelta;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.common.TankSummary;
+import com.carekeeperaquarium.common.TankUpdate;
+import com.carekeeperaquarium.common.UserView;
+
+/**
+ * The original line protocol: plain text with marker lines around structured data.
+ */
+class TextMessageEncoder implements MessageEncoder {
+    static final TextMessageEncoder INSTANCE = new TextMessageEncoder();
+
+    private TextMessageEncoder() {
+    }
+
+    static byte[] lines(String... lines) {
+        StringBuilder message = new StringBuilder();
+        for (String line : lines) {
+            message.append(line).append('\n');
+        }
+        return message.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] block(String start, List<String> body, String end) {
+        List<String> lines = new ArrayList<>(body.size() + 2);
+        lines.add(start);
+        lines.addAll(body);
+        lines.add(end);
+        return lines(lines.toArray(String[]::new));
+    }
+
+    @Override
+    public byte[] text(String message) {
+        return lines(message);
+    }
+
+    @Override
+    public byte[] loginSuccess(String message) {
+        return lines(Protocol.LOGIN_SUCCESSFUL, message);
+    }
+
+    @Override
+    public byte[] loginFail(String reason) {
+        return lines(Protocol.LOGIN_FAIL, reason);
+    }
+
+    @Override
+    public byte[] statusShared(TankUpdate update) {
+        String tankLines = StatusSnapshot.formatTankLines(
+            update.cleanliness(), update.maxCleanliness(), update.usersOnline());
+        return (Protocol.STATUS_UPDATE_START + "\n" + tankLines).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] status(byte[] sharedSection, List<FishRecord> fish) {
+        byte[] fishLines = lines(StatusSnapshot.formatFish(fish), Protocol.STATUS_UPDATE_END);
+        byte[] message = Arrays.copyOf(sharedSection, sharedSection.length + fishLines.length);
+        System.arraycopy(fishLines, 0, message, sharedSection.length, fishLines.length);
+        return message;
+    }
+
+    @Override
+    public byte[] spectatorStatus(TankSummary summary) {
+        return lines(Protocol.STATUS_UPDATE_START, summary.toDisplayString().stripTrailing(),
+            Protocol.STATUS_UPDATE_END);
+    }
+
+    @Override
+    public byte[] statusBase(byte[] sharedSection, StatusSnapshot status) {
+        // The display lines can not be read back into fish, so the client gets the fields
+        return block(Protocol.STATUS_FULL_START, StatusDelta.of(status).toLines(), Protocol.STATUS_FULL_END);
+    }
+
+    @Override
+    public byte[] statusDelta(StatusDelta delta) {
+        return block(Protocol.STATUS_DELTA_START, delta.toLines(), Protocol.STATUS_DELTA_END);
+    }
+
+    @Override
+    public byte[] fishList(List<String> fishNames) {
+        if (fishNames.isEmpty())
+            return lines(Protocol.FISH_LIST_EMPTY);
+        List<String> lines = new ArrayList<>(fishNames.size() + 2);
+        lines.add(Protocol.FISH_LIST_START);
+        lines.addAll(fishNames);
+        lines.add(Protocol.FISH_LIST_END);
+        return lines(lines.toArray(String[]::new));
+    }
+
+    @Override
+    public byte[] fishListError() {
+        return lines(Protocol.FISH_LIST_ERROR);
+    }
+
+    @Override
+    public byte[] fishFact(String fact) {
+        return lines(Protocol.FISH_FACT_START, fact);
+    }
+
+    @Override
+    public byte[] throttled(long retryAfterMillis) {
+        return lines(Protocol.formatThrottled(retryAfterMillis));
+    }
+
+    @Override
+    public byte[] tankSummary(TankSummary summary) {
+        return lines(summary.toDisplayString());
+    }
+
+    @Override
+    public byte[] userView(UserView view) {
+        return lines(view.toDisplayString());
+    }
+
+    @Override
+    public byte[] resumeToken(String token) {
+        return lines(Protocol.SESSION_TOKEN + " " + token);
+    }
+
+    @Override
+    public byte[] ping() {
+        return lines(Protocol.PING);
+    }
+
+    @Override
+    public byte[] pong() {
+        return lines(Protocol.PONG);
+    }
+}
@@ -1,7 +1,10 @@
 package com.carekeeperaquarium.business;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -10,6 +13,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import com.carekeeperaquarium.common.Command;
 import com.carekeeperaquarium.model.Fish;
 import com.carekeeperaquarium.model.UserProfile;
 import com.carekeeperaquarium.server.StateObserver;
@@ -26,7 +30,7 @@ class AquariumManagerTest {
     @BeforeEach
     void setUp() {
         random = new Random();
-        observer = new StateObserver();
+        observer = new StateObserver(Runnable::run);
         manager = new AquariumManager(observer);
         
         // Clear all users before each test
@@ -158,4 +162,50 @@ class AquariumManagerTest {
         assertTrue(cleanliness2 >= cleanliness1);
         assertEquals(1, manager.getUsers().size());
     }
+
+    @Test
+    void testExecuteBatchBroadcastsOnce() {
+        manager.addUser(new UserProfile("BatchUser"));
+        // Count only broadcasts caused here, not the scheduled tank update
+        Thread testThread = Thread.currentThread();
+        AtomicInteger broadcasts = new AtomicInteger();
+        observer.addListener(broadcast -> {
+            if (Thread.currentThread() == testThread)
+                broadcasts.incrementAndGet();
+        });
+
+        List<String> results = manager.executeBatch("BatchUser", List.of(
+            Command.ADD_FISH, Command.ADD_FISH, Command.FEED_FISH, Command.CLEAN_TANK));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).startsWith("New Fish Added:"));
+        assertEquals("Fish Fed: 2", results.get(2));
+        assertEquals("Tank successfully cleaned!", results.get(3));
+        assertEquals(2, manager.getUser("BatchUser").getNumberOfFishOwned());
+        assertEquals(1, broadcasts.get());
+    }
+
+    @Test
+    void testExecuteBatchReportsFailuresPerCommand() {
+        manager.addUser(new UserProfile("FullUser"));
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            commands.add(Command.ADD_FISH);
+        }
+
+        List<String> results = manager.executeBatch("FullUser", commands);
+
+        assertEquals("Attempted to add too many fish", results.get(9));
+        assertEquals(9, manager.getUser("FullUser").getNumberOfFishOwned());
+    }
+
+    @Test
+    void testExecuteBatchRejectsInvalidCommands() {
+        manager.addUser(new UserProfile("BatchUser"));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> manager.executeBatch("BatchUser", List.of(Command.ADD_FISH, Command.QUIT)));
+        assertThrows(IllegalArgumentException.class, () -> manager.executeBatch("BatchUser", List.of()));
+        assertEquals(0, manager.getUser("BatchUser").getNumberOfFishOwned());
+    }
 }
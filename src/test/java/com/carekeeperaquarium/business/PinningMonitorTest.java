@@ -0,0 +1,23 @@
+package com.carekeeperaquarium.business;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for PinningMonitor.
+ * Only the log sampling; pin events need a JFR recording and a pinned thread.
+ */
+class PinningMonitorTest {
+
+    @Test
+    void testLogsFirstPinAndPowersOfTen() {
+        assertTrue(PinningMonitor.shouldLog(1));
+        assertTrue(PinningMonitor.shouldLog(10));
+        assertTrue(PinningMonitor.shouldLog(1000));
+        assertFalse(PinningMonitor.shouldLog(2));
+        assertFalse(PinningMonitor.shouldLog(20));
+        assertFalse(PinningMonitor.shouldLog(101));
+        assertFalse(PinningMonitor.shouldLog(0));
+    }
+}
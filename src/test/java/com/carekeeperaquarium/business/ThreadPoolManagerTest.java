@@ -1,5 +1,6 @@
 package com.carekeeperaquarium.business;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -7,6 +8,9 @@ import org.junit.jupiter.api.Test;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.carekeeperaquarium.business.ThreadPoolManager.ClientExecutorMode;
 
 /**
  * Tests for ThreadPoolManager.
@@ -52,4 +56,20 @@ class ThreadPoolManagerTest {
         ScheduledExecutorService scheduler = ThreadPoolManager.getScheduler();
         assertFalse(scheduler.isShutdown(), "Scheduler should not be shutdown initially");
     }
+
+    @Test
+    void testVirtualClientExecutorMode() throws Exception {
+        try {
+            ThreadPoolManager.setClientExecutorMode(ClientExecutorMode.VIRTUAL);
+            assertEquals(ClientExecutorMode.VIRTUAL, ThreadPoolManager.getClientExecutorMode());
+
+            boolean ranOnVirtualThread = ThreadPoolManager.getClientExecutor()
+                .submit(() -> Thread.currentThread().isVirtual())
+                .get(5, TimeUnit.SECONDS);
+            assertTrue(ranOnVirtualThread, "Client tasks should run on virtual threads");
+        } finally {
+            ThreadPoolManager.setClientExecutorMode(ClientExecutorMode.FIXED);
+        }
+        assertFalse(ThreadPoolManager.getClientExecutor().isShutdown());
+    }
 }
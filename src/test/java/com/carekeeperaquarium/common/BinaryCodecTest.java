@@ -0,0 +1,127 @@
+package com.carekeeperaquarium.common;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class BinaryCodecTest {
+    private static final FishRecord NEMO = new FishRecord("Nemo", "Clownfish", 80, 100, 3, 2);
+    private static final FishRecord DORY = new FishRecord("Dory", "Blue Tang", 0, 120, 300, 5);
+
+    @Test
+    void testStatusRoundTrip() throws IOException {
+        StatusSnapshot status = new StatusSnapshot(87.25, 100.0, 3, List.of(NEMO, DORY));
+        StatusSnapshot decoded = BinaryCodec.decodeStatus(BinaryCodec.encodeStatus(status));
+
+        assertEquals(status, decoded);
+        assertEquals(status.toDisplayString(), decoded.toDisplayString());
+    }
+
+    @Test
+    void testCleanlinessSentInHundredths() throws IOException {
+        StatusSnapshot status = new StatusSnapshot(42.123456, 100.0, 1, List.of());
+        StatusSnapshot decoded = BinaryCodec.decodeStatus(BinaryCodec.encodeStatus(status));
+
+        assertEquals(42.12, decoded.cleanliness());
+        assertEquals(status.toDisplayString(), decoded.toDisplayString());
+    }
+
+    @Test
+    void testStatusDeltaRoundTrip() throws IOException {
+        StatusDelta delta = new StatusDelta(12.5, null, 4, List.of(NEMO), List.of("Dory"));
+        assertEquals(delta, BinaryCodec.decodeStatusDelta(BinaryCodec.encodeStatusDelta(delta)));
+
+        StatusDelta fishOnly = new StatusDelta(null, null, null, List.of(DORY), List.of());
+        assertEquals(fishOnly, BinaryCodec.decodeStatusDelta(BinaryCodec.encodeStatusDelta(fishOnly)));
+    }
+
+    @Test
+    void testStatusDeltaSmallerThanStatus() {
+        StatusSnapshot status = new StatusSnapshot(87.25, 100.0, 3, List.of(NEMO, DORY));
+        StatusDelta delta = new StatusDelta(null, null, null, List.of(NEMO), List.of());
+
+        assertTrue(BinaryCodec.encodeStatusDelta(delta).length < BinaryCodec.encodeStatus(status).length);
+    }
+
+    @Test
+    void testTankSummaryRoundTrip() throws IOException {
+        TankSummary summary = new TankSummary(55.5, List.of(
+            new UserSummary("Diver", 40, 2), new UserSummary("Snorkeler", 0, 0)));
+
+        assertEquals(summary, BinaryCodec.decodeTankSummary(BinaryCodec.encodeTankSummary(summary)));
+    }
+
+    @Test
+    void testUserViewRoundTrip() throws IOException {
+        UserView view = new UserView("Diver", 1000, List.of(NEMO));
+
+        assertEquals(view, BinaryCodec.decodeUserView(BinaryCodec.encodeUserView(view)));
+    }
+
+    @Test
+    void testStringsRoundTrip() throws IOException {
+        List<String> names = List.of("Nemo", "Dory", "Bruce the Shark");
+
+        assertEquals(names, BinaryCodec.decodeStrings(BinaryCodec.encodeStrings(names)));
+        assertEquals(List.of(), BinaryCodec.decodeStrings(BinaryCodec.encodeStrings(List.of())));
+    }
+
+    @Test
+    void testFrameReadBack() throws IOException {
+        byte[] payload = BinaryCodec.encodeText("Hello, tank!");
+        byte[] frame = BinaryCodec.frame(BinaryCodec.OP_TEXT, payload);
+        assertEquals(BinaryCodec.HEADER_LENGTH + payload.length, frame.length);
+
+        ProtocolReader reader = new ProtocolReader(new ByteArrayInputStream(frame));
+        Frame read = reader.readFrame();
+        assertEquals(BinaryCodec.OP_TEXT, read.opcode());
+        assertArrayEquals(payload, read.payload());
+        assertNull(reader.readFrame());
+    }
+
+    @Test
+    void testLinesThenFramesOnOneStream() throws IOException {
+        byte[] line = "PROTOCOL:ACCEPT binary\n".getBytes();
+        byte[] frame = BinaryCodec.frame(BinaryCodec.OP_LOGIN_SUCCESS, BinaryCodec.encodeText("Welcome"));
+        byte[] stream = new byte[line.length + frame.length];
+        System.arraycopy(line, 0, stream, 0, line.length);
+        System.arraycopy(frame, 0, stream, line.length, frame.length);
+
+        ProtocolReader reader = new ProtocolReader(new ByteArrayInputStream(stream));
+        assertEquals("PROTOCOL:ACCEPT binary", reader.readLine());
+        assertEquals("Welcome", BinaryCodec.decodeText(reader.readFrame().payload()));
+    }
+
+    @Test
+    void testTagRoundTrip() throws IOException {
+        byte[] reply = BinaryCodec.frame(BinaryCodec.OP_TEXT, BinaryCodec.encodeText("Fed 2 fish"));
+        byte[] tagged = BinaryCodec.tag(BinaryCodec.OP_RESPONSE, 300, reply);
+
+        Frame outer = new ProtocolReader(new ByteArrayInputStream(tagged)).readFrame();
+        assertEquals(BinaryCodec.OP_RESPONSE, outer.opcode());
+        BinaryCodec.Tagged unwrapped = BinaryCodec.untag(outer.payload());
+        assertEquals(300, unwrapped.requestId());
+        assertEquals(BinaryCodec.OP_TEXT, unwrapped.frame().opcode());
+        assertEquals("Fed 2 fish", BinaryCodec.decodeText(unwrapped.frame().payload()));
+    }
+
+    @Test
+    void testRejectsNegativeRequestId() {
+        // Five varint bytes for -1, then a text opcode
+        byte[] payload = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, BinaryCodec.OP_TEXT };
+        assertThrows(IOException.class, () -> BinaryCodec.untag(payload));
+    }
+
+    @Test
+    void testRejectsOversizedFrame() {
+        assertThrows(IOException.class, () -> BinaryCodec.checkPayloadLength(BinaryCodec.MAX_PAYLOAD_LENGTH + 1));
+        assertThrows(IOException.class, () -> BinaryCodec.checkPayloadLength(-1));
+    }
+}
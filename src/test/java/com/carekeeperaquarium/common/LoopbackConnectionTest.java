@@ -0,0 +1,72 @@
+package com.carekeeperaquarium.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+class LoopbackConnectionTest {
+
+    @Test
+    void testWriterBlocksUntilReaderCatchesUp() throws Exception {
+        LoopbackConnection.Pair pair = LoopbackConnection.pair(16);
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                pair.client().getOutputStream().write(data);
+                pair.client().close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        byte[] received = pair.server().getInputStream().readAllBytes();
+        writer.get(5, TimeUnit.SECONDS);
+        assertArrayEquals(data, received);
+    }
+
+    @Test
+    void testShutdownInputWakesBlockedReader() throws Exception {
+        LoopbackConnection.Pair pair = LoopbackConnection.pair(16);
+        InputStream in = pair.server().getInputStream();
+
+        CompletableFuture<Integer> reader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return in.read();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+        pair.server().shutdownInput();
+
+        assertEquals(-1, reader.get(5, TimeUnit.SECONDS));
+        // The other direction still works
+        pair.server().getOutputStream().write(7);
+        assertEquals(7, pair.client().getInputStream().read());
+    }
+
+    @Test
+    void testWritesAfterCloseFailButWritesToClosedPeerAreDropped() throws IOException {
+        LoopbackConnection.Pair pair = LoopbackConnection.pair(16);
+        pair.client().close();
+
+        pair.server().getOutputStream().write(new byte[64]);
+        assertThrows(IOException.class, () -> pair.client().getOutputStream().write(1));
+        assertEquals(-1, pair.server().getInputStream().read());
+    }
+
+    @Test
+    void testRejectsEmptyBuffer() {
+        assertThrows(IllegalArgumentException.class, () -> LoopbackConnection.pair(0));
+    }
+}
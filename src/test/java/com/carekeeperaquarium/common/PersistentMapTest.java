@@ -0,0 +1,93 @@
+package com.carekeeperaquarium.common;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class PersistentMapTest {
+
+    @Test
+    void testChangesLeaveOriginalAlone() {
+        PersistentMap<String, Integer> before = PersistentMap.<String, Integer>empty()
+            .with("Diver", 100).with("Swimmer", 120);
+        PersistentMap<String, Integer> after = before.with("Diver", 105).without("Swimmer");
+
+        assertEquals(Map.of("Diver", 100, "Swimmer", 120), before);
+        assertEquals(Map.of("Diver", 105), after);
+        assertEquals(1, after.size());
+        assertFalse(after.containsKey("Swimmer"));
+        assertNull(after.get("Swimmer"));
+    }
+
+    @Test
+    void testNoOpChangesReturnSameMap() {
+        PersistentMap<String, Integer> map = PersistentMap.<String, Integer>empty().with("Diver", 100);
+
+        assertSame(map, map.with("Diver", 100));
+        assertSame(map, map.without("Nobody"));
+        assertSame(map, PersistentMap.copyOf(map));
+    }
+
+    @Test
+    void testMatchesHashMap() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new HashMap<>();
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            String key = "User" + random.nextInt(3000);
+            if (random.nextInt(4) == 0) {
+                expected.remove(key);
+                map = map.without(key);
+            } else {
+                expected.put(key, i);
+                map = map.with(key, i);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<>(map), "Iteration visits every entry once");
+        assertEquals(map, PersistentMap.copyOf(expected));
+    }
+
+    @Test
+    void testRejectsNulls() {
+        PersistentMap<String, Integer> map = PersistentMap.empty();
+
+        assertThrows(NullPointerException.class, () -> map.with(null, 1));
+        assertThrows(NullPointerException.class, () -> map.with("Diver", null));
+        assertNull(map.get(null));
+        assertTrue(PersistentMap.copyOf(Map.of()).isEmpty());
+    }
+
+    @Test
+    void testTankUpdateKeepsPersistentMaps() {
+        PersistentMap<String, List<FishRecord>> fish = PersistentMap.<String, List<FishRecord>>empty()
+            .with("Diver", List.of());
+        PersistentMap<String, Integer> points = PersistentMap.<String, Integer>empty().with("Diver", 100);
+        TankUpdate update = new TankUpdate(1, 100.0, 100.0, 1, fish, points);
+
+        assertSame(fish, update.fishByUser());
+        assertSame(points, update.pointsByUser());
+    }
+
+    @Test
+    void testTankUpdateSortsSummaryOnce() {
+        TankUpdate update = new TankUpdate(1, 100.0, 100.0, 2,
+            Map.of("Swimmer", List.of(), "Diver", List.of()), Map.of("Diver", 100, "Swimmer", 120));
+
+        TankSummary summary = update.summary();
+        assertEquals(List.of(new UserSummary("Diver", 100, 0), new UserSummary("Swimmer", 120, 0)),
+            summary.users());
+        assertSame(summary, update.summary());
+    }
+}
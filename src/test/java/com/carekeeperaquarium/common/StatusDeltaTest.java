@@ -0,0 +1,87 @@
+package com.carekeeperaquarium.common;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class StatusDeltaTest {
+    private static final FishRecord NEMO = new FishRecord("Nemo", "Clownfish", 80, 100, 3, 2);
+    private static final FishRecord DORY = new FishRecord("Dory", "Blue Tang", 50, 120, 30, 5);
+    private static final FishRecord BRUCE = new FishRecord("Bruce", "Shark", 200, 200, 1, 1);
+
+    @Test
+    void testNoChangeIsEmpty() {
+        StatusSnapshot status = new StatusSnapshot(90.0, 100.0, 2, List.of(NEMO, DORY));
+
+        assertTrue(StatusDelta.between(status, status).isEmpty());
+    }
+
+    @Test
+    void testOnlyChangedFieldsAreSet() {
+        StatusSnapshot before = new StatusSnapshot(90.0, 100.0, 2, List.of(NEMO, DORY));
+        FishRecord fedNemo = new FishRecord("Nemo", "Clownfish", 100, 100, 3, 2);
+        StatusSnapshot after = new StatusSnapshot(90.0, 100.0, 3, List.of(fedNemo, DORY));
+
+        StatusDelta delta = StatusDelta.between(before, after);
+        assertNull(delta.cleanliness());
+        assertNull(delta.maxCleanliness());
+        assertEquals(3, delta.usersOnline());
+        assertEquals(List.of(fedNemo), delta.changedFish());
+        assertEquals(List.of(), delta.removedFish());
+        assertEquals(after, delta.applyTo(before));
+    }
+
+    @Test
+    void testAddAndRemoveFish() {
+        StatusSnapshot before = new StatusSnapshot(90.0, 100.0, 2, List.of(NEMO, DORY));
+        StatusSnapshot after = new StatusSnapshot(85.5, 100.0, 2, List.of(DORY, BRUCE));
+
+        StatusDelta delta = StatusDelta.between(before, after);
+        assertEquals(85.5, delta.cleanliness());
+        assertEquals(List.of(BRUCE), delta.changedFish());
+        assertEquals(List.of("Nemo"), delta.removedFish());
+        assertEquals(after, delta.applyTo(before));
+        assertEquals(after.toDisplayString(), delta.applyTo(before).toDisplayString());
+    }
+
+    @Test
+    void testDuplicateNamesNeedFullUpdate() {
+        StatusSnapshot before = new StatusSnapshot(90.0, 100.0, 2, List.of(NEMO));
+        FishRecord otherNemo = new FishRecord("Nemo", "Betta", 60, 60, 0, 1);
+        StatusSnapshot after = new StatusSnapshot(90.0, 100.0, 2, List.of(NEMO, otherNemo));
+
+        assertNull(StatusDelta.between(before, after));
+    }
+
+    @Test
+    void testReorderNeedsFullUpdate() {
+        StatusSnapshot before = new StatusSnapshot(90.0, 100.0, 2, List.of(NEMO, DORY));
+        StatusSnapshot after = new StatusSnapshot(90.0, 100.0, 2, List.of(DORY, NEMO));
+
+        assertNull(StatusDelta.between(before, after));
+    }
+
+    @Test
+    void testTextLinesRoundTrip() {
+        StatusDelta delta = new StatusDelta(12.5, null, 4, List.of(NEMO), List.of("Dory"));
+        assertEquals(List.of("cleanliness 12.5", "users-online 4", "fish Nemo\tClownfish\t80\t100\t3\t2",
+            "removed Dory"), delta.toLines());
+        assertEquals(delta, StatusDelta.fromLines(delta.toLines()));
+    }
+
+    @Test
+    void testFullStatusKeepsFishWithSameName() {
+        StatusSnapshot status = new StatusSnapshot(90.0, 100.0, 2, List.of(NEMO, NEMO, DORY));
+
+        assertEquals(status, StatusDelta.fromLines(StatusDelta.of(status).toLines()).toSnapshot());
+    }
+
+    @Test
+    void testUnknownLineIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> StatusDelta.fromLines(List.of("teleport 3")));
+    }
+}
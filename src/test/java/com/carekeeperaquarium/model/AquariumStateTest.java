@@ -1,11 +1,20 @@
 package com.carekeeperaquarium.model;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import com.carekeeperaquarium.common.TankUpdate;
+import com.carekeeperaquarium.common.UserView;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
@@ -309,4 +318,170 @@ class AquariumStateTest {
         // With no users/fish, cleanliness should remain the same
         assertEquals(initialCleanliness, aquarium.getTankCleanliness());
     }
+
+    @Test
+    void testOtherUserNotBlockedByBatch() throws InterruptedException {
+        aquarium.addUser(user1);
+        aquarium.addUser(user2);
+        CountDownLatch inBatch = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread batch = Thread.ofVirtual().start(() -> aquarium.batchUpdate("User1", false, () -> {
+            inBatch.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return aquarium.addFishRandom("User1");
+        }));
+        inBatch.await();
+
+        // User1 is locked, User2 is not
+        aquarium.addFishRandom("User2");
+        assertEquals(1, aquarium.feedFish("User2"));
+        assertEquals(0, user1.getNumberOfFishOwned());
+
+        release.countDown();
+        batch.join(5000);
+        assertEquals(1, user1.getNumberOfFishOwned());
+    }
+
+    @Test
+    void testParallelUsersKeepTheirOwnFish() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String name = "Parallel" + i;
+            aquarium.addUser(new UserProfile(name));
+            threads.add(Thread.ofVirtual().start(() -> {
+                for (int fish = 0; fish < 5; fish++) {
+                    aquarium.addFishRandom(name);
+                    aquarium.feedFish(name);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+
+        assertEquals(8, aquarium.getTankSummary().users().size());
+        for (UserProfile user : aquarium.getUsers()) {
+            assertEquals(5, user.getNumberOfFishOwned(), user.getUsername());
+        }
+    }
+
+    @Test
+    void testReadsComeFromSnapshot() {
+        aquarium.addUser(user1);
+        aquarium.addFishRandom("User1");
+        long locked = aquarium.getLockedReads();
+        long optimistic = aquarium.getOptimisticReads();
+
+        assertEquals(1, aquarium.getUserView("User1").fish().size());
+        assertEquals(1, aquarium.getTankSummary().users().size());
+        assertEquals(1, aquarium.getStatusFor("User1").fish().size());
+
+        // None of them touched the live profile
+        assertEquals(optimistic, aquarium.getOptimisticReads());
+        assertEquals(locked, aquarium.getLockedReads());
+    }
+
+    @Test
+    void testSnapshotPublishedPerChange() {
+        aquarium.addUser(user1);
+        TankUpdate before = aquarium.getSnapshot();
+        aquarium.addFishRandom("User1");
+        TankUpdate after = aquarium.getSnapshot();
+
+        assertEquals(before.version() + 1, after.version());
+        assertEquals(0, before.fishFor("User1").size(), "Old snapshots never change");
+        assertEquals(1, after.fishFor("User1").size());
+
+        aquarium.removeUser(user1);
+        assertThrows(NoSuchElementException.class, () -> aquarium.getUserView("User1"));
+    }
+
+    @Test
+    void testSnapshotSharesUnchangedUsers() {
+        aquarium.addUser(user1);
+        aquarium.addUser(user2);
+        aquarium.addFishRandom("User2");
+        TankUpdate before = aquarium.getSnapshot();
+
+        aquarium.addFishRandom("User1");
+        TankUpdate after = aquarium.getSnapshot();
+        assertSame(before.fishFor("User2"), after.fishFor("User2"));
+        assertNotSame(before.fishFor("User1"), after.fishFor("User1"));
+    }
+
+    @Test
+    void testRenameMovesUserInSnapshot() {
+        aquarium.addUser(user1);
+        aquarium.changeName("User1", "Renamed");
+        assertNull(aquarium.getSnapshot().fishFor("User1"));
+        assertEquals("Renamed", aquarium.getUserView("Renamed").username());
+    }
+
+    @Test
+    void testLoginDuringRenameCannotTakeNewName() {
+        UserProfile newcomer = new UserProfile("Taken");
+        // The login lands while the rename is under way
+        UserProfile renamed = new UserProfile("Old") {
+            @Override
+            public void changeUsername(String newUsername) {
+                assertThrows(IllegalArgumentException.class, () -> aquarium.addUser(newcomer));
+                super.changeUsername(newUsername);
+            }
+        };
+        aquarium.addUser(renamed);
+
+        assertTrue(aquarium.changeName("Old", "Taken"));
+        assertSame(renamed, aquarium.getUser("Taken"));
+        assertFalse(aquarium.hasUser("Old"));
+        assertEquals(1, aquarium.getUsers().size());
+    }
+
+    @Test
+    void testRenameToTakenNameKeepsUser() {
+        aquarium.addUser(user1);
+        aquarium.addUser(user2);
+
+        assertThrows(IllegalArgumentException.class, () -> aquarium.changeName("User1", "User2"));
+        assertSame(user1, aquarium.getUser("User1"));
+        assertSame(user2, aquarium.getUser("User2"));
+    }
+
+    @Test
+    void testReadInsideOwnBatch() {
+        aquarium.addUser(user1);
+        UserView view = aquarium.batchUpdate("User1", false, () -> {
+            aquarium.addFishRandom("User1");
+            return aquarium.getUserView("User1");
+        });
+        assertEquals(1, view.fish().size());
+    }
+
+    @Test
+    void testReadDuringChangeSeesItWhole() throws InterruptedException {
+        aquarium.addUser(user1);
+        CountDownLatch halfDone = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread batch = Thread.ofVirtual().start(() -> aquarium.batchUpdate("User1", false, () -> {
+            aquarium.addFishRandom("User1");
+            halfDone.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return aquarium.addFishRandom("User1");
+        }));
+        halfDone.await();
+
+        // Neither waits for the batch nor sees half of it
+        assertEquals(0, aquarium.getUserView("User1").fish().size());
+
+        release.countDown();
+        batch.join(5000);
+        assertEquals(2, aquarium.getUserView("User1").fish().size());
+    }
 }
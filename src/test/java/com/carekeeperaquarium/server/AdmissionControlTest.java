@@ -0,0 +1,79 @@
+package com.carekeeperaquarium.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.common.Protocol;
+
+class AdmissionControlTest {
+
+    @Test
+    void testRejectsWhenPendingQueueIsFull() {
+        AdmissionControl admission = new AdmissionControl(10, 2, Duration.ofSeconds(5));
+
+        assertTrue(admission.tryAdmit());
+        assertTrue(admission.tryAdmit());
+        assertFalse(admission.tryAdmit());
+        assertEquals(2, admission.getQueuedCount());
+
+        // A thread picks up one of the waiting connections
+        admission.sessionStarted(System.nanoTime());
+        assertTrue(admission.tryAdmit());
+        assertEquals(3, admission.getAcceptedCount());
+        assertEquals(1, admission.getRejectedCount());
+        assertEquals(1, admission.getActiveCount());
+    }
+
+    @Test
+    void testRejectsWhenMaxSessionsReached() {
+        AdmissionControl admission = new AdmissionControl(2, 5, Duration.ofSeconds(5));
+        for (int i = 0; i < 2; i++) {
+            assertTrue(admission.tryAdmit());
+            admission.sessionStarted(System.nanoTime());
+        }
+
+        assertFalse(admission.tryAdmit());
+
+        admission.sessionEnded();
+        assertTrue(admission.tryAdmit());
+        assertEquals(1, admission.getActiveCount());
+        assertEquals(1, admission.getQueuedCount());
+    }
+
+    @Test
+    void testBusyMessageCarriesRetryAfter() {
+        AdmissionControl admission = new AdmissionControl(1, 1, Duration.ofSeconds(7));
+        String line = new String(admission.getBusyMessage(), StandardCharsets.UTF_8);
+
+        assertEquals("SERVER:BUSY retry-after=7\n", line);
+        assertTrue(Protocol.isHandshake(line.trim(), Protocol.BUSY));
+        assertEquals(7, Protocol.parseRetryAfter(line.trim()));
+        assertEquals(-1, Protocol.parseRetryAfter(Protocol.BUSY));
+    }
+
+    @Test
+    void testRecordsAcceptLatency() {
+        AdmissionControl admission = new AdmissionControl(10, 10, Duration.ofSeconds(5));
+        long acceptedNanos = System.nanoTime() - Duration.ofMillis(3).toNanos();
+        assertTrue(admission.tryAdmit());
+        admission.recordDispatch(acceptedNanos);
+        admission.sessionStarted(acceptedNanos);
+
+        assertEquals(1, admission.getDispatchLatency().getCount());
+        assertEquals(1, admission.getStartLatency().getCount());
+        assertTrue(admission.getStartLatency().getMaxMicros() >= 3000);
+        assertTrue(admission.getStartLatency().getAverageMicros() >= 3000);
+    }
+
+    @Test
+    void testRejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionControl(0, 1, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionControl(1, -1, Duration.ofSeconds(1)));
+    }
+}
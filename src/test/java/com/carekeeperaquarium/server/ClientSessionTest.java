@@ -0,0 +1,555 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.Command;
+import com.carekeeperaquarium.common.Frame;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.common.StatusDelta;
+import com.carekeeperaquarium.common.StatusSnapshot;
+import com.carekeeperaquarium.model.UserProfile;
+
+/**
+ * Tests for ClientSession.
+ * Drives the protocol directly through handleLine without any socket.
+ */
+class ClientSessionTest {
+    private AquariumManager manager;
+    private StateObserver observer;
+    private RecordingOutput output;
+    private ClientSession session;
+
+    /**
+     * Collects every line the session sends, or every frame once binary is negotiated.
+     * Status updates can arrive at any time from the scheduler, so they are kept apart.
+     */
+    private static class RecordingOutput implements SessionOutput {
+        private final List<String> lines = new ArrayList<>();
+        private final List<Frame> frames = new ArrayList<>();
+        private int statusUpdates;
+        private boolean binary;
+        private boolean dropStatus;
+        private boolean compressing;
+
+        @Override
+        public synchronized void write(byte[] message) {
+            if (binary) {
+                Frame frame = new Frame(message[0], Arrays.copyOfRange(message, BinaryCodec.HEADER_LENGTH, message.length));
+                if (frame.opcode() == BinaryCodec.OP_STATUS)
+                    statusUpdates++;
+                else
+                    frames.add(frame);
+                return;
+            }
+            String[] newLines = new String(message, StandardCharsets.UTF_8).split("\n");
+            if (newLines[0].equals("STATUS_UPDATE:START")) {
+                statusUpdates++;
+                return;
+            }
+            lines.addAll(Arrays.asList(newLines));
+        }
+
+        @Override
+        public synchronized boolean writeStatus(byte[] message, boolean fullUpdate) {
+            if (dropStatus)
+                return false;
+            write(message);
+            return true;
+        }
+
+        @Override
+        public synchronized void startCompression() {
+            compressing = true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        synchronized List<String> drain() {
+            List<String> copy = new ArrayList<>(lines);
+            lines.clear();
+            return copy;
+        }
+
+        synchronized List<Frame> drainFrames() {
+            List<Frame> copy = new ArrayList<>(frames);
+            frames.clear();
+            return copy;
+        }
+
+        synchronized void setBinary(boolean binary) {
+            this.binary = binary;
+        }
+
+        // Act like a full outbound queue that drops status updates
+        synchronized void setDropStatus(boolean dropStatus) {
+            this.dropStatus = dropStatus;
+        }
+
+        synchronized boolean isCompressing() {
+            return compressing;
+        }
+
+        synchronized int getStatusUpdates() {
+            return statusUpdates;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        observer = new StateObserver(Runnable::run);
+        manager = new AquariumManager(observer);
+        for (UserProfile user : manager.getUsers()) {
+            manager.removeUser(user);
+        }
+        output = new RecordingOutput();
+        session = new ClientSession(manager, observer, output, Runnable::run);
+        session.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        session.close();
+    }
+
+    @Test
+    void testWelcomeOnStart() {
+        assertEquals("Welcome to CareKeeper Aquarium!", output.drain().get(0));
+    }
+
+    @Test
+    void testLoginSuccess() {
+        output.drain();
+        assertTrue(session.handleLine("Diver"));
+
+        List<String> lines = output.drain();
+        assertEquals("LOGIN:SUCCESSFUL", lines.get(0));
+        assertTrue(output.getStatusUpdates() > 0, "New user should get the tank status right away");
+        assertEquals("Diver", session.getUsername());
+        assertTrue(manager.hasUser("Diver"));
+    }
+
+    @Test
+    void testLoginRejectsSpecialCharacters() {
+        output.drain();
+        session.handleLine("bad:name");
+
+        assertEquals(List.of("LOGIN:FAIL", "Invalid username. Can not contain special characters"),
+                     output.drain());
+        assertEquals(null, session.getUsername());
+    }
+
+    @Test
+    void testLoginRejectsDuplicate() {
+        manager.addUser(new UserProfile("Taken"));
+        output.drain();
+        session.handleLine("Taken");
+
+        assertEquals("LOGIN:FAIL", output.drain().get(0));
+    }
+
+    @Test
+    void testRemoveFishSelection() {
+        session.handleLine("Diver");
+        session.handleLine("add-fish");
+        String fishName = manager.getUser("Diver").getFish().get(0).getName();
+        output.drain();
+
+        session.handleLine("remove-fish");
+        List<String> lines = output.drain();
+        assertEquals(List.of("FISH_LIST:START", fishName, "FISH_LIST:END"), lines);
+
+        session.handleLine(fishName);
+        assertTrue(output.drain().contains("Successfully removed fish: " + fishName));
+        assertEquals(0, manager.getUser("Diver").getNumberOfFishOwned());
+    }
+
+    @Test
+    void testRemoveFishCancel() {
+        session.handleLine("Diver");
+        session.handleLine("add-fish");
+        session.handleLine("remove-fish");
+        output.drain();
+
+        session.handleLine("!cancel");
+        assertEquals(List.of("Cancelled. No changes made"), output.drain());
+        assertEquals(1, manager.getUser("Diver").getNumberOfFishOwned());
+    }
+
+    @Test
+    void testQuitRemovesUser() {
+        session.handleLine("Diver");
+        output.drain();
+
+        assertFalse(session.handleLine("quit"));
+        assertTrue(session.isClosed());
+        assertFalse(manager.hasUser("Diver"));
+        assertEquals(List.of("Goodbye, Diver!"), output.drain());
+    }
+
+    @Test
+    void testUnknownCommand() {
+        session.handleLine("Diver");
+        output.drain();
+
+        session.handleLine("dance");
+        assertEquals(List.of("Unknown command. Please try again."), output.drain());
+    }
+
+    @Test
+    void testBatchCommand() {
+        session.handleLine("Diver");
+        output.drain();
+        // Count only broadcasts caused here, not the scheduled tank update
+        Thread testThread = Thread.currentThread();
+        AtomicInteger broadcasts = new AtomicInteger();
+        observer.addListener(broadcast -> {
+            if (Thread.currentThread() == testThread)
+                broadcasts.incrementAndGet();
+        });
+
+        session.handleLine("batch add-fish, add-fish feed-fish");
+        List<String> lines = output.drain();
+        assertEquals("Fish Fed: 2", lines.get(lines.size() - 1));
+        assertEquals(2, manager.getUser("Diver").getNumberOfFishOwned());
+        assertEquals(1, broadcasts.get(), "One status update for the whole batch");
+    }
+
+    @Test
+    void testBatchRejectsUnbatchableCommand() {
+        session.handleLine("Diver");
+        output.drain();
+
+        session.handleLine("batch add-fish quit");
+        assertEquals(List.of("Can not batch command: quit"), output.drain());
+        assertTrue(manager.hasUser("Diver"));
+    }
+
+    @Test
+    void testCommandsThrottledPastBurst() {
+        session = new ClientSession(manager, observer, output, Runnable::run, null,
+            new RateLimiter(1, 2, Map.of()), null);
+        session.start();
+        session.handleLine("Diver");
+        output.drain();
+
+        session.handleLine("add-fish");
+        session.handleLine("add-fish");
+        session.handleLine("add-fish");
+        List<String> lines = output.drain();
+        assertTrue(lines.get(lines.size() - 1).startsWith(Protocol.THROTTLED + " " + Protocol.RETRY_AFTER_MS),
+            lines.toString());
+        assertEquals(2, manager.getUser("Diver").getNumberOfFishOwned());
+
+        // Quitting is never held back
+        assertFalse(session.handleLine("quit"));
+    }
+
+    @Test
+    void testBatchCostsOneTokenPerCommand() {
+        session = new ClientSession(manager, observer, output, Runnable::run, null,
+            new RateLimiter(1, 2, Map.of()), null);
+        session.start();
+        session.handleLine("Diver");
+        output.drain();
+
+        session.handleLine("add-fish");
+        output.drain();
+        session.handleLine("batch add-fish add-fish");
+        assertTrue(output.drain().get(0).startsWith(Protocol.THROTTLED));
+        assertEquals(1, manager.getUser("Diver").getNumberOfFishOwned(), "None of the batch ran");
+    }
+
+    @Test
+    void testCommandsTakeTurnsThroughScheduler() {
+        CommandScheduler scheduler = new CommandScheduler(1);
+        session = new ClientSession(manager, observer, output, Runnable::run, null, null, scheduler);
+        session.start();
+        session.handleLine("Diver");
+        session.handleLine("add-fish");
+        session.handleLine("batch feed-fish clean-tank");
+        session.handleLine("dance");
+
+        assertEquals(3, session.getQueueWait().getCount());
+        assertEquals(3, scheduler.getQueueWait().getCount());
+        assertEquals(1, manager.getUser("Diver").getNumberOfFishOwned());
+    }
+
+    @Test
+    void testEmptyBatchDoesNotHoldTurn() {
+        CommandScheduler scheduler = new CommandScheduler(1);
+        session = new ClientSession(manager, observer, output, Runnable::run, null, null, scheduler);
+        session.start();
+        session.handleLine("Diver");
+        output.drain();
+
+        // Would wait forever for the turn it already holds if it were scheduled twice
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            session.handleLine("batch");
+            session.handleLine("add-fish");
+        });
+        assertEquals("A batch must have 1 to 32 commands", output.drain().get(0));
+        assertEquals(1, manager.getUser("Diver").getNumberOfFishOwned());
+        assertEquals(1, scheduler.getQueueWait().getCount(), "Only add-fish took a turn");
+    }
+
+    @Test
+    void testSpectatorWatchesWithoutJoining() {
+        output.drain();
+        int usersBefore = manager.getUsers().size();
+        assertTrue(session.handleLine(Protocol.SPECTATE));
+
+        assertEquals("LOGIN:SUCCESSFUL", output.drain().get(0));
+        assertTrue(session.isSpectating());
+        assertEquals(usersBefore, manager.getUsers().size(), "Spectators are not users");
+
+        // Updates caused by others reach the spectator
+        int updates = output.getStatusUpdates();
+        RecordingOutput playerOutput = new RecordingOutput();
+        ClientSession player = new ClientSession(manager, observer, playerOutput, Runnable::run);
+        player.start();
+        player.handleLine("Diver");
+        assertTrue(output.getStatusUpdates() > updates);
+        player.close();
+
+        session.handleLine("add-fish");
+        assertEquals(List.of("Spectators can only view-tank or quit."), output.drain());
+        session.handleLine("view-tank");
+        assertTrue(output.drain().get(0).startsWith("Aquarium Cleanliness"));
+
+        assertFalse(session.handleLine("quit"));
+    }
+
+    @Test
+    void testNegotiateBinary() {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO binary");
+
+        assertEquals(List.of("PROTOCOL:ACCEPT binary"), output.drain());
+        assertTrue(session.isBinary());
+    }
+
+    @Test
+    void testNegotiateDeflate() {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO deflate");
+
+        assertEquals(List.of("PROTOCOL:ACCEPT deflate"), output.drain());
+        assertTrue(output.isCompressing());
+        assertFalse(session.isBinary());
+    }
+
+    @Test
+    void testPingAnsweredInAnyState() {
+        output.drain();
+        assertTrue(session.handleLine("HEARTBEAT:PING"));
+        assertEquals(List.of("HEARTBEAT:PONG"), output.drain());
+
+        // A pong is not mistaken for a username
+        session.handleLine("HEARTBEAT:PONG");
+        assertEquals(List.of(), output.drain());
+        assertFalse(manager.hasUser("HEARTBEAT:PONG"));
+
+        session.handleLine("PROTOCOL:HELLO binary,heartbeat");
+        assertEquals(List.of("PROTOCOL:ACCEPT binary,heartbeat"), output.drain());
+        output.setBinary(true);
+        session.handleFrame(new Frame(BinaryCodec.OP_PING, new byte[0]));
+        assertEquals(BinaryCodec.OP_PONG, output.drainFrames().get(0).opcode());
+        assertTrue(session.usesHeartbeats());
+    }
+
+    @Test
+    void testNegotiateUnknownFeatureStaysText() {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO teleport");
+
+        assertEquals(List.of("PROTOCOL:ACCEPT"), output.drain());
+        assertFalse(session.isBinary());
+        assertFalse(output.isCompressing());
+    }
+
+    @Test
+    void testBinaryLoginAndCommand() throws IOException {
+        session.handleLine("PROTOCOL:HELLO binary");
+        output.drain();
+        output.setBinary(true);
+
+        assertTrue(session.handleFrame(new Frame(BinaryCodec.OP_LOGIN, BinaryCodec.encodeText("Diver"))));
+        assertEquals(BinaryCodec.OP_LOGIN_SUCCESS, output.drainFrames().get(0).opcode());
+        assertTrue(output.getStatusUpdates() > 0, "New user should get the tank status right away");
+
+        session.handleFrame(new Frame(Command.VIEW_FISH.getOpcode(), new byte[0]));
+        List<Frame> frames = output.drainFrames();
+        assertEquals(BinaryCodec.OP_USER_VIEW, frames.get(0).opcode());
+        assertEquals("Diver", BinaryCodec.decodeUserView(frames.get(0).payload()).username());
+
+        assertFalse(session.handleFrame(new Frame(Command.QUIT.getOpcode(), new byte[0])));
+        assertFalse(manager.hasUser("Diver"));
+    }
+
+    @Test
+    void testTextDeltaStatusAfterFirstUpdate() {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO delta");
+        assertEquals(List.of("PROTOCOL:ACCEPT delta"), output.drain());
+
+        session.handleLine("Diver");
+        List<String> login = output.drain();
+        StatusSnapshot base = StatusDelta.fromLines(block(login, "STATUS_FULL:START", "STATUS_FULL:END"))
+            .toSnapshot();
+        assertEquals(0, output.getStatusUpdates(), "No display status once deltas are on");
+
+        session.handleLine("add-fish");
+        List<String> added = output.drain();
+        StatusDelta delta = StatusDelta.fromLines(block(added, "STATUS_DELTA:START", "STATUS_DELTA:END"));
+        String fishName = manager.getUser("Diver").getFish().get(0).getName();
+        assertEquals(fishName, delta.changedFish().get(0).name());
+        assertEquals(manager.getStatusFor("Diver"), delta.applyTo(base));
+    }
+
+    /**
+     * @return the lines between the markers
+     */
+    private static List<String> block(List<String> lines, String start, String end) {
+        int from = lines.indexOf(start);
+        assertTrue(from >= 0, "No " + start + " in " + lines);
+        return lines.subList(from + 1, lines.indexOf(end));
+    }
+
+    @Test
+    void testDeltaStatusAfterFirstUpdate() throws IOException {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO binary,delta");
+        assertEquals(List.of("PROTOCOL:ACCEPT binary,delta"), output.drain());
+        output.setBinary(true);
+
+        session.handleFrame(new Frame(BinaryCodec.OP_LOGIN, BinaryCodec.encodeText("Diver")));
+        assertEquals(1, output.getStatusUpdates(), "First update is a full status");
+        output.drainFrames();
+
+        session.handleFrame(new Frame(Command.ADD_FISH.getOpcode(), new byte[0]));
+        String fishName = manager.getUser("Diver").getFish().get(0).getName();
+        StatusDelta delta = null;
+        for (Frame frame : output.drainFrames()) {
+            if (frame.opcode() == BinaryCodec.OP_STATUS_DELTA)
+                delta = BinaryCodec.decodeStatusDelta(frame.payload());
+        }
+        assertEquals(1, output.getStatusUpdates(), "Later updates are deltas");
+        assertEquals(fishName, delta.changedFish().get(0).name());
+    }
+
+    @Test
+    void testFullStatusAfterDroppedDelta() {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO binary,delta");
+        output.setBinary(true);
+        session.handleFrame(new Frame(BinaryCodec.OP_LOGIN, BinaryCodec.encodeText("Diver")));
+        assertEquals(1, output.getStatusUpdates());
+
+        output.setDropStatus(true);
+        session.handleFrame(new Frame(Command.ADD_FISH.getOpcode(), new byte[0]));
+        output.setDropStatus(false);
+        session.handleFrame(new Frame(Command.FEED_FISH.getOpcode(), new byte[0]));
+
+        assertEquals(2, output.getStatusUpdates(), "Client missed a delta, so it gets a full status");
+    }
+
+    @Test
+    void testPipelinedRepliesCarryRequestIds() throws IOException {
+        // Hold fish fact lookups back to stand in for a slow API
+        List<Runnable> slowTasks = new ArrayList<>();
+        RecordingOutput pipelinedOutput = new RecordingOutput();
+        ClientSession pipelined = new ClientSession(manager, observer, pipelinedOutput, slowTasks::add);
+        pipelined.start();
+        pipelined.handleLine("PROTOCOL:HELLO binary,pipeline");
+        assertEquals("PROTOCOL:ACCEPT binary,pipeline", pipelinedOutput.drain().get(1));
+        pipelinedOutput.setBinary(true);
+
+        try {
+            pipelined.handleFrame(request(1, BinaryCodec.OP_LOGIN, BinaryCodec.encodeText("Bot")));
+            pipelined.handleFrame(request(2, Command.GET_FISH_FACT.getOpcode(), new byte[0]));
+            pipelined.handleFrame(request(3, Command.VIEW_TANK.getOpcode(), new byte[0]));
+
+            List<Frame> frames = pipelinedOutput.drainFrames();
+            assertEquals(2, frames.size(), "The fish fact must not hold up the tank view");
+            BinaryCodec.Tagged login = BinaryCodec.untag(frames.get(0).payload());
+            assertEquals(1, login.requestId());
+            assertEquals(BinaryCodec.OP_LOGIN_SUCCESS, login.frame().opcode());
+            BinaryCodec.Tagged view = BinaryCodec.untag(frames.get(1).payload());
+            assertEquals(3, view.requestId());
+            assertEquals(BinaryCodec.OP_TANK_SUMMARY, view.frame().opcode());
+            assertEquals(1, slowTasks.size());
+        } finally {
+            pipelined.close();
+        }
+    }
+
+    @Test
+    void testMultiplexedSessions() throws IOException {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO binary,mux");
+        assertEquals(List.of("PROTOCOL:ACCEPT binary,mux"), output.drain());
+        output.setBinary(true);
+
+        session.handleFrame(inSession(1, BinaryCodec.OP_LOGIN, BinaryCodec.encodeText("Reef")));
+        session.handleFrame(inSession(2, BinaryCodec.OP_LOGIN, BinaryCodec.encodeText("Lagoon")));
+        assertTrue(manager.hasUser("Reef"));
+        assertTrue(manager.hasUser("Lagoon"));
+
+        List<Integer> loggedIn = new ArrayList<>();
+        for (Frame frame : output.drainFrames()) {
+            assertEquals(BinaryCodec.OP_SESSION, frame.opcode());
+            BinaryCodec.Tagged tagged = BinaryCodec.untag(frame.payload());
+            if (tagged.frame().opcode() == BinaryCodec.OP_LOGIN_SUCCESS)
+                loggedIn.add(tagged.requestId());
+        }
+        assertEquals(List.of(1, 2), loggedIn);
+
+        byte[] end = BinaryCodec.sessionEnd(1);
+        session.handleFrame(new Frame(end[0], Arrays.copyOfRange(end, BinaryCodec.HEADER_LENGTH, end.length)));
+        assertFalse(manager.hasUser("Reef"));
+        assertTrue(manager.hasUser("Lagoon"));
+        Frame ended = output.drainFrames().stream()
+            .filter(frame -> frame.opcode() == BinaryCodec.OP_SESSION_END).findFirst().orElseThrow();
+        assertEquals(1, BinaryCodec.decodeSessionEnd(ended.payload()));
+
+        session.close();
+        assertFalse(manager.hasUser("Lagoon"), "Closing the connection ends every session on it");
+    }
+
+    @Test
+    void testMuxNeedsBinary() {
+        output.drain();
+        session.handleLine("PROTOCOL:HELLO mux");
+
+        assertEquals(List.of("PROTOCOL:ACCEPT"), output.drain());
+    }
+
+    private static Frame request(int requestId, byte opcode, byte[] payload) {
+        byte[] tagged = BinaryCodec.tag(BinaryCodec.OP_REQUEST, requestId, BinaryCodec.frame(opcode, payload));
+        return new Frame(tagged[0], Arrays.copyOfRange(tagged, BinaryCodec.HEADER_LENGTH, tagged.length));
+    }
+
+    private static Frame inSession(int sessionId, byte opcode, byte[] payload) {
+        byte[] tagged = BinaryCodec.tag(BinaryCodec.OP_SESSION, sessionId, BinaryCodec.frame(opcode, payload));
+        return new Frame(tagged[0], Arrays.copyOfRange(tagged, BinaryCodec.HEADER_LENGTH, tagged.length));
+    }
+}
@@ -0,0 +1,167 @@
+package com.carekeeperaquarium.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for CommandScheduler.
+ * One session holds the turn while others queue up from their own threads, then the
+ * order in which the queued commands run is checked.
+ */
+class CommandSchedulerTest {
+    private final CommandScheduler scheduler = new CommandScheduler(1);
+    private final List<String> order = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+    }
+
+    /**
+     * Take the turn and keep it until {@link #release} opens.
+     */
+    private void hold() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CommandScheduler.Session holder = scheduler.newSession(1, () -> "Holder");
+        Thread thread = Thread.ofVirtual().start(() -> holder.run(1, () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        threads.add(thread);
+        running.await();
+    }
+
+    /**
+     * Queue a command from its own thread and wait until it is queued.
+     */
+    private void submit(CommandScheduler.Session session, int cost, String label) throws InterruptedException {
+        long queued = scheduler.getQueuedCount();
+        threads.add(Thread.ofVirtual().start(() -> session.run(cost, () -> {
+            synchronized (order) {
+                order.add(label);
+            }
+        })));
+        while (scheduler.getQueuedCount() == queued) {
+            Thread.sleep(1);
+        }
+    }
+
+    private List<String> runQueued() throws InterruptedException {
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        synchronized (order) {
+            return new ArrayList<>(order);
+        }
+    }
+
+    @Test
+    void testUncontendedCommandDoesNotQueue() {
+        CommandScheduler.Session session = scheduler.newSession(1, () -> "Diver");
+        assertEquals("done", session.run(1, () -> "done"));
+
+        assertEquals(0, scheduler.getQueuedCount());
+        assertEquals(1, session.getQueueWait().getCount());
+        assertEquals(0.0, session.getQueueWait().getMaxMicros());
+    }
+
+    @Test
+    void testNestedTurnIsRefused() {
+        CommandScheduler.Session session = scheduler.newSession(1, () -> "Diver");
+        assertThrows(IllegalStateException.class,
+            () -> session.run(1, () -> session.run(1, () -> "nested")));
+
+        // The outer turn was given back
+        assertEquals("done", session.run(1, () -> "done"));
+    }
+
+    @Test
+    void testBusySessionGoesToTheBack() throws InterruptedException {
+        CommandScheduler.Session chatty = scheduler.newSession(1, () -> "Chatty");
+        CommandScheduler.Session quiet = scheduler.newSession(1, () -> "Quiet");
+        chatty.run(1, () -> { });
+        chatty.run(1, () -> { });
+        hold();
+
+        // Chatty queued first, but already had its turns
+        submit(chatty, 1, "chatty");
+        submit(quiet, 1, "quiet");
+        assertEquals(List.of("quiet", "chatty"), runQueued());
+    }
+
+    @Test
+    void testRoundRobinBetweenSessions() throws InterruptedException {
+        CommandScheduler.Session first = scheduler.newSession(1, () -> "First");
+        CommandScheduler.Session second = scheduler.newSession(1, () -> "Second");
+        hold();
+
+        submit(first, 1, "first");
+        submit(first, 1, "first");
+        submit(first, 1, "first");
+        submit(second, 1, "second");
+        submit(second, 1, "second");
+        assertEquals(List.of("first", "second", "first", "second", "first"), runQueued());
+    }
+
+    @Test
+    void testWeightedShares() throws InterruptedException {
+        CommandScheduler.Session heavy = scheduler.newSession(2, () -> "Heavy");
+        CommandScheduler.Session light = scheduler.newSession(1, () -> "Light");
+        hold();
+
+        for (int i = 0; i < 4; i++) {
+            submit(heavy, 1, "heavy");
+        }
+        submit(light, 1, "light");
+        submit(light, 1, "light");
+        assertEquals(List.of("heavy", "light", "heavy", "heavy", "light", "heavy"), runQueued());
+    }
+
+    @Test
+    void testBatchCostsItsSize() throws InterruptedException {
+        CommandScheduler.Session batcher = scheduler.newSession(1, () -> "Batcher");
+        CommandScheduler.Session single = scheduler.newSession(1, () -> "Single");
+        hold();
+
+        submit(batcher, 3, "batch");
+        submit(batcher, 1, "after batch");
+        submit(single, 1, "single");
+        submit(single, 1, "single");
+        submit(single, 1, "single");
+        assertEquals(List.of("batch", "single", "single", "single", "after batch"), runQueued());
+    }
+
+    @Test
+    void testQueueWaitReportedPerSession() throws InterruptedException {
+        CommandScheduler.Session waiter = scheduler.newSession(1, () -> "Waiter");
+        hold();
+        submit(waiter, 1, "waiter");
+        Thread.sleep(5);
+        runQueued();
+
+        assertEquals(1, waiter.getQueueWait().getCount());
+        assertTrue(waiter.getQueueWait().getMaxMicros() >= 5000);
+        assertTrue(scheduler.describe().contains("slowest sessions: Waiter"), scheduler.describe());
+
+        waiter.close();
+        assertFalse(scheduler.describe().contains("Waiter"), "Closed sessions leave the report");
+    }
+}
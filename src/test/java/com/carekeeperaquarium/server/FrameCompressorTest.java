@@ -0,0 +1,67 @@
+package com.carekeeperaquarium.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.Compression;
+import com.carekeeperaquarium.common.Frame;
+import com.carekeeperaquarium.common.ProtocolReader;
+
+class FrameCompressorTest {
+    private static final String STATUS = "STATUS_UPDATE:START\n"
+        + "Tank Cleanliness: 97.50/100.00\nUsers Online: 3\n"
+        + "Your Fish:\nNemo (80/100)       \tDory (95/120)       \n"
+        + "STATUS_UPDATE:END\n";
+
+    @Test
+    void testReaderSwitchesToInflatingMidStream() throws IOException {
+        FrameCompressor compressor = new FrameCompressor();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes("PROTOCOL:ACCEPT binary,deflate\n".getBytes(StandardCharsets.UTF_8));
+        stream.writeBytes(compressor.compress(BinaryCodec.frame(BinaryCodec.OP_TEXT, BinaryCodec.encodeText("Hi"))));
+        stream.writeBytes(compressor.compress(BinaryCodec.frame(BinaryCodec.OP_TEXT, BinaryCodec.encodeText("Bye"))));
+        compressor.end();
+
+        ProtocolReader reader = new ProtocolReader(new ByteArrayInputStream(stream.toByteArray()));
+        assertEquals("PROTOCOL:ACCEPT binary,deflate", reader.readLine());
+        reader.startInflating(Compression.newInflater());
+        Frame first = reader.readFrame();
+        assertEquals("Hi", BinaryCodec.decodeText(first.payload()));
+        assertEquals("Bye", BinaryCodec.decodeText(reader.readFrame().payload()));
+        assertNull(reader.readFrame());
+    }
+
+    @Test
+    void testRepeatedStatusCompressesWell() throws IOException {
+        FrameCompressor compressor = new FrameCompressor();
+        byte[] status = STATUS.getBytes(StandardCharsets.UTF_8);
+        int first = compressor.compress(status).length;
+        int second = compressor.compress(status).length;
+
+        // The second copy is mostly a back-reference to the first
+        assertTrue(second < first, "Repeated status should shrink: " + first + " then " + second);
+        assertEquals(2, compressor.getFrameCount());
+        assertEquals(2L * status.length, compressor.getBytesIn());
+        assertTrue(compressor.getRatio() > 2.0, "Ratio was " + compressor.getRatio());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        FrameCompressor fresh = new FrameCompressor();
+        stream.writeBytes(fresh.compress(status));
+        stream.writeBytes(fresh.compress(status));
+        ProtocolReader reader = new ProtocolReader(new ByteArrayInputStream(stream.toByteArray()));
+        reader.startInflating(Compression.newInflater());
+        for (String line : (STATUS + STATUS).split("\n")) {
+            assertEquals(line, reader.readLine());
+        }
+        compressor.end();
+        fresh.end();
+    }
+}
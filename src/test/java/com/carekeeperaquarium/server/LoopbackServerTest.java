@@ -0,0 +1,67 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.common.Connection;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.common.ProtocolReader;
+import com.carekeeperaquarium.model.UserProfile;
+
+class LoopbackServerTest {
+
+    private AquariumManager manager;
+    private LoopbackServer server;
+
+    @BeforeEach
+    void setUp() {
+        StateObserver observer = new StateObserver(Runnable::run);
+        manager = new AquariumManager(observer);
+        for (UserProfile user : manager.getUsers()) {
+            manager.removeUser(user);
+        }
+        Properties properties = new Properties();
+        properties.setProperty("aquarium.admission.max-sessions", "1");
+        server = new LoopbackServer(new ServerConfig(properties), manager, observer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.shutdown();
+    }
+
+    @Test
+    void testSessionRunsOverLoopback() throws IOException, InterruptedException {
+        try (Connection connection = server.connect()) {
+            ProtocolReader in = new ProtocolReader(connection.getInputStream());
+            OutputStream out = connection.getOutputStream();
+
+            assertEquals(Protocol.WELCOME, in.readLine());
+            out.write("Looper\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals(Protocol.LOGIN_SUCCESSFUL, in.readLine());
+            assertTrue(manager.getUsers().stream().anyMatch(user -> user.getUsername().equals("Looper")));
+
+            // The only slot is taken
+            try (Connection second = server.connect()) {
+                String busy = new ProtocolReader(second.getInputStream()).readLine();
+                assertTrue(Protocol.isHandshake(busy, Protocol.BUSY));
+            }
+        }
+
+        // Hanging up removes the user, as with a socket
+        for (int i = 0; i < 100 && server.getActiveCount() > 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(0, server.getActiveCount());
+        assertTrue(manager.getUsers().isEmpty());
+    }
+}
@@ -0,0 +1,158 @@
+package com.carekeeperaquarium.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.model.UserProfile;
+
+/**
+ * Tests for NioEventLoop.
+ * Clients talk to a single loop over real sockets while the scheduler's only turn is
+ * held, so a queued command must not stall the other connections of the loop.
+ */
+class NioEventLoopTest {
+    private final CommandScheduler scheduler = new CommandScheduler(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<Socket> clients = new ArrayList<>();
+    private AquariumManager manager;
+    private SessionReaper reaper;
+    private NioEventLoop loop;
+    private Thread loopThread;
+    private Thread holder;
+    private ServerSocketChannel listener;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        StateObserver observer = new StateObserver(Runnable::run);
+        manager = new AquariumManager(observer);
+        for (UserProfile user : manager.getUsers()) {
+            manager.removeUser(user);
+        }
+        ServerConfig config = new ServerConfig(new Properties());
+        reaper = SessionReaper.fromConfig(config);
+        loop = new NioEventLoop(config, manager, observer, AdmissionControl.fromConfig(config), reaper,
+            SessionResumer.fromConfig(config, manager), null, scheduler);
+        loopThread = new Thread(loop, "aquarium-nio-test");
+        loopThread.start();
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress("127.0.0.1", 0));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException, InterruptedException {
+        release.countDown();
+        if (holder != null)
+            holder.join(5000);
+        for (Socket client : clients) {
+            client.close();
+        }
+        listener.close();
+        loop.shutdown();
+        loopThread.join(5000);
+    }
+
+    /**
+     * Connect a client and hand the accepted channel to the loop.
+     */
+    private BufferedReader connect() throws IOException {
+        Socket client = new Socket("127.0.0.1", listener.socket().getLocalPort());
+        client.setSoTimeout(5000);
+        clients.add(client);
+        SocketChannel accepted = listener.accept();
+        loop.register(accepted, System.nanoTime());
+        return new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private void send(String line) throws IOException {
+        OutputStream out = clients.get(clients.size() - 1).getOutputStream();
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Read until a line starting with the prefix, skipping status pushes.
+     */
+    private String readUntil(BufferedReader in, String prefix) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.startsWith(prefix))
+                return line;
+        }
+        throw new IOException("Connection closed before \"" + prefix + "\"");
+    }
+
+    /**
+     * Take the scheduler's only turn and keep it until {@link #release} opens.
+     */
+    private void hold() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        CommandScheduler.Session session = scheduler.newSession(1, () -> "Holder");
+        holder = Thread.ofVirtual().start(() -> session.run(1, () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        running.await();
+    }
+
+    @Test
+    void testQueuedCommandDoesNotStallLoop() throws IOException, InterruptedException {
+        hold();
+
+        BufferedReader diver = connect();
+        assertEquals(Protocol.WELCOME, diver.readLine());
+        send("Diver");
+        readUntil(diver, Protocol.LOGIN_SUCCESSFUL);
+        send("add-fish");
+        for (int i = 0; i < 500 && scheduler.getQueuedCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, scheduler.getQueuedCount(), "The command waits for its turn");
+
+        // The loop keeps serving other connections meanwhile
+        BufferedReader swimmer = connect();
+        assertEquals(Protocol.WELCOME, swimmer.readLine());
+        send("Swimmer");
+        readUntil(swimmer, Protocol.LOGIN_SUCCESSFUL);
+        assertEquals(0, manager.getUser("Diver").getNumberOfFishOwned());
+
+        release.countDown();
+        readUntil(diver, "New Fish Added");
+        assertEquals(1, manager.getUser("Diver").getNumberOfFishOwned());
+    }
+
+    @Test
+    void testLinesRunInOrder() throws IOException {
+        BufferedReader diver = connect();
+        assertEquals(Protocol.WELCOME, diver.readLine());
+        // Everything arrives in one read; each line still waits for the one before
+        send("Diver\nadd-fish\nadd-fish\nadd-fish");
+        readUntil(diver, Protocol.LOGIN_SUCCESSFUL);
+        for (int i = 0; i < 3; i++) {
+            readUntil(diver, "New Fish Added");
+        }
+        assertEquals(3, manager.getUser("Diver").getNumberOfFishOwned());
+    }
+}
@@ -0,0 +1,133 @@
+package com.carekeeperaquarium.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.common.Compression;
+import com.carekeeperaquarium.server.OutboundQueue.Offer;
+import com.carekeeperaquarium.server.ServerConfig.OverflowPolicy;
+
+class OutboundQueueTest {
+    private static final byte[] REPLY = {1};
+    private static final byte[] STATUS_1 = {2};
+    private static final byte[] STATUS_2 = {3};
+    private static final byte[] DELTA = {4};
+
+    @Test
+    void testKeepsOrder() {
+        OutboundQueue queue = new OutboundQueue(4, OverflowPolicy.DROP_STALE);
+        queue.offer(REPLY);
+        queue.offerStatus(DELTA, false);
+
+        assertArrayEquals(REPLY, queue.poll());
+        assertArrayEquals(DELTA, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testFullStatusReplacesQueuedStatus() {
+        OutboundQueue queue = new OutboundQueue(4, OverflowPolicy.DROP_STALE);
+        queue.offerStatus(STATUS_1, true);
+        queue.offer(REPLY);
+        queue.offerStatus(DELTA, false);
+        assertEquals(Offer.QUEUED, queue.offerStatus(STATUS_2, true));
+
+        assertEquals(2, queue.size());
+        assertEquals(2, queue.getDroppedCount());
+        assertArrayEquals(REPLY, queue.poll());
+        assertArrayEquals(STATUS_2, queue.poll());
+    }
+
+    @Test
+    void testDropStaleDropsStatusWhenFull() {
+        OutboundQueue queue = new OutboundQueue(2, OverflowPolicy.DROP_STALE);
+        queue.offer(REPLY);
+        queue.offer(REPLY);
+
+        assertEquals(Offer.DROPPED, queue.offerStatus(DELTA, false));
+        assertEquals(Offer.DROPPED, queue.offerStatus(STATUS_1, true));
+        assertEquals(2, queue.getDroppedCount());
+        // Replies are never dropped silently
+        assertEquals(Offer.OVERFLOW, queue.offer(REPLY));
+    }
+
+    @Test
+    void testFullStatusOnlyReplacesItsOwnStream() {
+        OutboundQueue queue = new OutboundQueue(4, OverflowPolicy.DROP_STALE);
+        queue.offerStatus(DELTA, false, 2);
+        queue.offerStatus(STATUS_1, true, 1);
+        queue.offerStatus(STATUS_2, true, 1);
+
+        assertEquals(2, queue.size());
+        assertArrayEquals(DELTA, queue.poll());
+        assertArrayEquals(STATUS_2, queue.poll());
+    }
+
+    @Test
+    void testCapacityScalesWithStreams() {
+        OutboundQueue queue = new OutboundQueue(1, OverflowPolicy.DROP_STALE);
+        queue.setStreamCount(3);
+        queue.offer(REPLY);
+        queue.offer(REPLY);
+
+        assertEquals(Offer.QUEUED, queue.offer(REPLY));
+        assertEquals(Offer.OVERFLOW, queue.offer(REPLY));
+    }
+
+    @Test
+    void testDisconnectPolicy() {
+        OutboundQueue queue = new OutboundQueue(2, OverflowPolicy.DISCONNECT);
+        queue.offerStatus(STATUS_1, true);
+        // No coalescing under this policy
+        queue.offerStatus(STATUS_2, true);
+
+        assertEquals(Offer.OVERFLOW, queue.offerStatus(STATUS_1, true));
+        assertEquals(Offer.OVERFLOW, queue.offer(REPLY));
+    }
+
+    @Test
+    void testTakeDrainsThenEndsAfterClose() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(4, OverflowPolicy.DROP_STALE);
+        queue.offer(REPLY);
+        queue.close();
+
+        assertEquals(Offer.DROPPED, queue.offer(REPLY));
+        assertArrayEquals(REPLY, queue.take());
+        assertNull(queue.take());
+    }
+
+    @Test
+    void testCompressesOnlyMessagesQueuedAfterStart() throws Exception {
+        OutboundQueue queue = new OutboundQueue(4, OverflowPolicy.DROP_STALE);
+        byte[] accept = "PROTOCOL:ACCEPT deflate\n".getBytes(StandardCharsets.UTF_8);
+        byte[] status = "STATUS_UPDATE:START\nUsers Online: 1\nSTATUS_UPDATE:END\n".getBytes(StandardCharsets.UTF_8);
+        queue.offer(accept);
+        queue.startCompression();
+        queue.offerStatus(status, true);
+
+        assertArrayEquals(accept, queue.poll());
+        byte[] compressed = queue.poll();
+        assertTrue(compressed.length < status.length);
+        assertEquals(1, queue.getCompressor().getFrameCount());
+        assertEquals(status.length, queue.getCompressor().getBytesIn());
+
+        Inflater inflater = Compression.newInflater();
+        inflater.setInput(compressed);
+        byte[] inflated = new byte[status.length];
+        assertEquals(status.length, inflater.inflate(inflated));
+        assertArrayEquals(status, inflated);
+        queue.finish();
+    }
+
+    @Test
+    void testRejectsZeroCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new OutboundQueue(0, OverflowPolicy.DISCONNECT));
+    }
+}
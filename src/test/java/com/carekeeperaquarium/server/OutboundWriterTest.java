@@ -0,0 +1,166 @@
+package com.carekeeperaquarium.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for OutboundWriter.
+ * Counts the calls that reach the channel or stream underneath.
+ */
+class OutboundWriterTest {
+
+    /**
+     * Accepts up to {@code room} bytes in all, like a non-blocking socket whose buffer fills.
+     */
+    private static class RecordingChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private int room = Integer.MAX_VALUE;
+        private int calls;
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            calls++;
+            long total = 0;
+            for (int i = offset; i < offset + length && room > 0; i++) {
+                int count = Math.min(room, sources[i].remaining());
+                byte[] bytes = new byte[count];
+                sources[i].get(bytes);
+                written.write(bytes, 0, count);
+                room -= count;
+                total += count;
+            }
+            return total;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            return (int) write(new ByteBuffer[] { source });
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        String text() {
+            return written.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class CountingStream extends OutputStream {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private int writes;
+        private int flushes;
+
+        @Override
+        public void write(int b) {
+            writes++;
+            written.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            writes++;
+            written.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testGathersResponsesIntoOneWrite() throws IOException {
+        RecordingChannel channel = new RecordingChannel();
+        OutboundWriter writer = new OutboundWriter(channel);
+        writer.add(bytes("STATUS_UPDATE:START\n"));
+        writer.add(bytes("Fish Fed: 2\n"));
+        writer.add(bytes("STATUS_UPDATE:END\n"));
+
+        assertEquals(0, channel.calls, "Nothing is written before the flush");
+        assertTrue(writer.flush());
+        assertEquals(1, channel.calls);
+        assertEquals("STATUS_UPDATE:START\nFish Fed: 2\nSTATUS_UPDATE:END\n", channel.text());
+        assertEquals(1, writer.getWriteCalls());
+        assertEquals(1, writer.getFlushCount());
+    }
+
+    @Test
+    void testPartialWriteContinuesOnNextFlush() throws IOException {
+        RecordingChannel channel = new RecordingChannel();
+        channel.room = 7;
+        OutboundWriter writer = new OutboundWriter(channel);
+        writer.add(bytes("Nemo\n"));
+        writer.add(bytes("Dory\n"));
+
+        // The first call fills the socket buffer, the second finds it full
+        assertFalse(writer.flush());
+        assertTrue(writer.hasPending());
+        assertEquals(2, channel.calls);
+
+        channel.room = 100;
+        assertTrue(writer.flush());
+        assertFalse(writer.hasPending());
+        assertEquals("Nemo\nDory\n", channel.text());
+        assertEquals(3, writer.getWriteCalls());
+        assertEquals(2, writer.getFlushCount());
+    }
+
+    @Test
+    void testStreamGetsOneJoinedWrite() throws IOException {
+        CountingStream stream = new CountingStream();
+        OutboundWriter writer = new OutboundWriter(stream);
+        writer.add(bytes("Nemo\n"));
+        writer.add(bytes("Dory\n"));
+        writer.add(bytes("END_FISH_LIST\n"));
+        assertTrue(writer.flush());
+
+        assertEquals(1, stream.writes);
+        assertEquals(1, stream.flushes);
+        assertEquals("Nemo\nDory\nEND_FISH_LIST\n", stream.written.toString(StandardCharsets.UTF_8));
+        assertTrue(writer.describe().contains("messages=3, flushes=1, write calls=1"), writer.describe());
+    }
+
+    @Test
+    void testEmptyFlushWritesNothing() throws IOException {
+        CountingStream stream = new CountingStream();
+        OutboundWriter writer = new OutboundWriter(stream);
+        assertTrue(writer.flush());
+        assertEquals(0, stream.flushes);
+        assertEquals(0, writer.getFlushCount());
+    }
+
+    @Test
+    void testGatherIsBounded() {
+        OutboundWriter writer = new OutboundWriter(new RecordingChannel());
+        for (int i = 0; i < OutboundWriter.MAX_GATHER; i++) {
+            writer.add(bytes("x"));
+        }
+        assertFalse(writer.hasRoom());
+        assertThrows(IllegalStateException.class, () -> writer.add(bytes("y")));
+    }
+}
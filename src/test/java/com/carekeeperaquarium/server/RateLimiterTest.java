@@ -0,0 +1,104 @@
+package com.carekeeperaquarium.server;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.common.Command;
+
+/**
+ * Tests for RateLimiter.
+ * Passes explicit times to the buckets so nothing depends on the clock.
+ */
+class RateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private static Map<Command, Integer> one(Command command) {
+        return Map.of(command, 1);
+    }
+
+    @Test
+    void testBucketAllowsBurstThenRefills() {
+        RateLimiter.TokenBucket bucket = new RateLimiter.TokenBucket(2, 3, 0);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, bucket.nanosUntil(1, 0));
+            bucket.take(1);
+        }
+        assertEquals(SECOND / 2, bucket.nanosUntil(1, 0));
+        assertEquals(0, bucket.nanosUntil(1, SECOND / 2));
+    }
+
+    @Test
+    void testBucketNeverExceedsCapacity() {
+        RateLimiter.TokenBucket bucket = new RateLimiter.TokenBucket(10, 2, 0);
+        bucket.take(2);
+        assertEquals(0, bucket.nanosUntil(2, 60 * SECOND));
+        bucket.take(2);
+        assertTrue(bucket.nanosUntil(1, 60 * SECOND) > 0, "A long pause does not bank extra tokens");
+    }
+
+    @Test
+    void testSessionThrottledAfterBurst() {
+        RateLimiter limiter = new RateLimiter(1, 2, Map.of());
+        RateLimiter.Session session = limiter.newSession();
+        long now = System.nanoTime();
+
+        assertEquals(0, session.acquire(one(Command.ADD_FISH), now));
+        assertEquals(0, session.acquire(one(Command.FEED_FISH), now));
+        assertEquals(1000, session.acquire(one(Command.ADD_FISH), now));
+        assertEquals(0, session.acquire(one(Command.ADD_FISH), now + SECOND));
+
+        assertEquals(1, limiter.getThrottledCount());
+        assertEquals(1, limiter.getThrottledCount(Command.ADD_FISH));
+        assertEquals("throttled=1 (add-fish=1)", limiter.describe());
+    }
+
+    @Test
+    void testPerCommandLimitLeavesOtherCommandsAlone() {
+        RateLimiter limiter = new RateLimiter(0, 1, Map.of(Command.CLEAN_TANK, 0.5));
+        RateLimiter.Session session = limiter.newSession();
+        long now = System.nanoTime();
+
+        assertEquals(0, session.acquire(one(Command.CLEAN_TANK), now));
+        assertEquals(2000, session.acquire(one(Command.CLEAN_TANK), now));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, session.acquire(one(Command.VIEW_TANK), now));
+        }
+    }
+
+    @Test
+    void testRejectedBatchTakesNothing() {
+        RateLimiter.Session session = new RateLimiter(1, 3, Map.of()).newSession();
+        long now = System.nanoTime();
+
+        assertEquals(0, session.acquire(one(Command.ADD_FISH), now));
+        assertTrue(session.acquire(Map.of(Command.ADD_FISH, 3), now) > 0);
+        assertEquals(0, session.acquire(Map.of(Command.ADD_FISH, 1, Command.FEED_FISH, 1), now));
+    }
+
+    @Test
+    void testBatchLargerThanBurstLeavesDebt() {
+        RateLimiter.Session session = new RateLimiter(1, 3, Map.of()).newSession();
+        long now = System.nanoTime();
+
+        assertEquals(0, session.acquire(Map.of(Command.ADD_FISH, 5), now));
+        assertEquals(3000, session.acquire(one(Command.ADD_FISH), now));
+        assertEquals(0, session.acquire(one(Command.ADD_FISH), now + 3 * SECOND));
+    }
+
+    @Test
+    void testNoLimiterWhenDisabled() {
+        Properties properties = new Properties();
+        properties.setProperty("aquarium.rate.per-second", "0");
+        assertNull(RateLimiter.fromConfig(new ServerConfig(properties)));
+
+        properties.setProperty("aquarium.rate.clean-tank.per-second", "1");
+        assertNotNull(RateLimiter.fromConfig(new ServerConfig(properties)));
+    }
+}
@@ -0,0 +1,47 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ServerChannelsTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testReplacesStaleSocket() throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(dir.resolve("aquarium.sock"));
+        // Closing the channel leaves the file behind, as a crashed server would
+        try (ServerSocketChannel crashed = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            crashed.bind(address);
+        }
+        assertTrue(Files.exists(address.getPath()));
+
+        List<List<ServerSocketChannel>> channels = ServerChannels.open(List.<SocketAddress>of(address), 1);
+        assertTrue(channels.get(0).get(0).isOpen());
+        ServerChannels.close(channels);
+    }
+
+    @Test
+    void testLeavesLiveSocketAlone() throws IOException {
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(dir.resolve("aquarium.sock"));
+        List<List<ServerSocketChannel>> running = ServerChannels.open(List.<SocketAddress>of(address), 1);
+        try {
+            assertThrows(BindException.class, () -> ServerChannels.open(List.<SocketAddress>of(address), 1));
+            assertTrue(Files.exists(address.getPath()), "The running server keeps its socket");
+        } finally {
+            ServerChannels.close(running);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.carekeeperaquarium.server;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+class ServerConfigTest {
+
+    private static ServerConfig config(String... keyValues) {
+        Properties properties = new Properties();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            properties.setProperty("aquarium." + keyValues[i], keyValues[i + 1]);
+        }
+        return new ServerConfig(properties);
+    }
+
+    @Test
+    void testDefaultListenAddressUsesPort() {
+        List<SocketAddress> addresses = config("port", "9000").getListenAddresses();
+
+        assertEquals(1, addresses.size());
+        InetSocketAddress address = (InetSocketAddress) addresses.get(0);
+        assertEquals(9000, address.getPort());
+        assertTrue(address.getAddress().isAnyLocalAddress());
+        assertEquals(1, config().getAcceptorThreads());
+    }
+
+    @Test
+    void testListenAddresses() {
+        ServerConfig config = config("listen", ":8080, 127.0.0.1:9090,7070");
+        List<SocketAddress> addresses = config.getListenAddresses();
+
+        assertEquals(3, addresses.size());
+        assertEquals(new InetSocketAddress(8080), addresses.get(0));
+        assertEquals(new InetSocketAddress("127.0.0.1", 9090), addresses.get(1));
+        assertEquals(new InetSocketAddress(7070), addresses.get(2));
+        assertEquals("*:8080, 127.0.0.1:9090, *:7070", config.describeListenAddresses());
+    }
+
+    @Test
+    void testUnixDomainListenAddress() {
+        ServerConfig config = config("listen", "unix:/tmp/aquarium.sock, 127.0.0.1:9090");
+        List<SocketAddress> addresses = config.getListenAddresses();
+
+        assertEquals(UnixDomainSocketAddress.of(Path.of("/tmp/aquarium.sock")), addresses.get(0));
+        assertEquals("unix:/tmp/aquarium.sock, 127.0.0.1:9090", config.describeListenAddresses());
+    }
+
+    @Test
+    void testInvalidListenAddress() {
+        assertThrows(IllegalArgumentException.class, () -> config("listen", "unix:").getListenAddresses());
+        assertThrows(IllegalArgumentException.class, () -> config("listen", "localhost:http").getListenAddresses());
+        assertThrows(IllegalArgumentException.class, () -> config("listen", ":99999").getListenAddresses());
+    }
+}
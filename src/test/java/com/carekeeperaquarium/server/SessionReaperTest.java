@@ -0,0 +1,156 @@
+package com.carekeeperaquarium.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.model.UserProfile;
+
+class SessionReaperTest {
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private static class TextOutput implements SessionOutput {
+        private final List<String> lines = new ArrayList<>();
+        private boolean closed;
+
+        @Override
+        public synchronized void write(byte[] message) {
+            lines.addAll(List.of(new String(message, StandardCharsets.UTF_8).split("\n")));
+        }
+
+        @Override
+        public boolean writeStatus(byte[] message, boolean fullUpdate) {
+            return true;
+        }
+
+        @Override
+        public void startCompression() {
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+        }
+
+        synchronized boolean received(String line) {
+            return lines.contains(line);
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+
+    private StateObserver observer;
+    private AquariumManager manager;
+    private SessionReaper reaper;
+    private final List<ClientSession> sessions = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        observer = new StateObserver(Runnable::run);
+        manager = new AquariumManager(observer);
+        for (UserProfile user : manager.getUsers()) {
+            manager.removeUser(user);
+        }
+        reaper = new SessionReaper(Duration.ofSeconds(30), Duration.ofSeconds(90), Duration.ofSeconds(600));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessions.forEach(ClientSession::close);
+    }
+
+    private ClientSession login(TextOutput output, String name, boolean heartbeats) {
+        ClientSession session = new ClientSession(manager, observer, output, Runnable::run);
+        sessions.add(session);
+        session.start();
+        if (heartbeats)
+            session.handleLine("PROTOCOL:HELLO heartbeat");
+        session.handleLine(name);
+        reaper.register(session);
+        return session;
+    }
+
+    @Test
+    void testPingsQuietHeartbeatSession() {
+        TextOutput output = new TextOutput();
+        ClientSession session = login(output, "Diver", true);
+        long start = session.getLastReceivedNanos();
+
+        reaper.sweep(start + 10 * SECOND);
+        assertFalse(output.received(Protocol.PING));
+
+        reaper.sweep(start + 31 * SECOND);
+        assertTrue(output.received(Protocol.PING));
+
+        // The answer keeps the session alive past the read timeout
+        session.handleLine(Protocol.PONG);
+        reaper.sweep(session.getLastReceivedNanos() + 60 * SECOND);
+        assertFalse(output.isClosed());
+        assertEquals(0, reaper.getReapedCount());
+    }
+
+    @Test
+    void testExpiresSessionWithoutHeartbeat() {
+        TextOutput output = new TextOutput();
+        ClientSession session = login(output, "Diver", true);
+
+        reaper.sweep(session.getLastReceivedNanos() + 91 * SECOND);
+
+        assertTrue(output.received("Disconnected: no heartbeat"));
+        assertTrue(output.isClosed());
+        assertEquals(1, reaper.getReapedCount());
+        assertEquals(0, reaper.getSessionCount());
+    }
+
+    @Test
+    void testLegacySessionIsNotPingedButExpiresWhenIdle() {
+        TextOutput output = new TextOutput();
+        ClientSession session = login(output, "Diver", false);
+        long start = session.getLastActivityNanos();
+
+        reaper.sweep(start + 120 * SECOND);
+        assertFalse(output.received(Protocol.PING));
+        assertFalse(output.isClosed());
+
+        // Heartbeats alone do not count as activity
+        session.handleLine(Protocol.PING);
+        assertTrue(output.received(Protocol.PONG));
+        assertEquals(start, session.getLastActivityNanos());
+
+        reaper.sweep(start + 601 * SECOND);
+        assertTrue(output.received("Disconnected: idle for too long"));
+        assertTrue(output.isClosed());
+    }
+
+    @Test
+    void testSpectatorIsNotIdle() {
+        TextOutput output = new TextOutput();
+        ClientSession session = login(output, Protocol.SPECTATE, false);
+        assertTrue(session.isSpectating());
+
+        reaper.sweep(session.getLastActivityNanos() + 601 * SECOND);
+        assertFalse(output.isClosed());
+    }
+
+    @Test
+    void testClosedSessionsAreForgotten() {
+        ClientSession session = login(new TextOutput(), "Diver", false);
+        session.close();
+
+        reaper.sweep(System.nanoTime());
+        assertEquals(0, reaper.getSessionCount());
+        assertEquals(0, reaper.getReapedCount());
+    }
+}
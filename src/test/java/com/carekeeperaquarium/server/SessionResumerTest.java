@@ -0,0 +1,182 @@
+package com.carekeeperaquarium.server;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.business.AquariumManager;
+import com.carekeeperaquarium.common.Protocol;
+import com.carekeeperaquarium.model.UserProfile;
+
+class SessionResumerTest {
+    private static final Duration GRACE = Duration.ofSeconds(60);
+
+    private static class TextOutput implements SessionOutput {
+        private final List<String> lines = new ArrayList<>();
+        private boolean closed;
+
+        @Override
+        public synchronized void write(byte[] message) {
+            lines.addAll(List.of(new String(message, StandardCharsets.UTF_8).split("\n")));
+        }
+
+        @Override
+        public boolean writeStatus(byte[] message, boolean fullUpdate) {
+            write(message);
+            return true;
+        }
+
+        @Override
+        public void startCompression() {
+        }
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+        }
+
+        synchronized boolean received(String line) {
+            return lines.contains(line);
+        }
+
+        synchronized String token() {
+            for (String line : lines) {
+                if (Protocol.isHandshake(line, Protocol.SESSION_TOKEN))
+                    return line.substring(Protocol.SESSION_TOKEN.length()).trim();
+            }
+            return null;
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+    }
+
+    private StateObserver observer;
+    private AquariumManager manager;
+    private SessionResumer resumer;
+    private final List<ClientSession> sessions = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        observer = new StateObserver(Runnable::run);
+        manager = new AquariumManager(observer);
+        for (UserProfile user : manager.getUsers()) {
+            manager.removeUser(user);
+        }
+        resumer = new SessionResumer(manager, GRACE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sessions.forEach(ClientSession::close);
+        resumer.sweep(System.nanoTime() + GRACE.toNanos());
+    }
+
+    private ClientSession connect(TextOutput output) {
+        ClientSession session = new ClientSession(manager, observer, output, Runnable::run, resumer, null, null);
+        sessions.add(session);
+        session.start();
+        session.handleLine("PROTOCOL:HELLO resume");
+        return session;
+    }
+
+    private String login(String username, TextOutput output) {
+        ClientSession session = connect(output);
+        session.handleLine(username);
+        assertTrue(output.received(Protocol.LOGIN_SUCCESSFUL));
+        return output.token();
+    }
+
+    @Test
+    void testTokenIssuedAtLogin() {
+        TextOutput output = new TextOutput();
+        connect(output);
+        assertTrue(output.received("PROTOCOL:ACCEPT resume"));
+
+        sessions.get(0).handleLine("Diver");
+        assertNotNull(output.token());
+    }
+
+    @Test
+    void testResumeKeepsFishAndSendsStatus() {
+        TextOutput first = new TextOutput();
+        String token = login("Diver", first);
+        sessions.get(0).handleLine("add-fish");
+        sessions.get(0).close();
+
+        assertTrue(manager.hasUser("Diver"), "Dropped user waits for its client");
+        assertEquals(1, resumer.getDetachedCount());
+
+        TextOutput second = new TextOutput();
+        ClientSession resumed = connect(second);
+        assertTrue(resumed.handleLine(Protocol.SESSION_RESUME + " " + token));
+
+        assertTrue(second.received(Protocol.LOGIN_SUCCESSFUL));
+        assertTrue(second.received(Protocol.STATUS_UPDATE_START), "Status is sent right away");
+        assertEquals("Diver", resumed.getUsername());
+        assertEquals(1, manager.getUser("Diver").getFish().size());
+        assertEquals(0, resumer.getDetachedCount());
+    }
+
+    @Test
+    void testExpiresAfterGracePeriod() {
+        String token = login("Diver", new TextOutput());
+        sessions.get(0).close();
+
+        resumer.sweep(System.nanoTime() + GRACE.toNanos());
+        assertFalse(manager.hasUser("Diver"));
+
+        TextOutput late = new TextOutput();
+        connect(late).handleLine(Protocol.SESSION_RESUME + " " + token);
+        assertTrue(late.received(Protocol.LOGIN_FAIL));
+    }
+
+    @Test
+    void testQuitRemovesUserAndToken() {
+        String token = login("Diver", new TextOutput());
+        assertFalse(sessions.get(0).handleLine("quit"));
+        assertFalse(manager.hasUser("Diver"));
+
+        TextOutput again = new TextOutput();
+        connect(again).handleLine(Protocol.SESSION_RESUME + " " + token);
+        assertTrue(again.received(Protocol.LOGIN_FAIL));
+    }
+
+    @Test
+    void testResumeTakesOverLiveSession() {
+        TextOutput first = new TextOutput();
+        String token = login("Diver", first);
+        ClientSession stale = sessions.get(0);
+
+        connect(new TextOutput()).handleLine(Protocol.SESSION_RESUME + " " + token);
+        assertTrue(first.isClosed(), "The old connection is dropped");
+        assertTrue(stale.isClosed());
+
+        // The old transport noticing late must not take the user with it
+        stale.close();
+        assertTrue(manager.hasUser("Diver"));
+        assertEquals(1, resumer.getResumedCount());
+    }
+
+    @Test
+    void testNotOfferedWithoutGracePeriod() {
+        resumer = new SessionResumer(manager, Duration.ZERO);
+        TextOutput output = new TextOutput();
+        connect(output);
+
+        assertTrue(output.received("PROTOCOL:ACCEPT"));
+        sessions.get(0).handleLine("Diver");
+        sessions.get(0).close();
+        assertFalse(manager.hasUser("Diver"));
+    }
+}
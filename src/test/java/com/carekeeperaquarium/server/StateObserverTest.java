@@ -0,0 +1,109 @@
+package com.carekeeperaquarium.server;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.common.TankUpdate;
+
+/**
+ * Tests for StateObserver.
+ * Listeners that block hold up the dispatch thread, never the publisher.
+ */
+class StateObserverTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+
+    private static TankUpdate update(long version) {
+        return new TankUpdate(version, 100.0, 100.0, 0, Map.of(), Map.of());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void testDeliversOnDispatchThread() throws InterruptedException {
+        StateObserver observer = new StateObserver();
+        List<String> threads = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        observer.addListener(broadcast -> {
+            threads.add(Thread.currentThread().getName());
+            delivered.countDown();
+        });
+
+        observer.publish(update(1));
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("aquarium-events"), threads);
+    }
+
+    @Test
+    void testPublishDoesNotWaitForListeners() throws InterruptedException {
+        StateObserver observer = new StateObserver();
+        List<Long> versions = new CopyOnWriteArrayList<>();
+        CountDownLatch firstDelivered = new CountDownLatch(1);
+        CountDownLatch lastDelivered = new CountDownLatch(1);
+        observer.addListener(broadcast -> {
+            versions.add(broadcast.getVersion());
+            firstDelivered.countDown();
+            awaitRelease();
+            if (broadcast.getVersion() == 3)
+                lastDelivered.countDown();
+        });
+
+        observer.publish(update(1));
+        assertTrue(firstDelivered.await(5, TimeUnit.SECONDS));
+        // The listener is stuck on version 1; publishing goes on regardless
+        observer.publish(update(2));
+        observer.publish(update(3));
+        assertEquals(3, observer.getLatestBroadcast().getVersion());
+
+        release.countDown();
+        assertTrue(lastDelivered.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(1L, 3L), versions, "Version 2 was skipped for the newer one");
+        assertTrue(observer.describe().startsWith("published=3, delivered=2, skipped=1"), observer.describe());
+    }
+
+    @Test
+    void testFailingListenerDoesNotStopOthers() {
+        StateObserver observer = new StateObserver(Runnable::run);
+        List<Long> versions = new CopyOnWriteArrayList<>();
+        observer.addListener(broadcast -> {
+            throw new IllegalStateException("Broken session");
+        });
+        observer.addListener(broadcast -> versions.add(broadcast.getVersion()));
+
+        observer.publish(update(1));
+        observer.publish(update(2));
+        assertEquals(List.of(1L, 2L), versions);
+        assertTrue(observer.describe().contains("listener failures=2"), observer.describe());
+    }
+
+    @Test
+    void testRemovedListenerHearsNothing() {
+        StateObserver observer = new StateObserver(Runnable::run);
+        List<Long> versions = new CopyOnWriteArrayList<>();
+        StateListener listener = broadcast -> versions.add(broadcast.getVersion());
+        observer.addListener(listener);
+        observer.publish(update(1));
+        observer.removeListener(listener);
+        observer.publish(update(2));
+
+        assertEquals(List.of(1L), versions);
+    }
+}
@@ -0,0 +1,79 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.common.BinaryCodec;
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.TankUpdate;
+
+class StatusBroadcastTest {
+    private static final FishRecord NEMO = new FishRecord("Nemo", "Clownfish", 80, 100, 3, 2);
+    private static final FishRecord DORY = new FishRecord("Dory", "Blue Tang", 0, 120, 30, 5);
+
+    private final TankUpdate update = new TankUpdate(7, 64.5, 100.0, 2, Map.of(
+        "Diver", List.of(NEMO, DORY),
+        "Snorkeler", List.of()), Map.of("Diver", 140, "Snorkeler", 100));
+
+    @Test
+    void testSharedSectionEncodedOncePerFormat() {
+        StatusBroadcast broadcast = new StatusBroadcast(update);
+
+        byte[] text = broadcast.sharedSection(TextMessageEncoder.INSTANCE);
+        assertSame(text, broadcast.sharedSection(TextMessageEncoder.INSTANCE));
+        byte[] binary = broadcast.sharedSection(BinaryMessageEncoder.INSTANCE);
+        assertSame(binary, broadcast.sharedSection(BinaryMessageEncoder.INSTANCE));
+    }
+
+    @Test
+    void testSpectatorStatusEncodedOncePerFormat() throws IOException {
+        StatusBroadcast broadcast = new StatusBroadcast(update);
+
+        byte[] text = broadcast.spectatorStatus(TextMessageEncoder.INSTANCE);
+        assertSame(text, broadcast.spectatorStatus(TextMessageEncoder.INSTANCE));
+        assertEquals("STATUS_UPDATE:START\n" + update.summary().toDisplayString() + "STATUS_UPDATE:END\n",
+            new String(text, StandardCharsets.UTF_8));
+
+        byte[] binary = broadcast.spectatorStatus(BinaryMessageEncoder.INSTANCE);
+        assertSame(binary, broadcast.spectatorStatus(BinaryMessageEncoder.INSTANCE));
+        assertEquals(BinaryCodec.OP_SPECTATOR_STATUS, binary[0]);
+        assertEquals(update.summary(), BinaryCodec.decodeTankSummary(
+            Arrays.copyOfRange(binary, BinaryCodec.HEADER_LENGTH, binary.length)));
+    }
+
+    @Test
+    void testTextStatusMatchesFullRender() {
+        StatusBroadcast broadcast = new StatusBroadcast(update);
+
+        for (String user : List.of("Diver", "Snorkeler")) {
+            byte[] message = broadcast.status(TextMessageEncoder.INSTANCE, update.fishFor(user));
+            String expected = "STATUS_UPDATE:START\n" + update.statusFor(user).toDisplayString()
+                + "\nSTATUS_UPDATE:END\n";
+            assertEquals(expected, new String(message, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testBinaryStatusMatchesFullEncoding() throws IOException {
+        StatusBroadcast broadcast = new StatusBroadcast(update);
+
+        byte[] message = broadcast.status(BinaryMessageEncoder.INSTANCE, update.fishFor("Diver"));
+        assertEquals(BinaryCodec.OP_STATUS, message[0]);
+        byte[] payload = Arrays.copyOfRange(message, BinaryCodec.HEADER_LENGTH, message.length);
+        assertEquals(update.statusFor("Diver"), BinaryCodec.decodeStatus(payload));
+    }
+
+    @Test
+    void testUnknownUserHasNoStatus() {
+        assertNull(update.fishFor("Ghost"));
+        assertNull(update.statusFor(null));
+    }
+}
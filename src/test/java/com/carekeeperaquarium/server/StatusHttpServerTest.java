@@ -0,0 +1,114 @@
+package com.carekeeperaquarium.server;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.carekeeperaquarium.common.FishRecord;
+import com.carekeeperaquarium.common.TankUpdate;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+class StatusHttpServerTest {
+    private static final FishRecord NEMO = new FishRecord("Nemo", "Clownfish", 80, 100, 3, 2);
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private StateObserver observer;
+    private StatusHttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        observer = new StateObserver(Runnable::run);
+        server = new StatusHttpServer(0, observer);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private void publish(long version, int points) {
+        observer.publish(new TankUpdate(version, 72.5, 100.0, 2,
+            Map.of("Diver", List.of(NEMO), "Snorkeler", List.of()),
+            Map.of("Diver", points, "Snorkeler", 100)));
+    }
+
+    private HttpResponse<String> get(String path, String etag) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+            URI.create("http://127.0.0.1:" + server.getPort() + path));
+        if (etag != null)
+            request.header("If-None-Match", etag);
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testUnavailableBeforeFirstUpdate() throws Exception {
+        assertEquals(503, get("/tank", null).statusCode());
+    }
+
+    @Test
+    void testTankSummary() throws Exception {
+        publish(5, 140);
+        HttpResponse<String> response = get("/tank", null);
+
+        assertEquals(200, response.statusCode());
+        assertEquals("\"5\"", response.headers().firstValue("ETag").orElseThrow());
+        JsonObject tank = JsonParser.parseString(response.body()).getAsJsonObject();
+        assertEquals(72.5, tank.get("cleanliness").getAsDouble());
+        JsonObject diver = tank.getAsJsonArray("users").get(0).getAsJsonObject();
+        assertEquals("Diver", diver.get("username").getAsString());
+        assertEquals(140, diver.get("points").getAsInt());
+        assertEquals(1, diver.get("fishOwned").getAsInt());
+    }
+
+    @Test
+    void testUserFish() throws Exception {
+        publish(5, 140);
+
+        HttpResponse<String> response = get("/users/Diver/fish", null);
+        assertEquals(200, response.statusCode());
+        JsonObject fish = JsonParser.parseString(response.body()).getAsJsonObject()
+            .getAsJsonArray("fish").get(0).getAsJsonObject();
+        assertEquals("Nemo", fish.get("name").getAsString());
+        assertEquals(80, fish.get("health").getAsInt());
+
+        assertEquals(404, get("/users/Nobody/fish", null).statusCode());
+        assertEquals(404, get("/aquarium", null).statusCode());
+    }
+
+    @Test
+    void testNotModifiedUntilNextVersion() throws Exception {
+        publish(5, 140);
+        String etag = get("/users", null).headers().firstValue("ETag").orElseThrow();
+
+        HttpResponse<String> unchanged = get("/users", etag);
+        assertEquals(304, unchanged.statusCode());
+        assertTrue(unchanged.body().isEmpty());
+
+        publish(6, 150);
+        HttpResponse<String> changed = get("/users", etag);
+        assertEquals(200, changed.statusCode());
+        assertNotEquals(etag, changed.headers().firstValue("ETag").orElseThrow());
+    }
+
+    @Test
+    void testBodyEncodedOncePerVersion() throws Exception {
+        publish(5, 140);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, get("/tank", null).statusCode());
+        }
+        assertTrue(server.describe().contains("bodies encoded=1"), server.describe());
+    }
+}